@@ -1,6 +1,7 @@
 plugins {
     application
     id("org.graalvm.buildtools.native") version "0.9.9"
+    id("me.champeau.jmh") version "0.6.6"
 }
 
 group = "com.piorrro33"
@@ -41,6 +42,13 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter")
 }
 
+jmh {
+    jmhVersion.set("1.34")
+    // Only the benchmarks matching this regex are run, e.g. ./gradlew jmh -PjmhIncludes=HD6ArchiveBenchmark
+    includes.set(listOf(project.findProperty("jmhIncludes")?.toString() ?: ".*"))
+    resultFormat.set("JSON")
+}
+
 graalvmNative {
     binaries {
         named("main") {
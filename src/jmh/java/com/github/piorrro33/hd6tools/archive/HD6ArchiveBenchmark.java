@@ -0,0 +1,93 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import com.github.piorrro33.hd6tools.bench.SyntheticArchive;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * Index decoding routines of {@link HD6Archive}, on a synthetic archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HD6ArchiveBenchmark {
+    @Param({"10000"})
+    private int fileCount;
+
+    private Path workFolderPath;
+    private Path hd6Path;
+    private byte[] nameChunkData;
+    private ByteBuffer fileEntries;
+    private HD6Archive archive;
+    private String[] names;
+    private int nextName;
+
+    @Setup
+    public void setUp() throws IOException {
+        workFolderPath = Files.createTempDirectory("hd6bench");
+        hd6Path = new SyntheticArchive().setFileCount(fileCount).setFileSizes(0x10, 0x100,
+                SyntheticArchive.SizeDistribution.UNIFORM).generateArchive(workFolderPath);
+        ByteBuffer hd6 = ByteBuffer.wrap(Files.readAllBytes(hd6Path)).order(LITTLE_ENDIAN);
+        nameChunkData = new byte[hd6.getInt(0x8)];
+        hd6.get(hd6.getInt(0x4), nameChunkData);
+        fileEntries = hd6.slice(hd6.getInt(0x28), fileCount * 8);
+        archive = HD6Archive.open(hd6Path);
+        names = archive.list().toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        archive.close();
+        SyntheticArchive.deleteRecursively(workFolderPath);
+    }
+
+    @Benchmark
+    public int[] nameChunkDataOffsets() {
+        return FileIndex.getNameChunkDataOffsetArr(nameChunkData);
+    }
+
+    @Benchmark
+    public void uint24ToInt(Blackhole blackhole) {
+        for (int i = 0; i < fileCount; i++) {
+            blackhole.consume(FileIndex.uint24ToInt(fileEntries, i * 8 + 2));
+            blackhole.consume(FileIndex.uint24ToInt(fileEntries, i * 8 + 5));
+        }
+    }
+
+    /**
+     * Opens the archive and decodes every filename, which is what an extraction does before writing anything.
+     */
+    @Benchmark
+    public void openAndDecodeFilenames(Blackhole blackhole) throws IOException {
+        try (HD6Archive freshArchive = HD6Archive.open(hd6Path)) {
+            for (int i = 0; i < freshArchive.size(); i++) {
+                blackhole.consume(freshArchive.getName(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void rawFilenames(Blackhole blackhole) {
+        for (int i = 0; i < archive.size(); i++) {
+            blackhole.consume(archive.getRawName(i));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ByteBuffer findAndOpen() throws IOException {
+        nextName = (nextName + 7919) % names.length;
+        return archive.open(names[nextName]);
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.piorrro33.hd6tools.bench;
+
+import com.github.piorrro33.hd6tools.operation.OperationMode;
+import com.github.piorrro33.hd6tools.operation.OperationOptions;
+import com.github.piorrro33.hd6tools.operation.Operations;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of source folders and HD6/DAT pairs for benchmarks. The same settings and seed always give
+ * the same filenames, sizes and contents.
+ */
+public class SyntheticArchive {
+    public enum SizeDistribution {
+        /**
+         * Every size between the minimum and maximum is as likely.
+         */
+        UNIFORM,
+        /**
+         * Sizes are uniform on a log scale: many small files and a few large ones, like game data.
+         */
+        LOG_UNIFORM
+    }
+
+    private static final String[] FOLDER_WORDS = {"chr", "map", "snd", "ui", "ev", "menu", "bg", "eff", "data", "sys"};
+    private static final String[] NAME_WORDS = {"tex", "model", "anim", "face", "voice", "se", "bgm", "win", "icon"};
+    private static final String[] SHIFT_JIS_WORDS = {"キャラ", "背景", "効果音", "テクスチャ", "顔"};
+    private static final String[] EXTENSIONS = {".g1t", ".g1m", ".bin", ".xml", ".ogg", ".dat"};
+
+    private long seed = 0x48443654L;
+    private int fileCount = 1000;
+    private int minFileSize = 0x10;
+    private int maxFileSize = 0x10000;
+    private SizeDistribution sizeDistribution = SizeDistribution.LOG_UNIFORM;
+    private int maxDepth = 3;
+    private double shiftJisRatio = 0.1;
+
+    public SyntheticArchive setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public SyntheticArchive setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+        return this;
+    }
+
+    /**
+     * Sizes are rounded down to a multiple of 0x10, as the HD6 format stores them divided by 0x10.
+     */
+    public SyntheticArchive setFileSizes(int minFileSize, int maxFileSize, SizeDistribution sizeDistribution) {
+        this.minFileSize = minFileSize;
+        this.maxFileSize = maxFileSize;
+        this.sizeDistribution = sizeDistribution;
+        return this;
+    }
+
+    /**
+     * @param maxDepth the maximum number of folders above a file, at least 1
+     */
+    public SyntheticArchive setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param shiftJisRatio the share of name parts using Japanese characters. The file system must be able to store
+     *                      them, which usually means running with a UTF-8 locale.
+     */
+    public SyntheticArchive setShiftJisRatio(double shiftJisRatio) {
+        this.shiftJisRatio = shiftJisRatio;
+        return this;
+    }
+
+    /**
+     * @return the relative paths of the files, with {@code \} separators as stored in HD6 files, in generation order
+     */
+    public List<String> generateFilenames() {
+        Random random = new Random(seed);
+        List<String> filenames = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            StringBuilder filename = new StringBuilder();
+            int depth = 1 + random.nextInt(maxDepth);
+            for (int d = 0; d < depth; d++) {
+                filename.append(pickWord(random, FOLDER_WORDS));
+                if (random.nextInt(3) == 0) {
+                    filename.append('_').append(random.nextInt(10));
+                }
+                filename.append('\\');
+            }
+            filename.append(pickWord(random, NAME_WORDS)).append('_').append(i);
+            filename.append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            filenames.add(filename.toString());
+        }
+        return filenames;
+    }
+
+    /**
+     * Fills the given folder with the generated files.
+     */
+    public void generateFolder(Path folderPath) throws IOException {
+        Random random = new Random(seed ^ 0x5EED);
+        byte[] buffer = new byte[0];
+        for (String filename : generateFilenames()) {
+            Path filePath;
+            try {
+                filePath = folderPath.resolve(filename.replace("\\", folderPath.getFileSystem().getSeparator()));
+            } catch (InvalidPathException e) {
+                throw new IllegalStateException("Cannot store Japanese filenames, use a UTF-8 locale or a Shift JIS " +
+                        "ratio of 0", e);
+            }
+            int fileSize = nextFileSize(random);
+            if (buffer.length < fileSize) {
+                buffer = new byte[fileSize];
+            }
+            random.nextBytes(buffer);
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, fileSize == buffer.length ? buffer : Arrays.copyOf(buffer, fileSize));
+        }
+    }
+
+    /**
+     * Generates the source folder, then rebuilds it into an HD6/DAT pair. The work folder should be empty.
+     *
+     * @return the path to the HD6 file, next to which the DAT file and source folder are stored
+     */
+    public Path generateArchive(Path workFolderPath) throws IOException {
+        Path sourceFolderPath = workFolderPath.resolve("source");
+        generateFolder(sourceFolderPath);
+        Path hd6Path = workFolderPath.resolve("source.hd6");
+        boolean isSuccessful = Operations.perform(OperationMode.REBUILD, workFolderPath.resolve("source.dat"), hd6Path,
+                sourceFolderPath, new OperationOptions());
+        if (!isSuccessful) {
+            throw new IOException("Could not rebuild synthetic archive in " + workFolderPath);
+        }
+        return hd6Path;
+    }
+
+    public static void deleteRecursively(Path path) throws IOException {
+        if (Files.notExists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private String pickWord(Random random, String[] words) {
+        if (random.nextDouble() < shiftJisRatio) {
+            return SHIFT_JIS_WORDS[random.nextInt(SHIFT_JIS_WORDS.length)];
+        }
+        return words[random.nextInt(words.length)];
+    }
+
+    private int nextFileSize(Random random) {
+        double size = switch (sizeDistribution) {
+            case UNIFORM -> minFileSize + random.nextDouble() * (maxFileSize - minFileSize);
+            case LOG_UNIFORM -> Math.exp(Math.log(Math.max(minFileSize, 1))
+                    + random.nextDouble() * (Math.log(Math.max(maxFileSize, 1)) - Math.log(Math.max(minFileSize, 1))));
+        };
+        return ((int) size >> 0x4) << 0x4;
+    }
+}
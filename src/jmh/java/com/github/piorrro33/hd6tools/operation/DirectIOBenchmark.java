@@ -0,0 +1,77 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.bench.SyntheticArchive;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extractions and rebuilds of a synthetic archive of a few hundred MB, with buffered and with direct I/O on the DAT.
+ * <p>
+ * Buffered runs after the first one find the DAT in the page cache, which direct runs never use: drop the caches
+ * between iterations (e.g. {@code echo 1 > /proc/sys/vm/drop_caches} from a profiler hook) to compare cold reads. Watch
+ * the page cache size while running too, as keeping it small is the point of direct I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirectIOBenchmark {
+    @Param({"1000"})
+    private int fileCount;
+
+    @Param({"524288"})
+    private int maxFileSize;
+
+    @Param({"false", "true"})
+    private boolean directIO;
+
+    @Param({"1", "4"})
+    private int threadCount;
+
+    private Path workFolderPath;
+    private Path sourceFolderPath;
+    private Path hd6Path;
+    private Path datPath;
+    private Path outputFolderPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workFolderPath = Files.createTempDirectory("hd6bench");
+        hd6Path = new SyntheticArchive().setFileCount(fileCount)
+                .setFileSizes(0x10, maxFileSize, SyntheticArchive.SizeDistribution.UNIFORM)
+                .setShiftJisRatio(0)
+                .generateArchive(workFolderPath);
+        datPath = workFolderPath.resolve("source.dat");
+        sourceFolderPath = workFolderPath.resolve("source");
+        outputFolderPath = workFolderPath.resolve("output");
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteOutputs() throws IOException {
+        SyntheticArchive.deleteRecursively(outputFolderPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticArchive.deleteRecursively(workFolderPath);
+    }
+
+    @Benchmark
+    public boolean extract() {
+        return Extraction.perform(datPath, hd6Path, outputFolderPath, new OperationOptions()
+                .setThreadCount(threadCount)
+                .setDirectIO(directIO));
+    }
+
+    @Benchmark
+    public boolean rebuild() {
+        return Reconstruction.perform(outputFolderPath.resolve("rebuilt.dat"), outputFolderPath.resolve("rebuilt.hd6"),
+                sourceFolderPath, new OperationOptions().setThreadCount(threadCount).setDirectIO(directIO));
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.bench.SyntheticArchive;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole extractions and rebuilds of synthetic archives, to compare thread counts and file size profiles.
+ * <p>
+ * Outputs are deleted before each invocation, as operations ask for confirmation when they would overwrite files.
+ * Results therefore include the cost of writing to a cold destination, which is what users see too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+    @Param({"2000"})
+    private int fileCount;
+
+    @Param({"UNIFORM", "LOG_UNIFORM"})
+    private SyntheticArchive.SizeDistribution sizeDistribution;
+
+    @Param({"65536"})
+    private int maxFileSize;
+
+    @Param({"1", "4"})
+    private int threadCount;
+
+    private Path workFolderPath;
+    private Path sourceFolderPath;
+    private Path hd6Path;
+    private Path datPath;
+    private Path outputFolderPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workFolderPath = Files.createTempDirectory("hd6bench");
+        hd6Path = new SyntheticArchive().setFileCount(fileCount)
+                .setFileSizes(0x10, maxFileSize, sizeDistribution)
+                .setShiftJisRatio(0)
+                .generateArchive(workFolderPath);
+        datPath = workFolderPath.resolve("source.dat");
+        sourceFolderPath = workFolderPath.resolve("source");
+        outputFolderPath = workFolderPath.resolve("output");
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteOutputs() throws IOException {
+        SyntheticArchive.deleteRecursively(outputFolderPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticArchive.deleteRecursively(workFolderPath);
+    }
+
+    @Benchmark
+    public boolean extract() {
+        return Extraction.perform(datPath, hd6Path, outputFolderPath, new OperationOptions().setThreadCount(threadCount));
+    }
+
+    @Benchmark
+    public boolean rebuild() {
+        return Reconstruction.perform(outputFolderPath.resolve("rebuilt.dat"), outputFolderPath.resolve("rebuilt.hd6"),
+                sourceFolderPath, new OperationOptions().setThreadCount(threadCount));
+    }
+}
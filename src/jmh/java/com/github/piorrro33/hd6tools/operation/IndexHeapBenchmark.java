@@ -0,0 +1,112 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.FileIndex;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import com.github.piorrro33.hd6tools.bench.SyntheticArchive;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap kept by the index of an archive with a million files, in bytes per file, reported as the
+ * {@code retainedBytesPerFile} secondary result.
+ * <p>
+ * The heap is measured after full garbage collections, before and after the index is built, while the index is still
+ * referenced. Each benchmark runs once per fork so that the counter is not summed over several iterations; timings are
+ * those of a single run, garbage collections included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndexHeapBenchmark {
+    @Param({"1000000"})
+    private int fileCount;
+
+    private Path workFolderPath;
+    private Path hd6Path;
+    private Path datPath;
+    private List<String> filenames;
+    private long[] startOffsets;
+    private int[] fileSizes;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounters {
+        public long retainedBytesPerFile;
+    }
+
+    /**
+     * Writes the HD6 file of an archive with the given number of files, each in its own DAT slot. The DAT file is left
+     * empty, as no file is opened.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workFolderPath = Files.createTempDirectory("hd6bench");
+        hd6Path = workFolderPath.resolve("index.hd6");
+        datPath = Files.createFile(workFolderPath.resolve("index.dat"));
+        filenames = new SyntheticArchive().setFileCount(fileCount).generateFilenames();
+        filenames.add(filenames.get(fileCount - 1)); // the last file is listed twice
+        startOffsets = new long[filenames.size()];
+        fileSizes = new int[filenames.size()];
+        for (int i = 0; i < fileCount; i++) {
+            startOffsets[i] = i * 0x800L;
+            fileSizes[i] = 0x10;
+        }
+        startOffsets[fileCount] = startOffsets[fileCount - 1];
+        fileSizes[fileCount] = fileSizes[fileCount - 1];
+        OperationOptions options = new OperationOptions();
+        Reconstruction.writeHD6(hd6Path, Reconstruction.createFilenameTable(filenames, options), startOffsets,
+                fileSizes, options.getMetrics());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticArchive.deleteRecursively(workFolderPath);
+    }
+
+    /**
+     * Opens the archive and decodes every filename, as an extraction or a listing does.
+     */
+    @Benchmark
+    public int openAndDecodeFilenames(HeapCounters counters) throws IOException {
+        long usedHeapBefore = usedHeapAfterGc();
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            int nameLengths = 0;
+            for (int i = 0; i < archive.size(); i++) {
+                nameLengths += archive.getName(i).length();
+            }
+            counters.retainedBytesPerFile = (usedHeapAfterGc() - usedHeapBefore) / archive.size();
+            return nameLengths;
+        }
+    }
+
+    /**
+     * Builds the index written by a rebuild, from the filename table to the file entries.
+     */
+    @Benchmark
+    public int buildRebuildIndex(HeapCounters counters) throws IOException {
+        long usedHeapBefore = usedHeapAfterGc();
+        Reconstruction.FilenameTable filenameTable = Reconstruction.createFilenameTable(filenames,
+                new OperationOptions());
+        FileIndex index = new FileIndex(filenameTable.nameChunkData(), filenameTable.nameChunkCount(),
+                filenameTable.filenameTable(), filenameTable.filenameTableOffsets(), startOffsets.clone(),
+                fileSizes.clone());
+        counters.retainedBytesPerFile = (usedHeapAfterGc() - usedHeapBefore) / index.size();
+        return index.size();
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
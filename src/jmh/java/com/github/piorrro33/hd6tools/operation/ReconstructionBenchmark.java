@@ -0,0 +1,77 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.bench.SyntheticArchive;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * Filename processing steps of {@link Reconstruction}, without any file system access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReconstructionBenchmark {
+    @Param({"1000", "20000"})
+    private int fileCount;
+
+    private List<String> filenames;
+    private byte[] filenameTable;
+    private int[] startOffsetFields;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticArchive synthetic = new SyntheticArchive().setFileCount(fileCount).setFileSizes(0x10, 0x10,
+                SyntheticArchive.SizeDistribution.UNIFORM);
+        filenames = synthetic.generateFilenames();
+
+        Path workFolderPath = Files.createTempDirectory("hd6bench");
+        try {
+            ByteBuffer hd6 = ByteBuffer.wrap(Files.readAllBytes(synthetic.generateArchive(workFolderPath)))
+                    .order(LITTLE_ENDIAN);
+            filenameTable = new byte[hd6.getInt(0x18)];
+            hd6.get(hd6.getInt(0x14), filenameTable);
+        } finally {
+            SyntheticArchive.deleteRecursively(workFolderPath);
+        }
+        startOffsetFields = new int[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            startOffsetFields[i] = (i * 4) & 0xFFFFFC;
+        }
+    }
+
+    /**
+     * Splits every filename and sorts the resulting dictionary, like the "Processing file paths..." step.
+     */
+    @Benchmark
+    public int[] buildDictionary(Blackhole blackhole) {
+        FilenameDictionary dictionary = new FilenameDictionary(4300);
+        for (String filename : filenames) {
+            blackhole.consume(dictionary.addFilename(filename));
+        }
+        return dictionary.sortByFrequency();
+    }
+
+    @Benchmark
+    public int[] filenameTableOffsets() {
+        return Reconstruction.getFilenameTableOffsets(filenameTable, filenameTable.length, fileCount);
+    }
+
+    @Benchmark
+    public void intToUint24(Blackhole blackhole) {
+        for (int startOffsetField : startOffsetFields) {
+            blackhole.consume(Reconstruction.intToUint24(startOffsetField));
+        }
+    }
+}
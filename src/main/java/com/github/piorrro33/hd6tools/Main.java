@@ -1,22 +1,43 @@
 package com.github.piorrro33.hd6tools;
 
+import com.github.piorrro33.hd6tools.command.BatchCommand;
+import com.github.piorrro33.hd6tools.command.CatCommand;
+import com.github.piorrro33.hd6tools.command.DiffCommand;
+import com.github.piorrro33.hd6tools.command.ListCommand;
+import com.github.piorrro33.hd6tools.command.RepackCommand;
+import com.github.piorrro33.hd6tools.command.ServeCommand;
+import com.github.piorrro33.hd6tools.command.VerifyCommand;
+import com.github.piorrro33.hd6tools.operation.ContainerFormat;
+import com.github.piorrro33.hd6tools.operation.EntryFilter;
 import com.github.piorrro33.hd6tools.operation.OperationMode;
+import com.github.piorrro33.hd6tools.operation.OperationOptions;
 import com.github.piorrro33.hd6tools.operation.Operations;
+import com.github.piorrro33.hd6tools.operation.UnchangedCheck;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.Callable;
+import java.util.regex.PatternSyntaxException;
 
 @Command(name = Main.APPLICATION_NAME, version = Main.APPLICATION_VERSION,
-        description = "Level-5 DAT/HD6 file format tool", mixinStandardHelpOptions = true)
+        description = "Level-5 DAT/HD6 file format tool", mixinStandardHelpOptions = true,
+        subcommands = {ListCommand.class, CatCommand.class, BatchCommand.class, ServeCommand.class,
+                VerifyCommand.class, DiffCommand.class, RepackCommand.class})
 public class Main implements Callable<Integer> {
     public static final String APPLICATION_NAME = "HD6Tools";
     public static final String APPLICATION_VERSION = APPLICATION_NAME + " v0.2";
 
-    @Parameters(index = "0", arity = "1", paramLabel = "PATH_1", description = """
+    @Parameters(index = "0", arity = "0..1", paramLabel = "PATH_1", description = """
             Extract: path to HD6 file.
             Rebuild: path to source folder.""")
     private Path path1;
@@ -26,15 +47,131 @@ public class Main implements Callable<Integer> {
             Rebuild: path to HD6 file.""")
     private Path path2;
 
+    @Option(names = {"-t", "--threads"}, paramLabel = "N",
+            description = "Number of files copied in parallel (default: number of CPU cores).")
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--index-cache",
+            description = "Extract: read the HD6 index from an .hd6.idx cache file, creating it if needed.")
+    private boolean useIndexCache;
+
+    @Option(names = "--incremental", description = """
+            Rebuild: only rewrite the files whose size or contents differ from the existing HD6/DAT files.""")
+    private boolean incremental;
+
+    @Option(names = "--trust-mtime", description = """
+            Rebuild: with --incremental, skip files of the same size not modified since the HD6/DAT files were \
+            written without reading them. Misses files copied with their original time.""")
+    private boolean trustModifiedTimes;
+
+    @Option(names = "--compact-names",
+            description = "Rebuild: merge name chunks often found together if it makes the HD6 file smaller.")
+    private boolean compactFilenames;
+
+    @Option(names = "--dedup", description = "Rebuild: store files with identical contents only once in the DAT.")
+    private boolean deduplicate;
+
+    @Option(names = "--direct-io",
+            description = "Read and write DAT files with direct I/O, bypassing the page cache, where supported.")
+    private boolean directIO;
+
+    @Option(names = "--include", paramLabel = "GLOB",
+            description = "Extract: only the files whose path, with / separators, matches GLOB. Can be repeated.")
+    private List<String> includePatterns = List.of();
+
+    @Option(names = "--exclude", paramLabel = "GLOB",
+            description = "Extract: not the files whose path matches GLOB, even if included. Can be repeated.")
+    private List<String> excludePatterns = List.of();
+
+    @Option(names = "--regex", description = "Extract: --include and --exclude patterns are regexes instead of globs.")
+    private boolean patternsAreRegexes;
+
+    @Option(names = "--list", paramLabel = "FILE",
+            description = "Extract: only the files whose paths are listed in FILE, one per line, besides --include.")
+    private Path listPath;
+
+    @Option(names = "--format", paramLabel = "FORMAT", description = """
+            Extract: write the files into a single ${COMPLETION-CANDIDATES} file instead of a folder. PATH_2 is then \
+            that file, named after the HD6 file by default, or - for standard output.""")
+    private ContainerFormat containerFormat;
+
+    @Option(names = "--skip-unchanged", paramLabel = "CHECK", arity = "0..1", fallbackValue = "SIZE", description = """
+            Extract: do not rewrite the files of the folder that already hold their entry, as told by their size, \
+            their contents or the manifest written next to the folder: ${COMPLETION-CANDIDATES} \
+            (default: ${FALLBACK-VALUE}).""")
+    private UnchangedCheck unchangedCheck;
+
+    @Option(names = "--prune", description = "Extract: delete the files of the folder that are not in the archive.")
+    private boolean prune;
+
+    @Option(names = {"-y", "--yes"}, description = "Overwrite existing files without asking.")
+    private boolean assumeYes;
+
+    @Option(names = "--metrics", paramLabel = "FILE",
+            description = "Write the time, files, bytes and memory used by each step to FILE, as JSON.")
+    private Path metricsPath;
+
+    @Option(names = "--progress", paramLabel = "SECONDS",
+            description = "Print the progress of the current step every SECONDS seconds.")
+    private long progressInterval;
+
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new Main()).execute(args);
+        int exitCode = new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
         System.exit(exitCode);
     }
 
     @Override
     public Integer call() throws Exception {
+        // With a container on standard output, every message goes to standard error
+        OutputStream containerStream = null;
+        if (containerFormat != null && path2 != null && path2.toString().equals("-")) {
+            containerStream = new FileOutputStream(FileDescriptor.out);
+            System.setOut(System.err);
+        }
         System.out.println(APPLICATION_VERSION);
 
+        // PATH_1 is only optional so that subcommands can be used without it
+        if (path1 == null) {
+            System.err.println("Error: missing PATH_1!");
+            CommandLine.usage(this, System.out);
+            return CommandLine.ExitCode.USAGE;
+        }
+        if (progressInterval < 0) {
+            System.err.println("Error: progress interval cannot be negative!");
+            CommandLine.usage(this, System.out);
+            return CommandLine.ExitCode.USAGE;
+        }
+        if (threadCount < 1) {
+            System.err.println("Error: thread count must be at least 1!");
+            CommandLine.usage(this, System.out);
+            return CommandLine.ExitCode.USAGE;
+        }
+        OperationOptions options = new OperationOptions()
+                .setThreadCount(threadCount)
+                .setUseIndexCache(useIndexCache)
+                .setIncremental(incremental)
+                .setTrustModifiedTimes(trustModifiedTimes)
+                .setCompactFilenames(compactFilenames)
+                .setDeduplicate(deduplicate)
+                .setDirectIO(directIO)
+                .setContainerFormat(containerFormat)
+                .setContainerStream(containerStream)
+                .setUnchangedCheck(unchangedCheck)
+                .setPrune(prune)
+                .setAssumeYes(assumeYes);
+
+        EntryFilter entryFilter;
+        try {
+            entryFilter = createEntryFilter();
+        } catch (IOException e) {
+            System.err.println("Could not read list file! " + e.getLocalizedMessage());
+            return CommandLine.ExitCode.USAGE;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: invalid pattern! " + e.getMessage());
+            return CommandLine.ExitCode.USAGE;
+        }
+        options.setEntryFilter(entryFilter);
+
         OperationMode mode;
         Path datPath, hd6Path, folderPath;
         if (Utils.isPathToHD6(path1) && Files.isRegularFile(path1)) {
@@ -42,7 +179,16 @@ public class Main implements Callable<Integer> {
             mode = OperationMode.EXTRACT;
             hd6Path = path1;
             datPath = Utils.hd6PathToDatPath(hd6Path);
-            if (path2 == null) {
+            if (containerFormat != null && (unchangedCheck != null || prune)) {
+                System.err.println("Error: --skip-unchanged and --prune only apply to extractions to a folder!");
+                CommandLine.usage(this, System.out);
+                return CommandLine.ExitCode.USAGE;
+            }
+            if (containerFormat != null) {
+                // Container file path, which the extraction ignores when writing to standard output
+                folderPath = path2 != null ? path2 : Path.of(Utils.hd6PathToFolderPath(hd6Path) + "."
+                        + containerFormat.toString().toLowerCase(Locale.ROOT));
+            } else if (path2 == null) {
                 // No folder path given, will create a folder after the file name of the HD6 file
                 folderPath = Utils.createFolderAfterHD6FileName(hd6Path);
             } else if (!Files.isRegularFile(path2)) {
@@ -58,6 +204,12 @@ public class Main implements Callable<Integer> {
             // path1 is a directory --> Rebuild mode
             mode = OperationMode.REBUILD;
             folderPath = path1;
+            if (entryFilter != null || containerFormat != null || unchangedCheck != null || prune) {
+                System.err.println("Error: --include, --exclude, --list, --format, --skip-unchanged and --prune only " +
+                        "apply to extractions!");
+                CommandLine.usage(this, System.out);
+                return CommandLine.ExitCode.USAGE;
+            }
             if (path2 == null) {
                 // No HD6 file given, will use the folder name as DAT/HD6 file names
                 hd6Path = Utils.folderPathToHD6Path(folderPath);
@@ -79,7 +231,17 @@ public class Main implements Callable<Integer> {
             return CommandLine.ExitCode.USAGE;
         }
 
-        boolean isSuccessful = Operations.perform(mode, datPath, hd6Path, folderPath);
+        if (progressInterval > 0) {
+            options.getMetrics().startProgress(progressInterval, System.out);
+        }
+        boolean isSuccessful = Operations.perform(mode, datPath, hd6Path, folderPath, options);
+        if (metricsPath != null) {
+            try {
+                options.getMetrics().writeJson(metricsPath, isSuccessful);
+            } catch (IOException e) {
+                System.err.println("Could not write metrics file! " + e.getLocalizedMessage());
+            }
+        }
         if (isSuccessful) {
             System.out.println("Operation completed.");
             return 0;
@@ -88,4 +250,33 @@ public class Main implements Callable<Integer> {
             return 1;
         }
     }
+
+    /**
+     * @return null if no filter option was given
+     * @throws IllegalArgumentException if a pattern is invalid, {@link PatternSyntaxException} included
+     */
+    private EntryFilter createEntryFilter() throws IOException {
+        if (includePatterns.isEmpty() && excludePatterns.isEmpty() && listPath == null) {
+            return null;
+        }
+        EntryFilter entryFilter = new EntryFilter();
+        for (String pattern : includePatterns) {
+            if (patternsAreRegexes) {
+                entryFilter.includeRegex(pattern);
+            } else {
+                entryFilter.include(pattern);
+            }
+        }
+        for (String pattern : excludePatterns) {
+            if (patternsAreRegexes) {
+                entryFilter.excludeRegex(pattern);
+            } else {
+                entryFilter.exclude(pattern);
+            }
+        }
+        if (listPath != null) {
+            entryFilter.includeNames(listPath);
+        }
+        return entryFilter;
+    }
 }
@@ -19,10 +19,14 @@ public class Utils {
     }
 
     public static Path createFolderAfterHD6FileName(Path hd6Path) throws IOException {
+        return Files.createDirectories(hd6PathToFolderPath(hd6Path));
+    }
+
+    public static Path hd6PathToFolderPath(Path hd6Path) {
         String hd6FileName = hd6Path.getFileName().toString();
         String hd6FileNameNoExt = hd6FileName.substring(0, hd6FileName.length() - 4);
         Path absHD6Path = hd6Path.toAbsolutePath();
-        return Files.createDirectories(absHD6Path.getParent().resolve(hd6FileNameNoExt));
+        return absHD6Path.getParent().resolve(hd6FileNameNoExt);
     }
 
     public static Path folderPathToHD6Path(Path folderPath) {
@@ -43,4 +47,70 @@ public class Utils {
         boolean isDirectory = Files.isDirectory(path);
         return pathMatches && !isDirectory;
     }
+
+    /**
+     * Translates a glob into a regex, with the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}
+     * and {@code /} as the only separator: {@code *} and {@code ?} stay within a name, {@code **} crosses names.
+     */
+    public static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder("^");
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '{' -> {
+                    if (inGroup) {
+                        throw new IllegalArgumentException("Nested group in glob: " + glob);
+                    }
+                    regex.append("(?:");
+                    inGroup = true;
+                }
+                case '}' -> {
+                    if (inGroup) {
+                        regex.append(')');
+                        inGroup = false;
+                    } else {
+                        regex.append("\\}");
+                    }
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                case '[' -> {
+                    int end = glob.indexOf(']', i + 2);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Missing ] in glob: " + glob);
+                    }
+                    String set = glob.substring(i + 1, end);
+                    // Like FileSystem.getPathMatcher, a set never matches /, and its characters are literal but for -
+                    regex.append("[[^/]&&[");
+                    if (set.startsWith("!")) {
+                        regex.append('^');
+                        set = set.substring(1);
+                    }
+                    regex.append(set.replace("\\", "\\\\").replace("[", "\\[").replace("]", "\\]")
+                            .replace("&", "\\&").replace("^", "\\^")).append("]]");
+                    i = end;
+                }
+                case '\\' -> {
+                    if (++i == glob.length()) {
+                        throw new IllegalArgumentException("Glob ends with an escape: " + glob);
+                    }
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        if (inGroup) {
+            throw new IllegalArgumentException("Missing } in glob: " + glob);
+        }
+        return regex.append('$').toString();
+    }
 }
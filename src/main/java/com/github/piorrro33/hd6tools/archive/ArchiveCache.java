@@ -0,0 +1,164 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import com.github.piorrro33.hd6tools.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used archives open, with their index decoded and their DAT mapped, so that serving a file
+ * costs a lookup and no parsing.
+ * <p>
+ * Archives are handed out as {@link Lease leases}: an archive evicted while leased is only closed once its last
+ * lease is closed. An archive whose HD6 or DAT file changed on disk is opened again. Instances are thread-safe.
+ */
+public class ArchiveCache implements Closeable {
+    private final int capacity;
+    private final boolean useIndexCache;
+    private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+
+    private static class Entry {
+        final HD6Archive archive;
+        final long hd6Size, hd6ModifiedTime, datSize, datModifiedTime;
+        int leaseCount = 0;
+        boolean evicted = false;
+
+        Entry(HD6Archive archive, BasicFileAttributes hd6Attributes, BasicFileAttributes datAttributes) {
+            this.archive = archive;
+            hd6Size = hd6Attributes.size();
+            hd6ModifiedTime = hd6Attributes.lastModifiedTime().toMillis();
+            datSize = datAttributes.size();
+            datModifiedTime = datAttributes.lastModifiedTime().toMillis();
+        }
+
+        boolean isStale(BasicFileAttributes hd6Attributes, BasicFileAttributes datAttributes) {
+            return hd6Size != hd6Attributes.size() || hd6ModifiedTime != hd6Attributes.lastModifiedTime().toMillis()
+                    || datSize != datAttributes.size()
+                    || datModifiedTime != datAttributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * An archive in use. Closing the lease does not close the archive.
+     */
+    public class Lease implements Closeable {
+        private final Entry entry;
+        private boolean closed = false;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public HD6Archive archive() {
+            return entry.archive;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (ArchiveCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                entry.leaseCount--;
+                if (entry.evicted && entry.leaseCount == 0) {
+                    entry.archive.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param capacity      how many archives may stay open when not in use
+     * @param useIndexCache whether archives are opened through their {@link IndexCache index cache}
+     */
+    public ArchiveCache(int capacity, boolean useIndexCache) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.useIndexCache = useIndexCache;
+    }
+
+    /**
+     * Gets an open archive, opening it if it is not in the cache or if its files changed since it was opened.
+     * Several threads may open the same archive at once; only one of them keeps it in the cache.
+     */
+    public Lease acquire(Path hd6Path) throws IOException {
+        Path key = hd6Path.toAbsolutePath().normalize();
+        Path datPath = Utils.hd6PathToDatPath(key);
+        BasicFileAttributes hd6Attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        BasicFileAttributes datAttributes = Files.readAttributes(datPath, BasicFileAttributes.class);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isStale(hd6Attributes, datAttributes)) {
+                return lease(entry);
+            }
+        }
+
+        // Open outside of the lock, so that a large archive does not hold up requests to other archives
+        HD6Archive archive = HD6Archive.open(key, datPath, useIndexCache);
+        try {
+            archive.getSortedNameHashes();
+            archive.getDatSegments();
+        } catch (IOException | RuntimeException e) {
+            archive.close();
+            throw e;
+        }
+        Entry newEntry = new Entry(archive, hd6Attributes, datAttributes);
+        synchronized (this) {
+            Entry oldEntry = entries.put(key, newEntry);
+            if (oldEntry != null) {
+                evict(oldEntry);
+            }
+            Lease lease = lease(newEntry);
+            evictLeastRecentlyUsed();
+            return lease;
+        }
+    }
+
+    /**
+     * @return how many archives are in the cache, leased or not
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Empties the cache. Leased archives are closed when their lease is.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Entry entry : entries.values()) {
+            evict(entry);
+        }
+        entries.clear();
+    }
+
+    private Lease lease(Entry entry) {
+        entry.leaseCount++;
+        return new Lease(entry);
+    }
+
+    private void evictLeastRecentlyUsed() throws IOException {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > capacity && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            evict(entry);
+        }
+    }
+
+    private void evict(Entry entry) throws IOException {
+        entry.evicted = true;
+        if (entry.leaseCount == 0) {
+            entry.archive.close();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * In-memory HD6 index, as read by {@link HD6Archive} and written by rebuilds.
+ * <p>
+ * Files are held in primitive columns: start offset, size and filename offset, the latter pointing into the filename
+ * table. Filenames are made of name chunks, each stored once as Shift JIS bytes in the name chunk data and referred to
+ * by its index in the filename table, as in the HD6 file itself. There is no object per file: an index takes a few
+ * tens of bytes per file, whatever the number of files.
+ * <p>
+ * The final dummy entry of HD6 files is not a file, only its filename offset is kept.
+ */
+public class FileIndex {
+    /**
+     * Largest start offset a file entry can hold: it keeps bits 11 to 32, next to the upper bits of the filename offset
+     */
+    public static final long MAX_START_OFFSET = 0xFFFFFCL << 0x9;
+    /**
+     * Largest file size a file entry can hold: it keeps bits 4 to 27, the size being rounded down to 0x10 bytes
+     */
+    public static final long MAX_FILE_SIZE = 0xFFFFFFFL;
+    /**
+     * Largest filename offset a file entry can hold: 16 bits of its own, and 2 bits next to the start offset
+     */
+    public static final int MAX_FILENAME_OFFSET = 0x3FFFF;
+    static final int HEADER_SIZE = 0x34;
+    private static final int MAGIC = 0x00364448; // HD6\0 in little endian
+    private static final Charset CS_SHIFT_JIS = Charset.forName("Shift_JIS");
+    private static final ThreadLocal<StringBuilder> NAME_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(260));
+
+    private final byte[] nameChunkData;
+    private final int nameChunkCount;
+    private final int[] nameChunkDataOffsetArr;
+    private final byte[] filenameTable;
+    private final int fileCount;
+    private final int[] filenameOffsetArr;
+    private final long[] startOffsetArr;
+    private final int[] fileSizeArr;
+    private volatile DecodedChunks decodedChunks;
+
+    /**
+     * Every name chunk decoded once, back to back, with {@code /} separators
+     */
+    private record DecodedChunks(char[] chars, int[] charOffsets) {
+    }
+
+    /**
+     * @param nameChunkData   NUL-terminated Shift JIS name chunks, the first one being empty
+     * @param nameChunkCount  the name chunk count to write in the header
+     * @param filenameTable   chunk indexes of every filename, each filename ending with a 0 index
+     * @param filenameOffsets offset of every filename in the filename table, followed by that of the final dummy entry
+     */
+    public FileIndex(byte[] nameChunkData, int nameChunkCount, byte[] filenameTable, int[] filenameOffsets,
+                     long[] startOffsets, int[] fileSizes) {
+        if (filenameOffsets.length != startOffsets.length + 1 || fileSizes.length != startOffsets.length) {
+            throw new IllegalArgumentException("Columns do not have the same length!");
+        }
+        this.nameChunkData = nameChunkData;
+        this.nameChunkCount = nameChunkCount;
+        this.nameChunkDataOffsetArr = getNameChunkDataOffsetArr(nameChunkData);
+        this.filenameTable = filenameTable;
+        this.fileCount = startOffsets.length;
+        this.filenameOffsetArr = filenameOffsets;
+        this.startOffsetArr = startOffsets;
+        this.fileSizeArr = fileSizes;
+    }
+
+    /**
+     * Reads the index of an HD6 file.
+     */
+    public static FileIndex read(ByteBuffer hd6) throws IOException {
+        hd6 = hd6.duplicate().order(LITTLE_ENDIAN);
+        // Read necessary informations from the header
+        if (hd6.limit() < HEADER_SIZE || hd6.getInt(0x0) != MAGIC) {
+            throw new IOException("Not an HD6 file!");
+        }
+        int p_nameChunkData = hd6.getInt(0x4);
+        int nameChunkDataSize = hd6.getInt(0x8);
+        int nameChunkCount = hd6.getInt(0xC);
+        int p_filenameTable = hd6.getInt(0x14);
+        int filenameTableSize = hd6.getInt(0x18);
+        int fileCount = hd6.getInt(0x24) - 1; // -1 is here to remove the final dummy
+        int p_fileEntries = hd6.getInt(0x28);
+        if (fileCount < 0 || outOfBounds(hd6, p_nameChunkData, nameChunkDataSize)
+                || outOfBounds(hd6, p_filenameTable, filenameTableSize)
+                || outOfBounds(hd6, p_fileEntries, fileCount * 8L)) {
+            throw new IOException("HD6 file is truncated or corrupted!");
+        }
+
+        byte[] nameChunkData = new byte[nameChunkDataSize];
+        hd6.get(p_nameChunkData, nameChunkData);
+        byte[] filenameTable = new byte[filenameTableSize];
+        hd6.get(p_filenameTable, filenameTable);
+
+        // Populate filename offset, start offset and file size arrays
+        int[] filenameOffsetArr = new int[fileCount + 1];
+        long[] startOffsetArr = new long[fileCount];
+        int[] fileSizeArr = new int[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            int entryOffset = p_fileEntries + i * 8;
+            int startOffsetField = uint24ToInt(hd6, entryOffset + 2);
+            filenameOffsetArr[i] = (hd6.getShort(entryOffset) & 0xFFFF) | ((startOffsetField & 0x3) << 0x10);
+            startOffsetArr[i] = (long) (startOffsetField & 0xFFFFFC) << 0x9; // bit magic
+            fileSizeArr[i] = uint24ToInt(hd6, entryOffset + 5) << 0x4;
+        }
+        // The dummy entry points after the last filename
+        int dummyEntryOffset = p_fileEntries + fileCount * 8;
+        filenameOffsetArr[fileCount] = outOfBounds(hd6, dummyEntryOffset, 8) ? filenameTableSize
+                : (hd6.getShort(dummyEntryOffset) & 0xFFFF) | ((hd6.get(dummyEntryOffset + 2) & 0x3) << 0x10);
+        return new FileIndex(nameChunkData, nameChunkCount, filenameTable, filenameOffsetArr, startOffsetArr,
+                fileSizeArr);
+    }
+
+    /**
+     * Writes the index to an HD6 file, built whole in memory first.
+     *
+     * @throws IOException if a file cannot be stored in a file entry, before anything is written
+     */
+    public void write(Path hd6Path) throws IOException {
+        for (int i = 0; i < fileCount; i++) {
+            if (startOffsetArr[i] < 0 || startOffsetArr[i] > MAX_START_OFFSET || startOffsetArr[i] % 0x800 != 0
+                    || fileSizeArr[i] < 0 || fileSizeArr[i] > MAX_FILE_SIZE) {
+                throw new IOException("File entry " + i + " cannot hold start offset " + startOffsetArr[i]
+                        + " and size " + fileSizeArr[i] + "!");
+            }
+        }
+        for (int i = 0; i <= fileCount; i++) { // the dummy entry included
+            if (filenameOffsetArr[i] < 0 || filenameOffsetArr[i] > MAX_FILENAME_OFFSET) {
+                throw new IOException("File entry " + i + " cannot hold filename offset " + filenameOffsetArr[i]
+                        + ", the filename table is too large!");
+            }
+        }
+        int nameChunkDataPadding = (0x4 - (HEADER_SIZE + nameChunkData.length) % 0x4) % 0x4;
+        int filenameTablePadding = (0x8 - filenameTable.length % 0x8) % 0x8;
+        int p_filenameTable = HEADER_SIZE + nameChunkData.length + nameChunkDataPadding;
+        int p_fileEntries = p_filenameTable + filenameTable.length + filenameTablePadding;
+        int hd6Size = p_fileEntries + (fileCount + 1) * 0x8; // +1 for last dummy
+
+        ByteBuffer hd6 = ByteBuffer.allocate(hd6Size).order(LITTLE_ENDIAN);
+        hd6.putInt(MAGIC);
+        hd6.putInt(HEADER_SIZE);
+        hd6.putInt(nameChunkData.length + nameChunkDataPadding);
+        hd6.putInt(nameChunkCount); // name chunk amount (with first and last null bytes)
+        hd6.putInt(0); // unk
+        hd6.putInt(p_filenameTable);
+        hd6.putInt(filenameTable.length + filenameTablePadding);
+        hd6.putInt(0); // unk
+        hd6.putInt(0x10); // unk
+        hd6.putInt(fileCount + 1); // fileCount, dummy included
+        hd6.putInt(p_fileEntries);
+        hd6.putInt(0); // unk
+        hd6.putInt(hd6Size);
+
+        hd6.put(nameChunkData);
+        hd6.position(hd6.position() + nameChunkDataPadding);
+        hd6.put(filenameTable);
+        for (int i = 0; i < filenameTablePadding; i++) {
+            hd6.put((byte) 0xCD);
+        }
+        for (int i = 0; i <= fileCount; i++) {
+            int filenameOffset = filenameOffsetArr[i];
+            hd6.putShort((short) filenameOffset);
+            putUint24(hd6, (i < fileCount ? (int) (startOffsetArr[i] >> 0x9) : 0) | (filenameOffset >> 0x10));
+            putUint24(hd6, i < fileCount ? fileSizeArr[i] >> 0x4 : 0); // the dummy is empty
+        }
+        hd6.flip();
+
+        try (FileChannel hd6Channel = FileChannel.open(hd6Path, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            while (hd6.hasRemaining()) {
+                hd6Channel.write(hd6);
+            }
+        }
+    }
+
+    /**
+     * @return the number of files, final dummy entry excluded
+     */
+    public int size() {
+        return fileCount;
+    }
+
+    public long getStartOffset(int index) {
+        return startOffsetArr[index];
+    }
+
+    public int getFileSize(int index) {
+        return fileSizeArr[index];
+    }
+
+    /**
+     * @return the start offset column, without copying it
+     */
+    LongBuffer startOffsets() {
+        return LongBuffer.wrap(startOffsetArr);
+    }
+
+    /**
+     * @return the file size column, without copying it
+     */
+    IntBuffer fileSizes() {
+        return IntBuffer.wrap(fileSizeArr);
+    }
+
+    /**
+     * Decodes the name of a file, with {@code /} separators.
+     * <p>
+     * Each name chunk is only decoded once per index: names are then put together from the decoded chunks, so that
+     * the returned string is the only allocation.
+     */
+    public String getName(int index) {
+        DecodedChunks chunks = getDecodedChunks();
+        StringBuilder nameBuilder = NAME_BUILDER.get();
+        nameBuilder.setLength(0);
+        for (int offset = filenameOffsetArr[index]; filenameTable[offset] != 0; offset += indexSize(offset)) {
+            int chunkIndex = chunkIndexAt(offset);
+            int charOffset = chunks.charOffsets[chunkIndex];
+            nameBuilder.append(chunks.chars, charOffset, chunks.charOffsets[chunkIndex + 1] - charOffset);
+        }
+        return nameBuilder.toString();
+    }
+
+    /**
+     * Gets the Shift JIS bytes of a filename, with {@code \} separators, without decoding them.
+     */
+    public byte[] getRawName(int index) {
+        // Measure the name first, so that its chunks are copied straight into an array of the right size
+        int rawNameLength = 0;
+        for (int offset = filenameOffsetArr[index]; filenameTable[offset] != 0; offset += indexSize(offset)) {
+            rawNameLength += chunkSize(chunkIndexAt(offset));
+        }
+        byte[] rawName = new byte[rawNameLength];
+        int rawNameOffset = 0;
+        for (int offset = filenameOffsetArr[index]; filenameTable[offset] != 0; offset += indexSize(offset)) {
+            int chunkIndex = chunkIndexAt(offset);
+            System.arraycopy(nameChunkData, nameChunkDataOffsetArr[chunkIndex], rawName, rawNameOffset,
+                    chunkSize(chunkIndex));
+            rawNameOffset += chunkSize(chunkIndex);
+        }
+        return rawName;
+    }
+
+    /**
+     * Feeds the Shift JIS bytes of a filename to a 32-bit FNV-1a hash, without putting the name together.
+     */
+    int hashRawName(int index, int hash, int prime) {
+        for (int offset = filenameOffsetArr[index]; filenameTable[offset] != 0; offset += indexSize(offset)) {
+            int chunkIndex = chunkIndexAt(offset);
+            int chunkOffset = nameChunkDataOffsetArr[chunkIndex];
+            for (int i = chunkOffset; i < chunkOffset + chunkSize(chunkIndex); i++) {
+                hash = (hash ^ (nameChunkData[i] & 0xFF)) * prime;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the size in bytes of the chunk index at the given filename table offset: 1 or 2
+     */
+    private int indexSize(int filenameTableOffset) {
+        return (filenameTable[filenameTableOffset] & 0x80) != 0 ? 2 : 1;
+    }
+
+    private int chunkIndexAt(int filenameTableOffset) {
+        byte b = filenameTable[filenameTableOffset];
+        if ((b & 0x80) != 0) { // 2-byte index
+            return (b & 0x7F) | ((filenameTable[filenameTableOffset + 1] & 0xFF) << 0x7);
+        } else { // 1-byte index
+            return b;
+        }
+    }
+
+    private int chunkSize(int chunkIndex) {
+        return nameChunkDataOffsetArr[chunkIndex + 1] - nameChunkDataOffsetArr[chunkIndex] - 1; // -1 for the NUL
+    }
+
+    private DecodedChunks getDecodedChunks() {
+        DecodedChunks chunks = decodedChunks;
+        if (chunks == null) {
+            synchronized (this) {
+                chunks = decodedChunks;
+                if (chunks == null) {
+                    chunks = decodeChunks(nameChunkData, nameChunkDataOffsetArr);
+                    decodedChunks = chunks;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Decodes every chunk on its own, like a whole name would be decoded: a malformed chunk cannot swallow the NUL
+     * ending it. A Shift JIS character is never shorter in bytes than in chars.
+     */
+    private static DecodedChunks decodeChunks(byte[] nameChunkData, int[] nameChunkDataOffsetArr) {
+        CharsetDecoder decoder = CS_SHIFT_JIS.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.wrap(nameChunkData);
+        CharBuffer chars = CharBuffer.allocate(nameChunkData.length);
+        int chunkCount = nameChunkDataOffsetArr.length - 1;
+        int[] charOffsets = new int[chunkCount + 1];
+        for (int i = 0; i < chunkCount; i++) {
+            charOffsets[i] = chars.position();
+            bytes.limit(nameChunkDataOffsetArr[i + 1] - 1).position(nameChunkDataOffsetArr[i]);
+            decoder.reset();
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+        }
+        charOffsets[chunkCount] = chars.position();
+
+        char[] charArr = chars.array();
+        for (int i = 0; i < charOffsets[chunkCount]; i++) {
+            if (charArr[i] == '\\') {
+                charArr[i] = '/';
+            }
+        }
+        return new DecodedChunks(charArr, charOffsets);
+    }
+
+    private static boolean outOfBounds(ByteBuffer bb, int offset, long length) {
+        return offset < 0 || length < 0 || offset + length > bb.limit();
+    }
+
+    static int uint24ToInt(ByteBuffer bb, int offset) {
+        return ((bb.get(offset) & 0xFF) | ((bb.get(offset + 1) & 0xFF) << 8) | ((bb.get(offset + 2) & 0xFF) << 16));
+    }
+
+    private static void putUint24(ByteBuffer bb, int val) {
+        bb.put((byte) (val & 0xFF));
+        bb.put((byte) ((val >> 0x8) & 0xFF));
+        bb.put((byte) ((val >> 0x10) & 0xFF));
+    }
+
+    static int[] getNameChunkDataOffsetArr(byte[] nameChunkData) {
+        int nulCount = 0;
+        for (byte b : nameChunkData) {
+            if (b == 0x00) {
+                nulCount++;
+            }
+        }
+        int[] offsetArr = new int[nulCount + 1];
+        int offsetCount = 1; // first offset is 0
+        for (int i = 0; i < nameChunkData.length; i++) {
+            if (nameChunkData[i] == 0x00) {
+                offsetArr[offsetCount++] = i + 1;
+            }
+        }
+        return offsetArr;
+    }
+}
@@ -0,0 +1,346 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import com.github.piorrro33.hd6tools.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Read-only, random-access view of an HD6/DAT pair.
+ * <p>
+ * Opening an archive only reads the HD6 index into a {@link FileIndex}, or maps its {@link IndexCache index cache}
+ * when asked to. Filenames are decoded on demand and not kept, so that the heap taken by an archive only depends on
+ * the size of its index, and the DAT is memory-mapped the first time a file is opened. Filenames use {@code /} as
+ * separator; {@link #find(String)} also accepts {@code \}.
+ * <p>
+ * A buffer cannot hold more than 2 GiB, while file entries address up to 8 GiB of DAT. The DAT is therefore mapped in
+ * segments of 1 GiB, each starting 768 MiB after the previous one: files being smaller than 256 MiB, every file lies
+ * whole within the segment in which it starts.
+ * <p>
+ * Instances are safe to use from several threads at once.
+ */
+public class HD6Archive implements Closeable {
+    private static final Charset CS_SHIFT_JIS = Charset.forName("Shift_JIS");
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final long DAT_SEGMENT_SIZE = 1L << 30;
+    private static final long DAT_SEGMENT_STEP = DAT_SEGMENT_SIZE - (1L << 28);
+
+    private final FileChannel datChannel;
+    private final int fileCount;
+    private final LongBuffer startOffsets;
+    private final IntBuffer fileSizes;
+    // Filenames come either from the index read from the HD6...
+    private final FileIndex fileIndex;
+    // ...or from the flat name blob of an index cache
+    private final ByteBuffer nameBlob;
+    private final IntBuffer nameBlobOffsets;
+    private volatile LongBuffer sortedNameHashes;
+    private volatile MappedByteBuffer[] datSegments;
+
+    private HD6Archive(FileChannel datChannel, FileIndex fileIndex) {
+        this.datChannel = datChannel;
+        this.fileIndex = fileIndex;
+        fileCount = fileIndex.size();
+        startOffsets = fileIndex.startOffsets();
+        fileSizes = fileIndex.fileSizes();
+        nameBlob = null;
+        nameBlobOffsets = null;
+    }
+
+    private HD6Archive(FileChannel datChannel, IndexCache.Columns columns) {
+        this.datChannel = datChannel;
+        fileIndex = null;
+        fileCount = columns.fileCount();
+        startOffsets = columns.startOffsets();
+        fileSizes = columns.fileSizes();
+        nameBlob = columns.nameBlob();
+        nameBlobOffsets = columns.nameBlobOffsets();
+        sortedNameHashes = columns.sortedNameHashes();
+    }
+
+    /**
+     * Opens the archive made of the given HD6 file and the DAT file next to it.
+     */
+    public static HD6Archive open(Path hd6Path) throws IOException {
+        return open(hd6Path, Utils.hd6PathToDatPath(hd6Path));
+    }
+
+    public static HD6Archive open(Path hd6Path, Path datPath) throws IOException {
+        return open(hd6Path, datPath, false);
+    }
+
+    /**
+     * @param useIndexCache whether to read the index from the {@link IndexCache index cache} next to the HD6 file,
+     *                      creating or refreshing it if needed. The archive is still opened if the cache cannot be
+     *                      written.
+     */
+    public static HD6Archive open(Path hd6Path, Path datPath, boolean useIndexCache) throws IOException {
+        IndexCache.Columns index = useIndexCache ? IndexCache.load(hd6Path) : null;
+        FileChannel datChannel = FileChannel.open(datPath, READ);
+        try {
+            if (index != null) {
+                return new HD6Archive(datChannel, index);
+            }
+            ByteBuffer hd6 = ByteBuffer.wrap(Files.readAllBytes(hd6Path)).order(LITTLE_ENDIAN);
+            HD6Archive archive = new HD6Archive(datChannel, FileIndex.read(hd6));
+            if (useIndexCache) {
+                IndexCache.write(hd6Path, hd6, archive);
+            }
+            return archive;
+        } catch (IOException | RuntimeException e) {
+            datChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of files in the archive, final dummy entry excluded
+     */
+    public int size() {
+        return fileCount;
+    }
+
+    public long getStartOffset(int index) {
+        return startOffsets.get(index);
+    }
+
+    public long getFileSize(int index) {
+        return fileSizes.get(index);
+    }
+
+    /**
+     * Decodes the name of a file. Names are not cached: callers needing one several times should keep it.
+     *
+     * @see FileIndex#getName(int)
+     */
+    public String getName(int index) {
+        if (nameBlob == null) {
+            return fileIndex.getName(index);
+        }
+        return CS_SHIFT_JIS.decode(ByteBuffer.wrap(getRawName(index))).toString().replace('\\', '/');
+    }
+
+    /**
+     * @return the names of all files, in archive order. Names are decoded as the list is read.
+     */
+    public List<String> list() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return getName(index);
+            }
+
+            @Override
+            public int size() {
+                return HD6Archive.this.size();
+            }
+        };
+    }
+
+    /**
+     * Looks a file up by name without decoding any other filename.
+     *
+     * @return the index of the file, or -1 if there is no such file
+     */
+    public int find(String name) {
+        ByteBuffer encodedName = CS_SHIFT_JIS.encode(name.replace('/', '\\'));
+        byte[] rawName = new byte[encodedName.remaining()];
+        encodedName.get(rawName);
+        int hash = hash(rawName, rawName.length);
+
+        LongBuffer hashes = getSortedNameHashes();
+        // Lower bound of the hash: the index part is never negative, so the key itself is never found
+        int low = 0;
+        int high = hashes.limit();
+        long key = (long) hash << 32;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashes.get(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < hashes.limit() && (int) (hashes.get(i) >> 32) == hash; i++) {
+            int index = (int) hashes.get(i);
+            if (Arrays.equals(rawName, getRawName(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a read-only buffer holding the contents of the file
+     * @throws NoSuchFileException if there is no file with this name in the archive
+     */
+    public ByteBuffer open(String name) throws IOException {
+        int index = find(name);
+        if (index < 0) {
+            throw new NoSuchFileException(name);
+        }
+        return open(index);
+    }
+
+    /**
+     * @return a read-only buffer holding the contents of the file, backed by the memory-mapped DAT
+     */
+    public ByteBuffer open(int index) throws IOException {
+        MappedByteBuffer[] segments = getDatSegments();
+        long startOffset = getStartOffset(index);
+        long fileSize = getFileSize(index);
+        // The last segment runs to the end of the DAT, which files may not go past
+        int segmentIndex = (int) Math.min(startOffset / DAT_SEGMENT_STEP, segments.length - 1);
+        MappedByteBuffer segment = segments[segmentIndex];
+        long offsetInSegment = startOffset - segmentIndex * DAT_SEGMENT_STEP;
+        if (offsetInSegment + fileSize > segment.capacity()) {
+            throw new IOException("File " + getName(index) + " goes past the end of the DAT file!");
+        }
+        return segment.slice((int) offsetInSegment, (int) fileSize);
+    }
+
+    /**
+     * @return the DAT file channel, for callers wanting to copy files with
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     */
+    public FileChannel getDatChannel() {
+        return datChannel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        datChannel.close();
+    }
+
+    /**
+     * Maps the whole DAT, in overlapping segments.
+     */
+    MappedByteBuffer[] getDatSegments() throws IOException {
+        MappedByteBuffer[] segments = datSegments;
+        if (segments == null) {
+            synchronized (this) {
+                segments = datSegments;
+                if (segments == null) {
+                    long datSize = datChannel.size();
+                    int segmentCount = datSize <= DAT_SEGMENT_SIZE ? 1
+                            : (int) ((datSize - DAT_SEGMENT_SIZE + DAT_SEGMENT_STEP - 1) / DAT_SEGMENT_STEP) + 1;
+                    segments = new MappedByteBuffer[segmentCount];
+                    for (int i = 0; i < segmentCount; i++) {
+                        long segmentStart = i * DAT_SEGMENT_STEP;
+                        segments[i] = datChannel.map(FileChannel.MapMode.READ_ONLY, segmentStart,
+                                Math.min(DAT_SEGMENT_SIZE, datSize - segmentStart));
+                    }
+                    datSegments = segments;
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Finds the files followed by a file with the same name, which an extraction would overwrite. Only names with the
+     * same hash are compared.
+     *
+     * @return the indexes of those files
+     */
+    public BitSet getOverwrittenFiles() {
+        LongBuffer hashes = getSortedNameHashes();
+        BitSet overwrittenFiles = new BitSet(fileCount);
+        int runStart = 0;
+        while (runStart < hashes.limit()) {
+            int runEnd = runStart + 1;
+            while (runEnd < hashes.limit() && (hashes.get(runEnd) >> 32) == (hashes.get(runStart) >> 32)) {
+                runEnd++;
+            }
+            // Within a run of equal hashes, file indexes are in increasing order
+            for (int i = runStart; i < runEnd - 1; i++) {
+                byte[] rawName = getRawName((int) hashes.get(i));
+                for (int j = i + 1; j < runEnd; j++) {
+                    if (Arrays.equals(rawName, getRawName((int) hashes.get(j)))) {
+                        overwrittenFiles.set((int) hashes.get(i));
+                        break;
+                    }
+                }
+            }
+            runStart = runEnd;
+        }
+        return overwrittenFiles;
+    }
+
+    /**
+     * @return the hash of every filename in the high half, its file index in the low half, sorted
+     */
+    LongBuffer getSortedNameHashes() {
+        LongBuffer hashes = sortedNameHashes;
+        if (hashes == null) {
+            synchronized (this) {
+                hashes = sortedNameHashes;
+                if (hashes == null) {
+                    long[] hashArr = new long[fileCount];
+                    for (int i = 0; i < fileCount; i++) {
+                        hashArr[i] = ((long) hashRawName(i) << 32) | i;
+                    }
+                    Arrays.sort(hashArr);
+                    hashes = LongBuffer.wrap(hashArr);
+                    sortedNameHashes = hashes;
+                }
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Gets the Shift JIS bytes of a filename, with {@code \} separators, without decoding them.
+     */
+    byte[] getRawName(int index) {
+        if (nameBlob == null) {
+            return fileIndex.getRawName(index);
+        }
+        int nameOffset = nameBlobOffsets.get(index);
+        byte[] rawName = new byte[nameBlobOffsets.get(index + 1) - nameOffset];
+        nameBlob.get(nameOffset, rawName);
+        return rawName;
+    }
+
+    /**
+     * Same as {@code hash(getRawName(index))}, without putting the name together.
+     */
+    private int hashRawName(int index) {
+        if (nameBlob == null) {
+            return fileIndex.hashRawName(index, FNV_OFFSET_BASIS, FNV_PRIME);
+        }
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = nameBlobOffsets.get(index); i < nameBlobOffsets.get(index + 1); i++) {
+            hash = (hash ^ (nameBlob.get(i) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 32-bit FNV-1a
+     */
+    private static int hash(byte[] ba, int length) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (ba[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
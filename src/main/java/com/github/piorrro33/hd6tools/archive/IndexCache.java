@@ -0,0 +1,212 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32C;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Sidecar file ({@code <name>.hd6.idx}) holding an HD6 index in a form that can be used straight from a memory
+ * mapping: no filename has to be decoded to open an archive again.
+ * <p>
+ * The cache is tied to the size, modification time and CRC32C of its HD6 file. The CRC is only checked when the
+ * modification time changed but not the size, which saves a rebuild of the cache after a plain copy of the HD6.
+ * <p>
+ * Layout, all little endian:
+ * <pre>
+ * 0x00  magic "HD6I", version
+ * 0x08  HD6 size, HD6 modification time (ms), HD6 CRC32C (all longs)
+ * 0x20  file count, name blob size
+ * 0x28  sorted name hashes (long[fileCount], hash in the high half, file index in the low half)
+ *       start offsets (long[fileCount])
+ *       file sizes (int[fileCount])
+ *       name offsets in the blob (int[fileCount + 1])
+ *       name blob (Shift JIS filenames with \ separators, back to back)
+ * </pre>
+ */
+public class IndexCache {
+    private static final int MAGIC = 0x49364448; // HD6I in little endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 0x28;
+
+    record Columns(int fileCount, LongBuffer sortedNameHashes, LongBuffer startOffsets, IntBuffer fileSizes,
+                   IntBuffer nameBlobOffsets, ByteBuffer nameBlob) {
+    }
+
+    public static Path getIndexCachePath(Path hd6Path) {
+        return hd6Path.resolveSibling(hd6Path.getFileName() + ".idx");
+    }
+
+    /**
+     * Deletes the index cache of an HD6 file that is about to be replaced.
+     */
+    public static void invalidate(Path hd6Path) throws IOException {
+        Files.deleteIfExists(getIndexCachePath(hd6Path));
+    }
+
+    /**
+     * @return the columns of the cached index, or null if there is no cache, or if it is stale or inconsistent
+     */
+    static Columns load(Path hd6Path) {
+        Path indexCachePath = getIndexCachePath(hd6Path);
+        MappedByteBuffer index;
+        try (FileChannel channel = FileChannel.open(indexCachePath, READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            return null; // no usable cache
+        }
+        index.order(LITTLE_ENDIAN);
+        try {
+            if (index.limit() < HEADER_SIZE || index.getInt(0x0) != MAGIC || index.getInt(0x4) != VERSION) {
+                return null;
+            }
+            BasicFileAttributes hd6Attributes = Files.readAttributes(hd6Path, BasicFileAttributes.class);
+            if (index.getLong(0x8) != hd6Attributes.size()) {
+                return null;
+            }
+            long hd6ModifiedTime = hd6Attributes.lastModifiedTime().toMillis();
+            if (index.getLong(0x10) != hd6ModifiedTime) {
+                if (index.getLong(0x18) != crc32c(ByteBuffer.wrap(Files.readAllBytes(hd6Path)))) {
+                    return null;
+                }
+                updateModifiedTime(indexCachePath, hd6ModifiedTime);
+            }
+
+            int fileCount = index.getInt(0x20);
+            int nameBlobSize = index.getInt(0x24);
+            long expectedSize = HEADER_SIZE + fileCount * 20L + (fileCount + 1) * 4L + nameBlobSize;
+            if (fileCount < 0 || nameBlobSize < 0 || index.limit() != expectedSize) {
+                return null;
+            }
+            int position = HEADER_SIZE;
+            LongBuffer sortedNameHashes = index.slice(position, fileCount * 8).order(LITTLE_ENDIAN).asLongBuffer();
+            position += fileCount * 8;
+            LongBuffer startOffsets = index.slice(position, fileCount * 8).order(LITTLE_ENDIAN).asLongBuffer();
+            position += fileCount * 8;
+            IntBuffer fileSizes = index.slice(position, fileCount * 4).order(LITTLE_ENDIAN).asIntBuffer();
+            position += fileCount * 4;
+            IntBuffer nameBlobOffsets = index.slice(position, (fileCount + 1) * 4).order(LITTLE_ENDIAN).asIntBuffer();
+            position += (fileCount + 1) * 4;
+            ByteBuffer nameBlob = index.slice(position, nameBlobSize);
+            if (!isConsistent(fileCount, nameBlobSize, sortedNameHashes, startOffsets, fileSizes, nameBlobOffsets)) {
+                return null;
+            }
+            return new Columns(fileCount, sortedNameHashes, startOffsets, fileSizes, nameBlobOffsets, nameBlob);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that the columns of a cache of the expected size can be read without going out of bounds, as the CRC of
+     * the HD6 file does not cover a corrupted or edited cache.
+     */
+    private static boolean isConsistent(int fileCount, int nameBlobSize, LongBuffer sortedNameHashes,
+                                        LongBuffer startOffsets, IntBuffer fileSizes, IntBuffer nameBlobOffsets) {
+        if (nameBlobOffsets.get(0) != 0 || nameBlobOffsets.get(fileCount) != nameBlobSize) {
+            return false;
+        }
+        for (int i = 0; i < fileCount; i++) {
+            int fileIndex = (int) sortedNameHashes.get(i);
+            if (nameBlobOffsets.get(i + 1) < nameBlobOffsets.get(i) || fileSizes.get(i) < 0
+                    || startOffsets.get(i) < 0 || fileIndex < 0 || fileIndex >= fileCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the index cache of an archive freshly read from its HD6 file. The cache is written to a temporary file
+     * first, so that other processes never see a partial cache. Failing to write it is not an error.
+     */
+    static void write(Path hd6Path, ByteBuffer hd6, HD6Archive archive) {
+        int fileCount = archive.size();
+        byte[][] rawNames = new byte[fileCount][];
+        int nameBlobSize = 0;
+        for (int i = 0; i < fileCount; i++) {
+            rawNames[i] = archive.getRawName(i);
+            nameBlobSize += rawNames[i].length;
+        }
+
+        Path indexCachePath = getIndexCachePath(hd6Path);
+        Path tempPath = null;
+        try {
+            BasicFileAttributes hd6Attributes = Files.readAttributes(hd6Path, BasicFileAttributes.class);
+            ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE + fileCount * 20 + (fileCount + 1) * 4 + nameBlobSize)
+                    .order(LITTLE_ENDIAN);
+            index.putInt(MAGIC);
+            index.putInt(VERSION);
+            index.putLong(hd6Attributes.size());
+            index.putLong(hd6Attributes.lastModifiedTime().toMillis());
+            index.putLong(crc32c(hd6.duplicate().clear()));
+            index.putInt(fileCount);
+            index.putInt(nameBlobSize);
+            LongBuffer sortedNameHashes = archive.getSortedNameHashes();
+            for (int i = 0; i < fileCount; i++) {
+                index.putLong(sortedNameHashes.get(i));
+            }
+            for (int i = 0; i < fileCount; i++) {
+                index.putLong(archive.getStartOffset(i));
+            }
+            for (int i = 0; i < fileCount; i++) {
+                index.putInt((int) archive.getFileSize(i));
+            }
+            int nameOffset = 0;
+            for (int i = 0; i < fileCount; i++) {
+                index.putInt(nameOffset);
+                nameOffset += rawNames[i].length;
+            }
+            index.putInt(nameOffset);
+            for (byte[] rawName : rawNames) {
+                index.put(rawName);
+            }
+            index.flip();
+
+            tempPath = Files.createTempFile(indexCachePath.toAbsolutePath().getParent(),
+                    indexCachePath.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tempPath, WRITE, TRUNCATE_EXISTING)) {
+                while (index.hasRemaining()) {
+                    channel.write(index);
+                }
+            }
+            Files.move(tempPath, indexCachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cache is only an optimization, e.g. the HD6 may be in a read-only folder
+            if (tempPath != null) {
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the new modification time of an HD6 file whose contents did not change, so that its CRC does not have
+     * to be computed again next time.
+     */
+    private static void updateModifiedTime(Path indexCachePath, long hd6ModifiedTime) {
+        try (FileChannel channel = FileChannel.open(indexCachePath, WRITE)) {
+            channel.write(ByteBuffer.allocate(8).order(LITTLE_ENDIAN).putLong(0, hd6ModifiedTime), 0x10);
+        } catch (IOException ignored) {
+            // The CRC will simply be checked again
+        }
+    }
+
+    private static long crc32c(ByteBuffer bb) {
+        CRC32C crc = new CRC32C();
+        crc.update(bb);
+        return crc.getValue();
+    }
+}
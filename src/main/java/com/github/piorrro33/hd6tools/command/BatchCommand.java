@@ -0,0 +1,189 @@
+package com.github.piorrro33.hd6tools.command;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.operation.Batch;
+import com.github.piorrro33.hd6tools.operation.Job;
+import com.github.piorrro33.hd6tools.operation.OperationOptions;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+@Command(name = "batch", description = "Run many extractions and rebuilds in a single process.",
+        mixinStandardHelpOptions = true)
+public class BatchCommand implements Callable<Integer> {
+    @Parameters(index = "0", paramLabel = "SOURCE", description = """
+            A folder: extract every HD6 file in it and its subfolders, each next to itself.
+            A manifest file: run the jobs it lists, one per line, "extract HD6 [FOLDER]" or "rebuild FOLDER [HD6]".
+            Relative paths are relative to the manifest. Paths with spaces go between double quotes, # starts \
+            a comment.""")
+    private Path sourcePath;
+
+    @Option(names = {"-t", "--threads"}, paramLabel = "N",
+            description = "Number of files copied in parallel, all jobs included (default: number of CPU cores).")
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = {"-j", "--jobs"}, paramLabel = "N", description = "Number of jobs run at the same time (default: 1).")
+    private int concurrentJobCount = 1;
+
+    @Option(names = "--index-cache",
+            description = "Extract: read the HD6 index from an .hd6.idx cache file, creating it if needed.")
+    private boolean useIndexCache;
+
+    @Option(names = "--incremental", description = """
+            Rebuild: only rewrite the files whose size or contents differ from the existing HD6/DAT files.""")
+    private boolean incremental;
+
+    @Option(names = "--trust-mtime", description = """
+            Rebuild: with --incremental, skip files of the same size not modified since the HD6/DAT files were \
+            written without reading them. Misses files copied with their original time.""")
+    private boolean trustModifiedTimes;
+
+    @Option(names = "--compact-names",
+            description = "Rebuild: merge name chunks often found together if it makes the HD6 file smaller.")
+    private boolean compactFilenames;
+
+    @Option(names = "--dedup", description = "Rebuild: store files with identical contents only once in the DAT.")
+    private boolean deduplicate;
+
+    @Option(names = "--direct-io",
+            description = "Read and write DAT files with direct I/O, bypassing the page cache, where supported.")
+    private boolean directIO;
+
+    @Option(names = "--metrics", paramLabel = "FILE",
+            description = "Write the outcome and metrics of every job to FILE, as JSON.")
+    private Path metricsPath;
+
+    @Override
+    public Integer call() {
+        if (threadCount < 1 || concurrentJobCount < 1) {
+            System.err.println("Error: thread and job counts must be at least 1!");
+            return CommandLine.ExitCode.USAGE;
+        }
+        List<Job> jobs;
+        try {
+            jobs = Files.isDirectory(sourcePath) ? findHD6Files(sourcePath) : readManifest(sourcePath);
+        } catch (IOException e) {
+            System.err.println("Could not read batch source! " + e.getLocalizedMessage());
+            return CommandLine.ExitCode.USAGE;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return CommandLine.ExitCode.USAGE;
+        }
+
+        OperationOptions options = new OperationOptions()
+                .setThreadCount(threadCount)
+                .setUseIndexCache(useIndexCache)
+                .setIncremental(incremental)
+                .setTrustModifiedTimes(trustModifiedTimes)
+                .setCompactFilenames(compactFilenames)
+                .setDeduplicate(deduplicate)
+                .setDirectIO(directIO);
+        List<Batch.Result> results = new Batch(options, concurrentJobCount).run(jobs);
+
+        System.out.println("Batch summary:");
+        int failedCount = 0;
+        for (Batch.Result result : results) {
+            System.out.printf("%-6s %9.1f s  %s%n", result.successful() ? "OK" : "FAILED",
+                    result.wallTimeNanos() / 1e9, result.job());
+            if (!result.successful()) {
+                failedCount++;
+            }
+        }
+        System.out.println(failedCount + " of " + results.size() + " job(s) failed.");
+        if (metricsPath != null) {
+            try {
+                Files.writeString(metricsPath, Batch.toJson(results));
+            } catch (IOException e) {
+                System.err.println("Could not write metrics file! " + e.getLocalizedMessage());
+            }
+        }
+        return failedCount == 0 ? 0 : 1;
+    }
+
+    private static List<Job> findHD6Files(Path folderPath) throws IOException {
+        try (Stream<Path> walk = Files.walk(folderPath)) {
+            return walk.filter(path -> Utils.isPathToHD6(path) && Files.isRegularFile(path))
+                    .sorted()
+                    .map(hd6Path -> Job.extract(hd6Path, null))
+                    .toList();
+        }
+    }
+
+    private static List<Job> readManifest(Path manifestPath) throws IOException {
+        Path baseFolderPath = manifestPath.toAbsolutePath().getParent();
+        List<String> lines = Files.readAllLines(manifestPath);
+        List<Job> jobs = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            List<String> fields = splitManifestLine(lines.get(i));
+            if (fields.isEmpty()) {
+                continue;
+            }
+            if (fields.size() > 3) {
+                throw new IllegalArgumentException("manifest line " + (i + 1) + " has too many fields!");
+            }
+            Path firstPath = fields.size() > 1 ? baseFolderPath.resolve(fields.get(1)) : null;
+            Path secondPath = fields.size() > 2 ? baseFolderPath.resolve(fields.get(2)) : null;
+            switch (fields.get(0)) {
+                case "extract" -> {
+                    if (firstPath == null || !Utils.isPathToHD6(firstPath)) {
+                        throw new IllegalArgumentException("manifest line " + (i + 1) + " does not name an HD6 file!");
+                    }
+                    jobs.add(Job.extract(firstPath, secondPath));
+                }
+                case "rebuild" -> {
+                    if (firstPath == null || (secondPath != null && !Utils.isPathToHD6(secondPath))) {
+                        throw new IllegalArgumentException("manifest line " + (i + 1) +
+                                " needs a source folder and optionally an HD6 file!");
+                    }
+                    jobs.add(Job.rebuild(firstPath, secondPath));
+                }
+                default -> throw new IllegalArgumentException("manifest line " + (i + 1) +
+                        " does not start with extract or rebuild!");
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Splits a manifest line on blanks, keeping blanks between double quotes. Everything from a # on is ignored.
+     */
+    static List<String> splitManifestLine(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                if (field == null) {
+                    field = new StringBuilder();
+                }
+            } else if (!quoted && c == '#') {
+                break;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                if (field != null) {
+                    fields.add(field.toString());
+                    field = null;
+                }
+            } else {
+                if (field == null) {
+                    field = new StringBuilder();
+                }
+                field.append(c);
+            }
+        }
+        if (field != null) {
+            fields.add(field.toString());
+        }
+        return fields;
+    }
+}
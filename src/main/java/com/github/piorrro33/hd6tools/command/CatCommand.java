@@ -0,0 +1,50 @@
+package com.github.piorrro33.hd6tools.command;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(name = "cat", description = "Write the contents of files from an HD6/DAT archive to standard output.",
+        mixinStandardHelpOptions = true)
+public class CatCommand implements Callable<Integer> {
+    @Parameters(index = "0", paramLabel = "HD6", description = "Path to HD6 file.")
+    private Path hd6Path;
+
+    @Option(names = "--index-cache",
+            description = "Read the HD6 index from an .hd6.idx cache file, creating it if needed.")
+    private boolean useIndexCache;
+
+    @Parameters(index = "1..*", arity = "1..*", paramLabel = "NAME", description = "Names of the files to print.")
+    private String[] names;
+
+    @Override
+    public Integer call() {
+        try (HD6Archive archive = HD6Archive.open(hd6Path, Utils.hd6PathToDatPath(hd6Path), useIndexCache)) {
+            FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+            for (String name : names) {
+                ByteBuffer fileData = archive.open(name);
+                while (fileData.hasRemaining()) {
+                    out.write(fileData);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            System.err.println("No such file in archive: " + e.getFile());
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Could not read archive! " + e.getLocalizedMessage());
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.piorrro33.hd6tools.command;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.operation.ArchiveComparison;
+import com.github.piorrro33.hd6tools.operation.OperationOptions;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(name = "diff", description = "List the files added, removed and modified between two HD6/DAT archives.",
+        mixinStandardHelpOptions = true)
+public class DiffCommand implements Callable<Integer> {
+    @Parameters(index = "0", paramLabel = "OLD_HD6", description = "Path to the HD6 file of the old archive.")
+    private Path oldHD6Path;
+
+    @Parameters(index = "1", paramLabel = "NEW_HD6", description = "Path to the HD6 file of the new archive.")
+    private Path newHD6Path;
+
+    @Option(names = "--export", paramLabel = "FOLDER",
+            description = "Also write the added and modified files of the new archive to FOLDER.")
+    private Path exportFolderPath;
+
+    @Option(names = {"-t", "--threads"}, paramLabel = "N",
+            description = "Number of files compared in parallel (default: number of CPU cores).")
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--index-cache",
+            description = "Read the HD6 indexes from .hd6.idx cache files, creating them if needed.")
+    private boolean useIndexCache;
+
+    @Override
+    public Integer call() {
+        if (threadCount < 1) {
+            System.err.println("Error: thread count must be at least 1!");
+            return CommandLine.ExitCode.USAGE;
+        }
+        OperationOptions options = new OperationOptions()
+                .setThreadCount(threadCount)
+                .setUseIndexCache(useIndexCache);
+        ArchiveComparison.Result result;
+        try {
+            result = ArchiveComparison.perform(oldHD6Path, Utils.hd6PathToDatPath(oldHD6Path), newHD6Path,
+                    Utils.hd6PathToDatPath(newHD6Path), exportFolderPath, options);
+        } catch (IOException e) {
+            System.err.println("Could not compare archives! " + e.getLocalizedMessage());
+            return 1;
+        }
+
+        result.removedFiles().forEach(name -> System.out.println("D " + name));
+        result.addedFiles().forEach(name -> System.out.println("A " + name));
+        result.modifiedFiles().forEach(name -> System.out.println("M " + name));
+        System.out.println(result.unchangedFileCount() + " file(s) unchanged, " + result.addedFiles().size()
+                + " added, " + result.removedFiles().size() + " removed, " + result.modifiedFiles().size()
+                + " modified.");
+        return result.isIdentical() ? 0 : 1;
+    }
+}
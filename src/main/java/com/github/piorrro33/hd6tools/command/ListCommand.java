@@ -0,0 +1,47 @@
+package com.github.piorrro33.hd6tools.command;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(name = "list", description = "List the files of an HD6/DAT archive.", mixinStandardHelpOptions = true)
+public class ListCommand implements Callable<Integer> {
+    @Parameters(index = "0", paramLabel = "HD6", description = "Path to HD6 file.")
+    private Path hd6Path;
+
+    @Option(names = "--index-cache",
+            description = "Read the HD6 index from an .hd6.idx cache file, creating it if needed.")
+    private boolean useIndexCache;
+
+    @Option(names = {"-l", "--long"}, description = "Also print the start offset and size of each file.")
+    private boolean longFormat;
+
+    @Override
+    public Integer call() {
+        try (HD6Archive archive = HD6Archive.open(hd6Path, Utils.hd6PathToDatPath(hd6Path), useIndexCache)) {
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+            for (int i = 0; i < archive.size(); i++) {
+                if (longFormat) {
+                    out.printf("%#010x %10d %s%n", archive.getStartOffset(i), archive.getFileSize(i),
+                            archive.getName(i));
+                } else {
+                    out.println(archive.getName(i));
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Could not read archive! " + e.getLocalizedMessage());
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.piorrro33.hd6tools.command;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.operation.OperationOptions;
+import com.github.piorrro33.hd6tools.operation.StreamReconstruction;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(name = "repack", description = "Rebuild an HD6/DAT archive in one pass from another archive or a tar stream.",
+        mixinStandardHelpOptions = true)
+public class RepackCommand implements Callable<Integer> {
+    @Parameters(index = "0", paramLabel = "SOURCE",
+            description = "An HD6 file, a tar file, or - to read a tar stream from standard input.")
+    private String source;
+
+    @Parameters(index = "1", paramLabel = "HD6", description = "Path to the HD6 file to write, next to its DAT file.")
+    private Path hd6Path;
+
+    @Option(names = {"-t", "--threads"}, paramLabel = "N",
+            description = "Number of threads used to build the filename dictionary (default: number of CPU cores).")
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--index-cache",
+            description = "Read the source HD6 index from an .hd6.idx cache file, creating it if needed.")
+    private boolean useIndexCache;
+
+    @Option(names = "--compact-names",
+            description = "Merge name chunks often found together if it makes the HD6 file smaller.")
+    private boolean compactFilenames;
+
+    @Option(names = "--dedup", description = "Store files with identical contents only once in the DAT.")
+    private boolean deduplicate;
+
+    @Option(names = {"-y", "--yes"}, description = "Overwrite existing files without asking.")
+    private boolean assumeYes;
+
+    @Override
+    public Integer call() {
+        if (threadCount < 1) {
+            System.err.println("Error: thread count must be at least 1!");
+            return CommandLine.ExitCode.USAGE;
+        }
+        if (!Utils.isPathToHD6(hd6Path)) {
+            System.err.println("Error: " + hd6Path + " is not an HD6 file path!");
+            return CommandLine.ExitCode.USAGE;
+        }
+        OperationOptions options = new OperationOptions()
+                .setThreadCount(threadCount)
+                .setUseIndexCache(useIndexCache)
+                .setCompactFilenames(compactFilenames)
+                .setDeduplicate(deduplicate)
+                .setAssumeYes(assumeYes);
+        Path datPath = Utils.hd6PathToDatPath(hd6Path);
+
+        boolean isSuccessful;
+        if (source.equals("-")) {
+            if (!assumeYes && (Files.exists(hd6Path) || Files.exists(datPath))) {
+                // Standard input holds the tar stream, so there is no way to ask
+                System.err.println("Error: the destination files exist, use --yes to overwrite them!");
+                return CommandLine.ExitCode.USAGE;
+            }
+            isSuccessful = StreamReconstruction.performFromTar(new BufferedInputStream(System.in), datPath, hd6Path,
+                    options);
+        } else {
+            Path sourcePath = Path.of(source);
+            if (!Files.isRegularFile(sourcePath)) {
+                System.err.println("Error: " + sourcePath + " is not a file!");
+                return CommandLine.ExitCode.USAGE;
+            }
+            if (Utils.isPathToHD6(sourcePath)) {
+                isSuccessful = StreamReconstruction.performFromArchive(sourcePath, Utils.hd6PathToDatPath(sourcePath),
+                        datPath, hd6Path, options);
+            } else {
+                try (InputStream tarStream = new BufferedInputStream(Files.newInputStream(sourcePath))) {
+                    isSuccessful = StreamReconstruction.performFromTar(tarStream, datPath, hd6Path, options);
+                } catch (IOException e) {
+                    System.err.println("Could not read tar file! " + e.getLocalizedMessage());
+                    return 1;
+                }
+            }
+        }
+        if (isSuccessful) {
+            System.out.println("Operation completed.");
+            return 0;
+        } else {
+            System.err.println("Operation failed.");
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.piorrro33.hd6tools.command;
+
+import com.github.piorrro33.hd6tools.archive.ArchiveCache;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the archives found under a folder over HTTP:
+ * <ul>
+ * <li>{@code GET /path/to/archive.hd6} lists the files of the archive, one "size TAB name" line per file</li>
+ * <li>{@code GET /path/to/archive.hd6/name/of/file} returns the contents of a file</li>
+ * </ul>
+ */
+@Command(name = "serve", description = "Serve the files of the HD6/DAT archives in a folder over HTTP.",
+        mixinStandardHelpOptions = true)
+public class ServeCommand implements Callable<Integer> {
+    @Parameters(index = "0", arity = "0..1", paramLabel = "FOLDER",
+            description = "Folder holding the archives to serve (default: current folder).")
+    private Path rootPath = Path.of("");
+
+    @Option(names = {"-p", "--port"}, paramLabel = "PORT", description = "Port to listen on (default: 8066).")
+    private int port = 8066;
+
+    @Option(names = "--bind", paramLabel = "ADDRESS",
+            description = "Address to listen on (default: 127.0.0.1). Archives are served without authentication.")
+    private String bindAddress = "127.0.0.1";
+
+    @Option(names = {"-t", "--threads"}, paramLabel = "N",
+            description = "Number of requests handled at the same time (default: number of CPU cores).")
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--max-open-archives", paramLabel = "N",
+            description = "Number of archives kept open between requests (default: 16).")
+    private int maxOpenArchives = 16;
+
+    @Option(names = "--index-cache",
+            description = "Read HD6 indexes from .hd6.idx cache files, creating them if needed.")
+    private boolean useIndexCache;
+
+    private Path absRootPath;
+    private ArchiveCache archiveCache;
+
+    @Override
+    public Integer call() throws Exception {
+        if (threadCount < 1 || maxOpenArchives < 1) {
+            System.err.println("Error: thread count and max open archives must be at least 1!");
+            return CommandLine.ExitCode.USAGE;
+        }
+        if (!Files.isDirectory(rootPath)) {
+            System.err.println("Error: FOLDER is not a folder!");
+            return CommandLine.ExitCode.USAGE;
+        }
+        absRootPath = rootPath.toAbsolutePath().normalize();
+        archiveCache = new ArchiveCache(maxOpenArchives, useIndexCache);
+
+        // Headers and body go out in separate writes: without this, Nagle's algorithm delays most responses by ~40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(bindAddress), port), 0);
+        } catch (IOException e) {
+            System.err.println("Could not listen on " + bindAddress + ":" + port + "! " + e.getLocalizedMessage());
+            return 1;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        System.out.println("Serving " + absRootPath + " on http://" + bindAddress + ":" + server.getAddress().getPort() +
+                "/ (Ctrl+C to stop)");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            executor.shutdown();
+            try {
+                archiveCache.close();
+            } catch (IOException ignored) {
+            }
+            stopped.countDown();
+        }));
+        stopped.await();
+        return 0;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendText(exchange, 405, "Only GET is supported.");
+                return;
+            }
+            // Split "/folder/archive.hd6/entry/name" after the archive name
+            String path = exchange.getRequestURI().getPath();
+            int hd6End = path.toLowerCase(Locale.ROOT).indexOf(".hd6");
+            while (hd6End >= 0 && hd6End + 4 < path.length() && path.charAt(hd6End + 4) != '/') {
+                hd6End = path.toLowerCase(Locale.ROOT).indexOf(".hd6", hd6End + 1);
+            }
+            if (hd6End < 0) {
+                sendText(exchange, 404, "Not a path to an HD6 file.");
+                return;
+            }
+            Path hd6Path = absRootPath.resolve(path.substring(1, hd6End + 4)).normalize();
+            if (!hd6Path.startsWith(absRootPath)) {
+                sendText(exchange, 403, "Outside of the served folder.");
+                return;
+            }
+            String entryName = hd6End + 5 < path.length() ? path.substring(hd6End + 5) : null;
+
+            try (ArchiveCache.Lease lease = archiveCache.acquire(hd6Path)) {
+                HD6Archive archive = lease.archive();
+                if (entryName == null) {
+                    sendListing(exchange, archive);
+                    return;
+                }
+                int index = archive.find(entryName);
+                if (index < 0) {
+                    sendText(exchange, 404, "No such file in archive: " + entryName);
+                    return;
+                }
+                ByteBuffer fileData = archive.open(index);
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                exchange.sendResponseHeaders(200, fileData.remaining() == 0 ? -1 : fileData.remaining());
+                if (fileData.hasRemaining()) {
+                    WritableByteChannel body = Channels.newChannel(exchange.getResponseBody());
+                    while (fileData.hasRemaining()) {
+                        body.write(fileData);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                sendText(exchange, 404, "No such archive: " + e.getFile());
+            } catch (IOException e) {
+                // Once headers are sent, e.g. when the client went away during the body, only closing is left to do
+                if (exchange.getResponseCode() < 0) {
+                    sendText(exchange, 500, "Could not read archive! " + e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    private static void sendListing(HttpExchange exchange, HD6Archive archive) throws IOException {
+        StringBuilder listing = new StringBuilder(archive.size() * 32);
+        for (int i = 0; i < archive.size(); i++) {
+            listing.append(archive.getFileSize(i)).append('\t').append(archive.getName(i)).append('\n');
+        }
+        sendText(exchange, 200, listing.toString());
+    }
+
+    private static void sendText(HttpExchange exchange, int statusCode, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.piorrro33.hd6tools.command;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.operation.OperationOptions;
+import com.github.piorrro33.hd6tools.operation.Verification;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(name = "verify", description = "Check a folder against an HD6/DAT archive without extracting it.",
+        mixinStandardHelpOptions = true)
+public class VerifyCommand implements Callable<Integer> {
+    @Parameters(index = "0", paramLabel = "HD6", description = "Path to HD6 file.")
+    private Path hd6Path;
+
+    @Parameters(index = "1", arity = "0..1", paramLabel = "FOLDER",
+            description = "Folder to check (default: folder named after the HD6 file).")
+    private Path folderPath;
+
+    @Option(names = {"-t", "--threads"}, paramLabel = "N",
+            description = "Number of files compared in parallel (default: number of CPU cores).")
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--index-cache",
+            description = "Read the HD6 index from an .hd6.idx cache file, creating it if needed.")
+    private boolean useIndexCache;
+
+    @Override
+    public Integer call() {
+        if (threadCount < 1) {
+            System.err.println("Error: thread count must be at least 1!");
+            return CommandLine.ExitCode.USAGE;
+        }
+        Path folder = folderPath != null ? folderPath : Utils.hd6PathToFolderPath(hd6Path);
+        if (!Files.isDirectory(folder)) {
+            System.err.println("Error: " + folder + " is not a folder!");
+            return CommandLine.ExitCode.USAGE;
+        }
+
+        OperationOptions options = new OperationOptions()
+                .setThreadCount(threadCount)
+                .setUseIndexCache(useIndexCache);
+        Verification.Result result;
+        try {
+            result = Verification.perform(Utils.hd6PathToDatPath(hd6Path), hd6Path, folder, options);
+        } catch (IOException e) {
+            System.err.println("Could not verify archive! " + e.getLocalizedMessage());
+            return 1;
+        }
+
+        result.differingFiles().forEach(name -> System.out.println("Differs: " + name));
+        result.missingFiles().forEach(name -> System.out.println("Missing: " + name));
+        result.extraFiles().forEach(name -> System.out.println("Extra:   " + name));
+        System.out.println(result.matchingFileCount() + " file(s) match, " + result.differingFiles().size()
+                + " differ, " + result.missingFiles().size() + " missing, " + result.extraFiles().size() + " extra.");
+        return result.isMatching() ? 0 : 1;
+    }
+}
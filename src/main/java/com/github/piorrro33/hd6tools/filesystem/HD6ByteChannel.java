@@ -0,0 +1,85 @@
+package com.github.piorrro33.hd6tools.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only channel over the contents of a file of an archive, backed by the memory-mapped DAT.
+ */
+class HD6ByteChannel implements SeekableByteChannel {
+    private final ByteBuffer contents;
+    /**
+     * May be past the end of the contents, as a seekable channel allows
+     */
+    private long position = 0;
+    private volatile boolean open = true;
+
+    HD6ByteChannel(ByteBuffer contents) {
+        this.contents = contents.slice();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= contents.limit()) {
+            return -1;
+        }
+        int length = (int) Math.min(dst.remaining(), contents.limit() - position);
+        dst.put(dst.position(), contents, (int) position, length);
+        dst.position(dst.position() + length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position " + newPosition);
+        }
+        // Reading past the end returns -1, as with other channels
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return contents.limit();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
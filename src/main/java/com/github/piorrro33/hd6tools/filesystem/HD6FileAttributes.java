@@ -0,0 +1,52 @@
+package com.github.piorrro33.hd6tools.filesystem;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Attributes of a file or folder of an archive. HD6 archives store no times, so every time is the last modified time
+ * of the HD6 file.
+ *
+ * @param index index of the file in the archive, or -1 for a folder
+ */
+record HD6FileAttributes(FileTime time, int index, long size) implements BasicFileAttributes {
+    @Override
+    public FileTime lastModifiedTime() {
+        return time;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return time;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return time;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return index >= 0;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return index < 0;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public Object fileKey() {
+        return index >= 0 ? index : null;
+    }
+}
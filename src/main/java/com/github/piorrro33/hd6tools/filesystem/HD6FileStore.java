@@ -0,0 +1,70 @@
+package com.github.piorrro33.hd6tools.filesystem;
+
+import java.nio.file.FileStore;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+/**
+ * The single, read-only store of an {@link HD6FileSystem}, as large as its HD6 and DAT files.
+ */
+class HD6FileStore extends FileStore {
+    private final Path hd6Path;
+    private final long totalSpace;
+
+    HD6FileStore(Path hd6Path, long totalSpace) {
+        this.hd6Path = hd6Path;
+        this.totalSpace = totalSpace;
+    }
+
+    @Override
+    public String name() {
+        return hd6Path.toString();
+    }
+
+    @Override
+    public String type() {
+        return HD6FileSystemProvider.SCHEME;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public long getTotalSpace() {
+        return totalSpace;
+    }
+
+    @Override
+    public long getUsableSpace() {
+        return 0;
+    }
+
+    @Override
+    public long getUnallocatedSpace() {
+        return 0;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+        return type == BasicFileAttributeView.class;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(String name) {
+        return name.equals("basic");
+    }
+
+    @Override
+    public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) {
+        throw new UnsupportedOperationException("Attribute " + attribute + " is not supported");
+    }
+}
@@ -0,0 +1,237 @@
+package com.github.piorrro33.hd6tools.filesystem;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Read-only file system over an HD6/DAT pair. Folders are derived from the filenames of the archive; when several
+ * entries share a name, the last one is visible, as in an extraction.
+ */
+class HD6FileSystem extends FileSystem {
+    static final String ROOT = "/";
+
+    private final HD6FileSystemProvider provider;
+    private final Path hd6Path;
+    private final HD6Archive archive;
+    private final FileTime modifiedTime;
+    private final Map<String, Integer> fileIndexes;
+    private final Map<String, Set<String>> folderChildren;
+    private final HD6FileStore fileStore;
+    private volatile boolean open = true;
+
+    HD6FileSystem(HD6FileSystemProvider provider, Path hd6Path, HD6Archive archive) throws IOException {
+        this.provider = provider;
+        this.hd6Path = hd6Path;
+        this.archive = archive;
+        modifiedTime = Files.getLastModifiedTime(hd6Path);
+
+        fileIndexes = new HashMap<>(archive.size() * 2);
+        folderChildren = new HashMap<>();
+        folderChildren.put(ROOT, new LinkedHashSet<>());
+        for (int i = 0; i < archive.size(); i++) {
+            String filePath = ROOT + archive.getName(i);
+            fileIndexes.put(filePath, i);
+            // Register the file in its folder, and every missing folder in its parent
+            String childPath = filePath;
+            while (!childPath.equals(ROOT)) {
+                int separatorIndex = childPath.lastIndexOf('/');
+                String folderPath = separatorIndex == 0 ? ROOT : childPath.substring(0, separatorIndex);
+                Set<String> children = folderChildren.get(folderPath);
+                boolean folderExists = children != null;
+                if (!folderExists) {
+                    children = new LinkedHashSet<>();
+                    folderChildren.put(folderPath, children);
+                }
+                children.add(childPath.substring(separatorIndex + 1));
+                if (folderExists) {
+                    break;
+                }
+                childPath = folderPath;
+            }
+        }
+        fileStore = new HD6FileStore(hd6Path, Files.size(hd6Path) + archive.getDatChannel().size());
+    }
+
+    Path getHD6Path() {
+        return hd6Path;
+    }
+
+    HD6Archive getArchive() {
+        ensureOpen();
+        return archive;
+    }
+
+    FileTime getModifiedTime() {
+        return modifiedTime;
+    }
+
+    HD6FileStore getFileStore() {
+        return fileStore;
+    }
+
+    void ensureOpen() {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+    }
+
+    boolean exists(String absolutePath) {
+        ensureOpen();
+        return fileIndexes.containsKey(absolutePath) || folderChildren.containsKey(absolutePath);
+    }
+
+    boolean isFolder(String absolutePath) {
+        ensureOpen();
+        return folderChildren.containsKey(absolutePath);
+    }
+
+    /**
+     * @return the index of the file in the archive
+     * @throws NoSuchFileException if there is no such file, or if it is a folder
+     */
+    int getFileIndex(HD6Path path) throws NoSuchFileException {
+        ensureOpen();
+        Integer index = fileIndexes.get(path.getIndexKey());
+        if (index == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return index;
+    }
+
+    /**
+     * @return a read-only buffer over the file contents, backed by the memory-mapped DAT
+     */
+    ByteBuffer openFile(HD6Path path) throws IOException {
+        return archive.open(getFileIndex(path));
+    }
+
+    /**
+     * @return the names of the files and folders in a folder, in archive order
+     */
+    List<String> listFolder(HD6Path path) throws IOException {
+        ensureOpen();
+        String key = path.getIndexKey();
+        Set<String> children = folderChildren.get(key);
+        if (children == null) {
+            if (fileIndexes.containsKey(key)) {
+                throw new NotDirectoryException(path.toString());
+            }
+            throw new NoSuchFileException(path.toString());
+        }
+        return new ArrayList<>(children);
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            provider.removeFileSystem(this);
+            archive.close();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        ensureOpen();
+        return List.of(new HD6Path(this, ROOT));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        ensureOpen();
+        return List.of(fileStore);
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        if (more.length == 0) {
+            return new HD6Path(this, first);
+        }
+        StringBuilder sb = new StringBuilder(first);
+        for (String segment : more) {
+            if (!segment.isEmpty()) {
+                if (sb.length() > 0) {
+                    sb.append('/');
+                }
+                sb.append(segment);
+            }
+        }
+        return new HD6Path(this, sb.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colonIndex = syntaxAndPattern.indexOf(':');
+        if (colonIndex <= 0) {
+            throw new IllegalArgumentException("Missing syntax in " + syntaxAndPattern);
+        }
+        String syntax = syntaxAndPattern.substring(0, colonIndex);
+        String pattern = syntaxAndPattern.substring(colonIndex + 1);
+        Pattern regex;
+        if (syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(Utils.globToRegex(pattern));
+        } else if (syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else {
+            throw new UnsupportedOperationException("Syntax " + syntax + " is not supported");
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("HD6 archives have no users");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("HD6 archives cannot be watched");
+    }
+}
@@ -0,0 +1,370 @@
+package com.github.piorrro33.hd6tools.filesystem;
+
+import com.github.piorrro33.hd6tools.Utils;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Provider of read-only file systems over HD6/DAT pairs, registered for the {@code hd6} scheme. This lets any code
+ * written against {@link java.nio.file.Files} browse and read an archive without extracting it:
+ * <pre>
+ * try (FileSystem fs = FileSystems.newFileSystem(Path.of("data.hd6"))) {
+ *     byte[] contents = Files.readAllBytes(fs.getPath("/folder/file.bin"));
+ * }
+ * </pre>
+ * File systems can also be opened from a URI such as {@code hd6:file:///games/data.hd6}, and paths inside them
+ * looked up with {@code hd6:file:///games/data.hd6!/folder/file.bin}. The DAT file is expected next to the HD6 file.
+ * The {@code useIndexCache} environment entry makes the archive use the persistent index cache.
+ */
+public class HD6FileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "hd6";
+    private static final String ENTRY_SEPARATOR = "!";
+    private static final String USE_INDEX_CACHE = "useIndexCache";
+
+    // File systems opened from a URI, by real path of their HD6 file
+    private final Map<Path, HD6FileSystem> fileSystems = new HashMap<>();
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+        Path hd6Path = uriToHD6Path(uri).toRealPath();
+        synchronized (fileSystems) {
+            if (fileSystems.containsKey(hd6Path)) {
+                throw new FileSystemAlreadyExistsException(uri.toString());
+            }
+            HD6FileSystem fileSystem = openFileSystem(hd6Path, env);
+            fileSystems.put(hd6Path, fileSystem);
+            return fileSystem;
+        }
+    }
+
+    @Override
+    public FileSystem newFileSystem(Path path, Map<String, ?> env) throws IOException {
+        if (path.getFileSystem() != FileSystems.getDefault() || !Utils.isPathToHD6(path)) {
+            throw new UnsupportedOperationException("Not an HD6 file: " + path);
+        }
+        return openFileSystem(path.toRealPath(), env);
+    }
+
+    private HD6FileSystem openFileSystem(Path hd6Path, Map<String, ?> env) throws IOException {
+        Object useIndexCache = env.get(USE_INDEX_CACHE);
+        HD6Archive archive = HD6Archive.open(hd6Path, Utils.hd6PathToDatPath(hd6Path),
+                useIndexCache != null && Boolean.parseBoolean(useIndexCache.toString()));
+        try {
+            return new HD6FileSystem(this, hd6Path, archive);
+        } catch (IOException | RuntimeException e) {
+            archive.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        Path hd6Path;
+        try {
+            hd6Path = uriToHD6Path(uri).toRealPath();
+        } catch (IOException e) {
+            throw new FileSystemNotFoundException(uri.toString());
+        }
+        synchronized (fileSystems) {
+            HD6FileSystem fileSystem = fileSystems.get(hd6Path);
+            if (fileSystem == null) {
+                throw new FileSystemNotFoundException(uri.toString());
+            }
+            return fileSystem;
+        }
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        String entryPath = getEntryPath(uri);
+        return getFileSystem(uri).getPath(entryPath.isEmpty() ? HD6FileSystem.ROOT : entryPath);
+    }
+
+    void removeFileSystem(HD6FileSystem fileSystem) {
+        synchronized (fileSystems) {
+            fileSystems.remove(fileSystem.getHD6Path(), fileSystem);
+        }
+    }
+
+    /**
+     * @return the path of the HD6 file in a URI like {@code hd6:file:///data.hd6!/entry}
+     */
+    private static Path uriToHD6Path(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("URI scheme is not " + SCHEME + ": " + uri);
+        }
+        String hd6Uri = uri.getSchemeSpecificPart();
+        int separatorIndex = hd6Uri.indexOf(ENTRY_SEPARATOR + HD6FileSystem.ROOT);
+        if (separatorIndex >= 0) {
+            hd6Uri = hd6Uri.substring(0, separatorIndex);
+        }
+        try {
+            return Paths.get(new URI(hd6Uri));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid HD6 file URI: " + uri, e);
+        }
+    }
+
+    private static String getEntryPath(URI uri) {
+        String schemeSpecificPart = uri.getSchemeSpecificPart();
+        int separatorIndex = schemeSpecificPart.indexOf(ENTRY_SEPARATOR + HD6FileSystem.ROOT);
+        return separatorIndex < 0 ? "" : schemeSpecificPart.substring(separatorIndex + 1);
+    }
+
+    private static HD6Path toHD6Path(Path path) {
+        if (!(path instanceof HD6Path)) {
+            throw new ProviderMismatchException();
+        }
+        return (HD6Path) path;
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options,
+                                              FileAttribute<?>... attrs) throws IOException {
+        for (OpenOption option : options) {
+            if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND
+                    || option == StandardOpenOption.CREATE || option == StandardOpenOption.CREATE_NEW
+                    || option == StandardOpenOption.DELETE_ON_CLOSE || option == StandardOpenOption.TRUNCATE_EXISTING) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+        HD6Path hd6Path = toHD6Path(path);
+        return new HD6ByteChannel(hd6Path.getFileSystem().openFile(hd6Path));
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        HD6Path folderPath = toHD6Path(dir);
+        List<String> childNames = folderPath.getFileSystem().listFolder(folderPath);
+        return new DirectoryStream<>() {
+            private boolean iteratorReturned;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iteratorReturned) {
+                    throw new IllegalStateException("Iterator already obtained");
+                }
+                iteratorReturned = true;
+                Iterator<String> childNameIterator = childNames.iterator();
+                return new Iterator<>() {
+                    private Path next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && childNameIterator.hasNext()) {
+                            Path child = folderPath.resolve(childNameIterator.next());
+                            try {
+                                if (filter == null || filter.accept(child)) {
+                                    next = child;
+                                }
+                            } catch (IOException e) {
+                                throw new DirectoryIteratorException(e);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Path next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Path child = next;
+                        next = null;
+                        return child;
+                    }
+                };
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) {
+            return true;
+        }
+        if (!(path instanceof HD6Path hd6Path) || !(path2 instanceof HD6Path hd6Path2)
+                || hd6Path.getFileSystem() != hd6Path2.getFileSystem()) {
+            return false;
+        }
+        return hd6Path.toRealPath().equals(hd6Path2.toRealPath());
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        return false;
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        HD6Path hd6Path = toHD6Path(path);
+        checkAccess(hd6Path);
+        return hd6Path.getFileSystem().getFileStore();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        HD6Path hd6Path = toHD6Path(path);
+        if (!hd6Path.getFileSystem().exists(hd6Path.getIndexKey())) {
+            throw new NoSuchFileException(path.toString());
+        }
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) {
+                throw new AccessDeniedException(path.toString(), null, "Archive is read-only");
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        HD6Path hd6Path = toHD6Path(path);
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return HD6FileSystemProvider.this.readAttributes(hd6Path);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    private HD6FileAttributes readAttributes(HD6Path path) throws IOException {
+        HD6FileSystem fileSystem = path.getFileSystem();
+        String key = path.getIndexKey();
+        if (fileSystem.isFolder(key)) {
+            return new HD6FileAttributes(fileSystem.getModifiedTime(), -1, 0);
+        }
+        int index = fileSystem.getFileIndex(path);
+        return new HD6FileAttributes(fileSystem.getModifiedTime(), index, fileSystem.getArchive().getFileSize(index));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+            throws IOException {
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException("Attributes of type " + type.getName() + " are not supported");
+        }
+        return (A) readAttributes(toHD6Path(path));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options)
+            throws IOException {
+        String names = attributes;
+        int colonIndex = attributes.indexOf(':');
+        if (colonIndex >= 0) {
+            if (!attributes.substring(0, colonIndex).equals("basic")) {
+                throw new UnsupportedOperationException("View " + attributes.substring(0, colonIndex)
+                        + " is not supported");
+            }
+            names = attributes.substring(colonIndex + 1);
+        }
+
+        HD6FileAttributes fileAttributes = readAttributes(toHD6Path(path));
+        Map<String, Object> allValues = new LinkedHashMap<>();
+        allValues.put("lastModifiedTime", fileAttributes.lastModifiedTime());
+        allValues.put("lastAccessTime", fileAttributes.lastAccessTime());
+        allValues.put("creationTime", fileAttributes.creationTime());
+        allValues.put("size", fileAttributes.size());
+        allValues.put("isRegularFile", fileAttributes.isRegularFile());
+        allValues.put("isDirectory", fileAttributes.isDirectory());
+        allValues.put("isSymbolicLink", fileAttributes.isSymbolicLink());
+        allValues.put("isOther", fileAttributes.isOther());
+        allValues.put("fileKey", fileAttributes.fileKey());
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String name : names.split(",")) {
+            if (name.equals("*")) {
+                values.putAll(allValues);
+            } else if (allValues.containsKey(name)) {
+                values.put(name, allValues.get(name));
+            } else {
+                throw new IllegalArgumentException("Unknown attribute " + name);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+}
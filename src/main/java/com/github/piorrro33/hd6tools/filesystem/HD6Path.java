@@ -0,0 +1,300 @@
+package com.github.piorrro33.hd6tools.filesystem;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Path to a file or folder of an {@link HD6FileSystem}. Paths use {@code /} as separator, and absolute paths start
+ * at the root of the archive.
+ */
+class HD6Path implements Path {
+    private final HD6FileSystem fileSystem;
+    private final String path;
+    private int[] nameOffsets; // start of each name in path, computed on first use
+
+    HD6Path(HD6FileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.path = removeRedundantSlashes(path);
+    }
+
+    private static String removeRedundantSlashes(String path) {
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\u0000') {
+                throw new InvalidPathException(path, "Nul character not allowed");
+            }
+            if (c != '/' || sb.length() == 0 || sb.charAt(sb.length() - 1) != '/') {
+                sb.append(c);
+            }
+        }
+        if (sb.length() > 1 && sb.charAt(sb.length() - 1) == '/') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    private int[] getNameOffsets() {
+        int[] offsets = nameOffsets;
+        if (offsets == null) {
+            List<Integer> offsetList = new ArrayList<>();
+            if (path.isEmpty()) {
+                offsetList.add(0); // the empty path has one empty name
+            }
+            for (int i = 0; i < path.length(); i++) {
+                if (path.charAt(i) != '/' && (i == 0 || path.charAt(i - 1) == '/')) {
+                    offsetList.add(i);
+                }
+            }
+            offsets = offsetList.stream().mapToInt(Integer::intValue).toArray();
+            nameOffsets = offsets;
+        }
+        return offsets;
+    }
+
+    private String name(int index) {
+        int[] offsets = getNameOffsets();
+        int end = index + 1 < offsets.length ? offsets[index + 1] - 1 : path.length();
+        return path.substring(offsets[index], end);
+    }
+
+    private static HD6Path toHD6Path(Path path) {
+        if (!(path instanceof HD6Path)) {
+            throw new ProviderMismatchException();
+        }
+        return (HD6Path) path;
+    }
+
+    String getPathString() {
+        return path;
+    }
+
+    /**
+     * @return the path as used by the file system index: absolute and normalized
+     */
+    String getIndexKey() {
+        return toAbsolutePath().normalize().toString();
+    }
+
+    @Override
+    public HD6FileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return path.startsWith("/");
+    }
+
+    @Override
+    public Path getRoot() {
+        return isAbsolute() ? new HD6Path(fileSystem, "/") : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        int count = getNameCount();
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1 && !isAbsolute()) {
+            return this;
+        }
+        return new HD6Path(fileSystem, name(count - 1));
+    }
+
+    @Override
+    public Path getParent() {
+        int count = getNameCount();
+        if (count == 0 || (count == 1 && !isAbsolute())) {
+            return null;
+        }
+        if (count == 1) {
+            return getRoot();
+        }
+        return new HD6Path(fileSystem, path.substring(0, getNameOffsets()[count - 1] - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return getNameOffsets().length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        if (index < 0 || index >= getNameCount()) {
+            throw new IllegalArgumentException("Invalid name index " + index);
+        }
+        return new HD6Path(fileSystem, name(index));
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        int count = getNameCount();
+        if (beginIndex < 0 || beginIndex >= count || endIndex > count || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid subpath " + beginIndex + ".." + endIndex);
+        }
+        int[] offsets = getNameOffsets();
+        int end = endIndex < count ? offsets[endIndex] - 1 : path.length();
+        return new HD6Path(fileSystem, path.substring(offsets[beginIndex], end));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof HD6Path otherPath) || otherPath.fileSystem != fileSystem
+                || otherPath.isAbsolute() != isAbsolute() || otherPath.getNameCount() > getNameCount()) {
+            return false;
+        }
+        if (otherPath.path.isEmpty()) {
+            return path.isEmpty();
+        }
+        for (int i = 0; i < otherPath.getNameCount(); i++) {
+            if (!otherPath.name(i).equals(name(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof HD6Path otherPath) || otherPath.fileSystem != fileSystem) {
+            return false;
+        }
+        if (otherPath.isAbsolute()) {
+            return equals(otherPath);
+        }
+        int offset = getNameCount() - otherPath.getNameCount();
+        if (offset < 0 || (otherPath.path.isEmpty() && !path.isEmpty())) {
+            return false;
+        }
+        for (int i = 0; i < otherPath.getNameCount(); i++) {
+            if (!otherPath.name(i).equals(name(offset + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> names = new ArrayList<>(getNameCount());
+        for (int i = 0; i < getNameCount(); i++) {
+            String name = name(i);
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..") && !names.isEmpty() && !names.get(names.size() - 1).equals("..")) {
+                names.remove(names.size() - 1);
+            } else if (!name.equals("..") || !isAbsolute()) {
+                names.add(name); // ".." above the root stays at the root
+            }
+        }
+        return new HD6Path(fileSystem, (isAbsolute() ? "/" : "") + String.join("/", names));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        HD6Path otherPath = toHD6Path(other);
+        if (otherPath.isAbsolute()) {
+            return otherPath;
+        }
+        if (otherPath.path.isEmpty()) {
+            return this;
+        }
+        if (path.isEmpty()) {
+            return otherPath;
+        }
+        return new HD6Path(fileSystem, path + "/" + otherPath.path);
+    }
+
+    @Override
+    public Path resolve(String other) {
+        return resolve(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        HD6Path otherPath = toHD6Path(other);
+        if (otherPath.isAbsolute() != isAbsolute()) {
+            throw new IllegalArgumentException("Cannot relativize an absolute and a relative path");
+        }
+        if (equals(otherPath)) {
+            return new HD6Path(fileSystem, "");
+        }
+        int count = path.equals("/") || path.isEmpty() ? 0 : getNameCount();
+        int otherCount = otherPath.path.equals("/") || otherPath.path.isEmpty() ? 0 : otherPath.getNameCount();
+        int common = 0;
+        while (common < count && common < otherCount && name(common).equals(otherPath.name(common))) {
+            common++;
+        }
+        List<String> names = new ArrayList<>();
+        for (int i = common; i < count; i++) {
+            names.add("..");
+        }
+        for (int i = common; i < otherCount; i++) {
+            names.add(otherPath.name(i));
+        }
+        return new HD6Path(fileSystem, String.join("/", names));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(HD6FileSystemProvider.SCHEME,
+                    fileSystem.getHD6Path().toUri() + "!" + toAbsolutePath().normalize(), null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return isAbsolute() ? this : new HD6Path(fileSystem, "/" + path);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        HD6Path realPath = (HD6Path) toAbsolutePath().normalize();
+        if (!fileSystem.exists(realPath.path)) {
+            throw new NoSuchFileException(toString());
+        }
+        return realPath;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("HD6 archives cannot be watched");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(toHD6Path(other).path);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof HD6Path otherPath && otherPath.fileSystem == fileSystem && otherPath.path.equals(path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the entries that differ between two HD6/DAT pairs, joined by filename, and optionally exports the contents of
+ * the added and modified entries of the new archive.
+ * <p>
+ * Entries of different sizes are modified without reading them. Entries of the same size are compared byte for byte,
+ * both DATs being memory-mapped: this reads each side once, as hashing would, but stops at the first difference.
+ * Comparisons run on the worker threads, in the DAT order of the new archive.
+ */
+public class ArchiveComparison {
+    /**
+     * @param addedFiles    names only found in the new archive
+     * @param removedFiles  names only found in the old archive
+     * @param modifiedFiles names found in both archives, with other contents
+     */
+    public record Result(int unchangedFileCount, List<String> addedFiles, List<String> removedFiles,
+                         List<String> modifiedFiles) {
+        public boolean isIdentical() {
+            return addedFiles.isEmpty() && removedFiles.isEmpty() && modifiedFiles.isEmpty();
+        }
+    }
+
+    /**
+     * @param exportFolderPath folder receiving the added and modified files of the new archive, or null
+     */
+    public static Result perform(Path oldHD6Path, Path oldDatPath, Path newHD6Path, Path newDatPath,
+                                 Path exportFolderPath, OperationOptions options) throws IOException {
+        try {
+            return compare(oldHD6Path, oldDatPath, newHD6Path, newDatPath, exportFolderPath, options);
+        } finally {
+            options.getMetrics().finish();
+        }
+    }
+
+    private static Result compare(Path oldHD6Path, Path oldDatPath, Path newHD6Path, Path newDatPath,
+                                  Path exportFolderPath, OperationOptions options) throws IOException {
+        OperationMetrics metrics = options.getMetrics();
+        metrics.startOperation("diff");
+        System.out.println("Reading HD6 files...");
+        metrics.startPhase("Reading HD6 files");
+        try (HD6Archive oldArchive = HD6Archive.open(oldHD6Path, oldDatPath, options.isUseIndexCache());
+             HD6Archive newArchive = HD6Archive.open(newHD6Path, newDatPath, options.isUseIndexCache())) {
+            metrics.addFile(Files.size(oldHD6Path));
+            metrics.addFile(Files.size(newHD6Path));
+            Map<String, Integer> oldIndexes = indexByName(oldArchive);
+            Map<String, Integer> newIndexes = indexByName(newArchive);
+
+            System.out.println("Comparing files...");
+            metrics.startPhase("Comparing files", newIndexes.size());
+            List<String> removedFiles = new ArrayList<>();
+            for (String name : oldIndexes.keySet()) {
+                if (!newIndexes.containsKey(name)) {
+                    removedFiles.add(name);
+                }
+            }
+            boolean[] isChanged = new boolean[newArchive.size()];
+            int[] oldIndexArr = new int[newArchive.size()];
+            List<Integer> comparedIndexes = new ArrayList<>(newIndexes.size());
+            for (Map.Entry<String, Integer> newIndex : newIndexes.entrySet()) {
+                Integer oldIndex = oldIndexes.get(newIndex.getKey());
+                if (oldIndex == null
+                        || oldArchive.getFileSize(oldIndex) != newArchive.getFileSize(newIndex.getValue())) {
+                    isChanged[newIndex.getValue()] = true;
+                } else {
+                    oldIndexArr[newIndex.getValue()] = oldIndex;
+                    comparedIndexes.add(newIndex.getValue());
+                }
+            }
+            comparedIndexes.sort(Comparator.comparingLong(newArchive::getStartOffset));
+            BoundedTaskRunner runner = new BoundedTaskRunner(options);
+            try {
+                for (int index : comparedIndexes) {
+                    boolean submitted = runner.submit(newArchive.getFileSize(index), () -> {
+                        isChanged[index] = newArchive.open(index).mismatch(oldArchive.open(oldIndexArr[index])) != -1;
+                        metrics.addFile(newArchive.getFileSize(index));
+                    });
+                    if (!submitted) {
+                        break;
+                    }
+                }
+            } finally {
+                runner.finish();
+            }
+
+            List<String> addedFiles = new ArrayList<>();
+            List<String> modifiedFiles = new ArrayList<>();
+            List<Integer> changedIndexes = new ArrayList<>();
+            for (Map.Entry<String, Integer> newIndex : newIndexes.entrySet()) {
+                if (isChanged[newIndex.getValue()]) {
+                    (oldIndexes.containsKey(newIndex.getKey()) ? modifiedFiles : addedFiles).add(newIndex.getKey());
+                    changedIndexes.add(newIndex.getValue());
+                }
+            }
+            if (exportFolderPath != null) {
+                export(newArchive, changedIndexes, exportFolderPath, options);
+            }
+            return new Result(newIndexes.size() - changedIndexes.size(), addedFiles, removedFiles, modifiedFiles);
+        }
+    }
+
+    /**
+     * @return the index of each name, the last entry winning when several share a name, as in an extraction
+     */
+    private static Map<String, Integer> indexByName(HD6Archive archive) {
+        Map<String, Integer> indexes = new LinkedHashMap<>(archive.size() * 2);
+        for (int i = 0; i < archive.size(); i++) {
+            indexes.put(archive.getName(i), i);
+        }
+        return indexes;
+    }
+
+    private static void export(HD6Archive archive, List<Integer> indexes, Path exportFolderPath,
+                               OperationOptions options) throws IOException {
+        System.out.println("Exporting changed files...");
+        options.getMetrics().startPhase("Exporting changed files", indexes.size());
+        Path[] exportFilePathArr = new Path[archive.size()];
+        String separator = exportFolderPath.getFileSystem().getSeparator();
+        for (int index : indexes) {
+            exportFilePathArr[index] = exportFolderPath.resolve(archive.getName(index).replace("/", separator));
+            Files.createDirectories(exportFilePathArr[index].getParent());
+        }
+        indexes.sort(Comparator.comparingLong(archive::getStartOffset));
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            for (int index : indexes) {
+                boolean submitted = runner.submit(archive.getFileSize(index), () -> Extraction.transferEntry(
+                        archive.getDatChannel(), archive.getStartOffset(index), archive.getFileSize(index),
+                        exportFilePathArr[index], options.getMetrics()));
+                if (!submitted) {
+                    break;
+                }
+            }
+        } finally {
+            runner.finish();
+        }
+    }
+}
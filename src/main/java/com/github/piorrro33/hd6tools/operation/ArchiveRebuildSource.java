@@ -0,0 +1,43 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Files of another HD6/DAT pair, in its order, copied from DAT to DAT. The repeated last entry that every rebuild
+ * adds is skipped, so that it is not repeated twice.
+ */
+class ArchiveRebuildSource implements RebuildSource {
+    private final HD6Archive archive;
+
+    ArchiveRebuildSource(HD6Archive archive) {
+        this.archive = archive;
+    }
+
+    @Override
+    public void forEachFile(FileConsumer consumer) throws IOException {
+        int fileCount = archive.size();
+        if (fileCount > 1 && archive.getName(fileCount - 1).equals(archive.getName(fileCount - 2))) {
+            fileCount--;
+        }
+        FileChannel sourceDatChannel = archive.getDatChannel();
+        for (int i = 0; i < fileCount; i++) {
+            long startOffset = archive.getStartOffset(i);
+            long fileSize = archive.getFileSize(i);
+            consumer.accept(archive.getName(i), fileSize, datChannel -> {
+                long transferred = 0;
+                while (transferred < fileSize) {
+                    long count = sourceDatChannel.transferTo(startOffset + transferred, fileSize - transferred,
+                            datChannel);
+                    if (count <= 0) {
+                        throw new IOException("Unexpected end of source DAT file at offset "
+                                + (startOffset + transferred));
+                    }
+                    transferred += count;
+                }
+            });
+        }
+    }
+}
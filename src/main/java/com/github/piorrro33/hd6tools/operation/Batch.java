@@ -0,0 +1,106 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many jobs in one process. Jobs run a few at a time, and their file copies share a single pool of
+ * {@link OperationOptions#getThreadCount()} threads, so that running more jobs at once does not mean more threads.
+ * <p>
+ * Jobs never ask for confirmation: existing files are overwritten. Each job records its own metrics.
+ */
+public class Batch {
+    private final OperationOptions options;
+    private final int concurrentJobCount;
+
+    public record Result(Job job, boolean successful, long wallTimeNanos, OperationMetrics metrics) {
+    }
+
+    /**
+     * @param options            settings for every job; they are copied, so the same options may be reused
+     * @param concurrentJobCount how many jobs may run at the same time
+     */
+    public Batch(OperationOptions options, int concurrentJobCount) {
+        if (concurrentJobCount < 1) {
+            throw new IllegalArgumentException("Concurrent job count must be at least 1, got " + concurrentJobCount);
+        }
+        this.options = options;
+        this.concurrentJobCount = concurrentJobCount;
+    }
+
+    /**
+     * Runs every job, even when some of them fail.
+     *
+     * @return the result of each job, in the order of the given list
+     */
+    public List<Result> run(List<Job> jobs) {
+        ExecutorService workerPool = options.getThreadCount() > 1
+                ? Executors.newFixedThreadPool(options.getThreadCount()) : null;
+        ExecutorService jobPool = Executors.newFixedThreadPool(Math.min(concurrentJobCount, Math.max(jobs.size(), 1)));
+        try {
+            List<Callable<Result>> tasks = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                tasks.add(() -> runJob(job, workerPool));
+            }
+            List<Result> results = new ArrayList<>(jobs.size());
+            List<Future<Result>> futures = jobPool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    results.add(new Result(jobs.get(i), false, 0, new OperationMetrics()));
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for jobs", e);
+        } finally {
+            jobPool.shutdown();
+            if (workerPool != null) {
+                workerPool.shutdown();
+            }
+        }
+    }
+
+    private Result runJob(Job job, ExecutorService workerPool) {
+        OperationOptions jobOptions = options.copy().setAssumeYes(true).setExecutor(workerPool);
+        System.out.println("Starting job: " + job);
+        long startNanos = System.nanoTime();
+        boolean isSuccessful;
+        try {
+            isSuccessful = Operations.perform(job, jobOptions);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            isSuccessful = false;
+        }
+        return new Result(job, isSuccessful, System.nanoTime() - startNanos, jobOptions.getMetrics());
+    }
+
+    /**
+     * @return every job with its outcome and metrics, as a JSON array
+     */
+    public static String toJson(List<Result> results) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            Job job = result.job();
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("{\"mode\": ").append(OperationMetrics.quote(job.mode().name().toLowerCase(Locale.ROOT)));
+            json.append(", \"hd6\": ").append(OperationMetrics.quote(job.hd6Path().toString()));
+            json.append(", \"dat\": ").append(OperationMetrics.quote(job.datPath().toString()));
+            json.append(", \"folder\": ").append(OperationMetrics.quote(job.folderPath().toString()));
+            json.append(", \"successful\": ").append(result.successful());
+            json.append(String.format(Locale.ROOT, ", \"wallTimeMs\": %.3f", result.wallTimeNanos() / 1e6));
+            json.append(", \"metrics\": ").append(result.metrics().toJson(result.successful()).strip()).append('}');
+        }
+        return json.append(results.isEmpty() ? "]\n" : "\n]\n").toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs file copies on a fixed pool of worker threads, or on the shared {@link OperationOptions#getExecutor()
+ * executor} when there is one. {@link #submit(long, IOTask)} blocks once
+ * {@link OperationOptions#getMaxBytesInFlight()} bytes are queued or being copied, so that huge files cannot pile up.
+ * The first failure, unchecked exceptions included, stops all tasks that have not started yet and is rethrown by
+ * {@link #finish()}.
+ * <p>
+ * Workers are never interrupted: an interrupt would close the FileChannels shared between them.
+ */
+class BoundedTaskRunner {
+    private final ExecutorService executor;
+    private final Semaphore bytesInFlight;
+    private final int maxPermits;
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private final OperationMetrics metrics;
+    private final boolean ownsExecutor;
+    private int pendingTaskCount = 0;
+
+    BoundedTaskRunner(OperationOptions options) {
+        metrics = options.getMetrics();
+        ownsExecutor = options.getExecutor() == null;
+        executor = ownsExecutor ? Executors.newFixedThreadPool(options.getThreadCount()) : options.getExecutor();
+        // File sizes are usually a multiple of 0x10, so count permits in units of 0x10 bytes to stay within an int
+        maxPermits = (int) Math.min(Math.max(options.getMaxBytesInFlight() >> 0x4, 1), Integer.MAX_VALUE);
+        bytesInFlight = new Semaphore(maxPermits);
+    }
+
+    /**
+     * @return false if a previous task failed, in which case the given task is not run
+     */
+    boolean submit(long byteCount, IOTask task) {
+        if (failure.get() != null) {
+            return false;
+        }
+        final int permits = (int) Math.min(Math.max(byteCount >> 0x4, 1), maxPermits);
+        bytesInFlight.acquireUninterruptibly(permits);
+        synchronized (this) {
+            pendingTaskCount++;
+        }
+        try {
+            executor.execute(() -> {
+                long startAllocatedBytes = OperationMetrics.currentThreadAllocatedBytes();
+                try {
+                    if (failure.get() == null) {
+                        task.run();
+                    }
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                } catch (Throwable e) {
+                    // Left to the executor, it would only be printed, and the operation would look successful
+                    failure.compareAndSet(null, new IOException(e));
+                } finally {
+                    bytesInFlight.release(permits);
+                    if (startAllocatedBytes >= 0) {
+                        metrics.addAllocatedBytes(OperationMetrics.currentThreadAllocatedBytes() - startAllocatedBytes);
+                    }
+                    taskDone();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shared executor shut down under our feet
+            bytesInFlight.release(permits);
+            taskDone();
+            failure.compareAndSet(null, new IOException("Worker pool is shut down!", e));
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized void taskDone() {
+        pendingTaskCount--;
+        if (pendingTaskCount == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for every submitted task, then shuts the pool down unless it is shared.
+     *
+     * @throws IOException the first exception thrown by a task
+     */
+    void finish() throws IOException {
+        boolean interrupted = false;
+        synchronized (this) {
+            while (pendingTaskCount > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    @FunctionalInterface
+    interface IOTask {
+        void run() throws IOException;
+    }
+}
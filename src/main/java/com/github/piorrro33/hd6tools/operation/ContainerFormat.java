@@ -0,0 +1,27 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Single-file containers an extraction can stream its files to, instead of writing them to a folder.
+ */
+public enum ContainerFormat {
+    /**
+     * POSIX tar, with PAX headers for long or non-ASCII names and huge files.
+     */
+    TAR,
+    /**
+     * Zip without compression, with ZIP64 records when sizes, offsets or the entry count need them.
+     */
+    ZIP;
+
+    /**
+     * @param modifiedTime last modified time given to every entry, in milliseconds since the epoch
+     */
+    ExtractionSink createSink(WritableByteChannel outChannel, long modifiedTime) {
+        return switch (this) {
+            case TAR -> new TarSink(outChannel, modifiedTime);
+            case ZIP -> new ZipSink(outChannel, modifiedTime);
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Reads a DAT file with direct I/O, bypassing the page cache, so that extracting a huge archive once does not evict
+ * everything else from memory.
+ * <p>
+ * Direct reads must start at a multiple of the block size of the file store, and go through a buffer whose address and
+ * size are multiples of it too. DAT entries start on 0x800 bytes, a multiple of the usual 512 bytes sectors but not of
+ * the 4 KiB blocks of most file systems, so reads start at the block holding the entry and the extra bytes are skipped.
+ * Each thread has its own aligned buffer.
+ */
+class DirectDatReader implements Closeable {
+    static final int CHUNK_SIZE = 1024 * 1024;
+    /**
+     * Block sizes above this are not supported, so that a single buffer size fits every file store.
+     */
+    static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE + MAX_BLOCK_SIZE));
+
+    private final FileChannel datChannel;
+    private final int blockSize;
+
+    private DirectDatReader(FileChannel datChannel, int blockSize) {
+        this.datChannel = datChannel;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @throws IOException if the file cannot be opened, or if its file store does not support direct I/O
+     */
+    static DirectDatReader open(Path datPath) throws IOException {
+        int blockSize = getBlockSize(datPath);
+        try {
+            return new DirectDatReader(FileChannel.open(datPath, READ, ExtendedOpenOption.DIRECT), blockSize);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("Direct I/O is not supported on this platform!", e);
+        }
+    }
+
+    /**
+     * @return the block size that direct I/O aligns to, which must be a power of two no larger than
+     * {@link #MAX_BLOCK_SIZE}
+     */
+    static int getBlockSize(Path path) throws IOException {
+        long blockSize;
+        try {
+            blockSize = Files.getFileStore(Files.exists(path) ? path : path.toAbsolutePath().getParent())
+                    .getBlockSize();
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("The block size of the file store of " + path + " is unknown!", e);
+        }
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE || Long.bitCount(blockSize) != 1) {
+            throw new IOException("Unsupported block size " + blockSize + " for direct I/O on " + path + "!");
+        }
+        return (int) blockSize;
+    }
+
+    /**
+     * @return the aligned buffer of the calling thread, cleared, with a capacity of {@link #CHUNK_SIZE} bytes
+     */
+    static ByteBuffer getAlignedBuffer(int blockSize) {
+        ByteBuffer buffer = BUFFERS.get().clear().alignedSlice(blockSize);
+        return buffer.limit(CHUNK_SIZE);
+    }
+
+    /**
+     * Copies a DAT entry to the given destination, through the aligned buffer of the calling thread.
+     */
+    void copyTo(long startOffset, long fileSize, Path destFilePath, OperationMetrics metrics) throws IOException {
+        try (FileChannel destChannel = FileChannel.open(destFilePath, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = getAlignedBuffer(blockSize);
+            long copied = 0;
+            while (copied < fileSize) {
+                long position = startOffset + copied;
+                long alignedPosition = position & -blockSize;
+                int skipped = (int) (position - alignedPosition);
+                int count = (int) Math.min(fileSize - copied, CHUNK_SIZE - skipped);
+                read(buffer.clear().limit(alignUp(skipped + count)), alignedPosition, skipped + count);
+                buffer.position(skipped).limit(skipped + count);
+                while (buffer.hasRemaining()) {
+                    destChannel.write(buffer);
+                }
+                copied += count;
+            }
+        }
+        metrics.addFile(fileSize);
+    }
+
+    /**
+     * Reads a range of the DAT into a new buffer, holding exactly that range.
+     */
+    ByteBuffer read(long position, int length) throws IOException {
+        long alignedPosition = position & -blockSize;
+        int skipped = (int) (position - alignedPosition);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(alignUp(skipped + length) + blockSize).alignedSlice(blockSize);
+        read(buffer.limit(alignUp(skipped + length)), alignedPosition, skipped + length);
+        return buffer.slice(skipped, length);
+    }
+
+    /**
+     * Fills an aligned buffer from an aligned position, which may only stop early at the end of the file, past the
+     * needed bytes.
+     */
+    private void read(ByteBuffer buffer, long alignedPosition, int neededByteCount) throws IOException {
+        while (buffer.position() < neededByteCount) {
+            if (datChannel.read(buffer, alignedPosition + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of DAT file at offset "
+                        + (alignedPosition + buffer.position()));
+            }
+        }
+    }
+
+    private int alignUp(int size) {
+        return (size + blockSize - 1) & -blockSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        datChannel.close();
+    }
+}
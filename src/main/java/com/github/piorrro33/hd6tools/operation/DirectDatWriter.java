@@ -0,0 +1,122 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes a DAT file from start to end with direct I/O, bypassing the page cache.
+ * <p>
+ * Files and their padding are gathered into an aligned buffer of {@link DirectDatReader#CHUNK_SIZE} bytes, which is
+ * written whenever it is full, so that every direct write has an aligned position and size whatever the block size.
+ * The DAT size is only a multiple of 0x800 bytes, so its last partial block is written through a regular channel.
+ */
+class DirectDatWriter implements Closeable {
+    private static final byte[] ZEROES = new byte[0x800];
+
+    private final FileChannel datChannel;
+    private final FileChannel tailChannel;
+    private final ByteBuffer buffer;
+    private final int blockSize;
+    private long bufferOffset = 0;
+
+    private DirectDatWriter(FileChannel datChannel, FileChannel tailChannel, int blockSize) {
+        this.datChannel = datChannel;
+        this.tailChannel = tailChannel;
+        this.blockSize = blockSize;
+        buffer = ByteBuffer.allocateDirect(DirectDatReader.CHUNK_SIZE + blockSize).alignedSlice(blockSize)
+                .limit(DirectDatReader.CHUNK_SIZE);
+    }
+
+    /**
+     * @param tailChannel a regular channel on the same, existing file, which is left open
+     * @throws IOException if the file cannot be opened, or if its file store does not support direct I/O
+     */
+    static DirectDatWriter open(Path datPath, FileChannel tailChannel) throws IOException {
+        int blockSize = DirectDatReader.getBlockSize(datPath);
+        try {
+            return new DirectDatWriter(FileChannel.open(datPath, WRITE, ExtendedOpenOption.DIRECT), tailChannel,
+                    blockSize);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("Direct I/O is not supported on this platform!", e);
+        }
+    }
+
+    /**
+     * Appends a source file at the given offset, which may not be before the end of the previous file. The space in
+     * between is filled with zeroes.
+     */
+    void append(Path sourceFilePath, long fileSize, long startOffset, OperationMetrics metrics) throws IOException {
+        padTo(startOffset);
+        try (FileChannel sourceChannel = FileChannel.open(sourceFilePath, READ)) {
+            long copied = 0;
+            while (copied < fileSize) {
+                int count = (int) Math.min(fileSize - copied, buffer.remaining());
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + count);
+                while (buffer.hasRemaining()) {
+                    if (sourceChannel.read(buffer) < 0) {
+                        throw new IOException("File " + sourceFilePath + " is shorter than expected!");
+                    }
+                }
+                buffer.limit(limit);
+                copied += count;
+                flushIfFull();
+            }
+        }
+        metrics.addFile(fileSize);
+    }
+
+    /**
+     * Pads the DAT with zeroes up to the given size and writes what is left in the buffer.
+     */
+    void finish(long datSize) throws IOException {
+        padTo(datSize);
+        int alignedSize = buffer.position() & -blockSize;
+        ByteBuffer tail = buffer.duplicate().position(alignedSize).limit(buffer.position());
+        buffer.flip().limit(alignedSize);
+        while (buffer.hasRemaining()) {
+            datChannel.write(buffer, bufferOffset + buffer.position());
+        }
+        while (tail.hasRemaining()) {
+            tailChannel.write(tail, bufferOffset + tail.position());
+        }
+        bufferOffset += tail.limit();
+        buffer.clear().limit(DirectDatReader.CHUNK_SIZE);
+    }
+
+    private void padTo(long offset) throws IOException {
+        if (offset < bufferOffset + buffer.position()) {
+            throw new IOException("DAT files must be written in offset order!");
+        }
+        while (bufferOffset + buffer.position() < offset) {
+            buffer.put(ZEROES, 0, (int) Math.min(Math.min(offset - bufferOffset - buffer.position(), ZEROES.length),
+                    buffer.remaining()));
+            flushIfFull();
+        }
+    }
+
+    private void flushIfFull() throws IOException {
+        if (buffer.hasRemaining()) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            datChannel.write(buffer, bufferOffset + buffer.position());
+        }
+        bufferOffset += buffer.limit();
+        buffer.clear().limit(DirectDatReader.CHUNK_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        datChannel.close();
+    }
+}
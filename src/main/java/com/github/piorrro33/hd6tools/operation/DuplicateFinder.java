@@ -0,0 +1,95 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Finds source files with the same contents, so that a rebuild stores them once in the DAT.
+ * <p>
+ * Only files sharing their size with another file are read. Those are hashed with SHA-256 on the worker threads of a
+ * {@link BoundedTaskRunner}, and files with the same size and hash are taken as identical without comparing their
+ * bytes.
+ */
+class DuplicateFinder {
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * @return for each file, the index of the first file with the same contents, which is its own index for a file
+     * seen for the first time. Empty files are never taken as duplicates.
+     */
+    static int[] findDuplicates(SourceFileList sourceFiles, OperationOptions options) throws IOException {
+        OperationMetrics metrics = options.getMetrics();
+        List<Path> filePathList = sourceFiles.getPaths();
+        int fileCount = filePathList.size();
+        long[] fileSizes = new long[fileCount];
+        Map<Long, List<Integer>> sizeGroups = new HashMap<>();
+        for (int i = 0; i < fileCount; i++) {
+            fileSizes[i] = sourceFiles.getSize(i);
+            if (fileSizes[i] > 0) {
+                sizeGroups.computeIfAbsent(fileSizes[i], size -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        // Hash every file whose size is not unique
+        byte[][] hashes = new byte[fileCount][];
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            for (int i = 0; i < fileCount; i++) {
+                if (fileSizes[i] == 0 || sizeGroups.get(fileSizes[i]).size() < 2) {
+                    continue;
+                }
+                final int fileIndex = i;
+                boolean submitted = runner.submit(fileSizes[i], () -> {
+                    hashes[fileIndex] = hash(filePathList.get(fileIndex), fileSizes[fileIndex]);
+                    metrics.addFile(fileSizes[fileIndex]);
+                });
+                if (!submitted) {
+                    break;
+                }
+            }
+        } finally {
+            runner.finish();
+        }
+
+        int[] firstIndexes = new int[fileCount];
+        Map<String, Integer> firstIndexByContents = new HashMap<>();
+        HexFormat hexFormat = HexFormat.of();
+        for (int i = 0; i < fileCount; i++) {
+            firstIndexes[i] = i;
+            if (hashes[i] != null) {
+                String contentsKey = fileSizes[i] + ":" + hexFormat.formatHex(hashes[i]);
+                Integer firstIndex = firstIndexByContents.putIfAbsent(contentsKey, i);
+                if (firstIndex != null) {
+                    firstIndexes[i] = firstIndex;
+                }
+            }
+        }
+        return firstIndexes;
+    }
+
+    private static byte[] hash(Path filePath, long fileSize) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(HASH_ALGORITHM + " is not available!", e);
+        }
+        try (FileChannel fileChannel = FileChannel.open(filePath, READ)) {
+            if (fileChannel.size() != fileSize) {
+                throw new IOException("File " + filePath + " changed while it was being read!");
+            }
+            digest.update(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects archive entries by name, names using {@code /} as separator. An entry is selected when it is included, then
+ * not excluded. Without any include pattern or name, every entry is included.
+ */
+public class EntryFilter {
+    private final List<Pattern> includePatterns = new ArrayList<>();
+    private final List<Pattern> excludePatterns = new ArrayList<>();
+    private final Set<String> includeNames = new HashSet<>();
+
+    /**
+     * @see Utils#globToRegex(String)
+     */
+    public EntryFilter include(String glob) {
+        return includeRegex(Utils.globToRegex(glob));
+    }
+
+    public EntryFilter includeRegex(String regex) {
+        includePatterns.add(Pattern.compile(regex));
+        return this;
+    }
+
+    public EntryFilter exclude(String glob) {
+        return excludeRegex(Utils.globToRegex(glob));
+    }
+
+    public EntryFilter excludeRegex(String regex) {
+        excludePatterns.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * Includes entries by their exact name.
+     */
+    public EntryFilter includeNames(Collection<String> names) {
+        includeNames.addAll(names);
+        return this;
+    }
+
+    /**
+     * Includes the entries named in a list file, one name per line. Blank lines and lines starting with # are
+     * ignored, and {@code \} separators are taken as {@code /}.
+     */
+    public EntryFilter includeNames(Path listPath) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (String line : Files.readAllLines(listPath)) {
+            String name = line.strip();
+            if (!name.isEmpty() && !name.startsWith("#")) {
+                names.add(name.replace('\\', '/'));
+            }
+        }
+        return includeNames(names);
+    }
+
+    public boolean matches(String name) {
+        boolean included = (includePatterns.isEmpty() && includeNames.isEmpty()) || includeNames.contains(name)
+                || includePatterns.stream().anyMatch(pattern -> pattern.matcher(name).matches());
+        return included && excludePatterns.stream().noneMatch(pattern -> pattern.matcher(name).matches());
+    }
+}
@@ -1,23 +1,47 @@
 package com.github.piorrro33.hd6tools.operation;
 
-import java.io.BufferedInputStream;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
 import java.util.stream.Stream;
 
-import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.*;
 
 class Extraction {
-    private static final Charset CS_SHIFT_JIS = Charset.forName("Shift_JIS");
+    /**
+     * Largest distance between two selected files of a filtered extraction for them to be read at once. DAT slots are
+     * padded to 0x800 bytes, so neighbouring files are always read together.
+     */
+    private static final long MAX_COALESCED_GAP = 64 * 1024;
+    /**
+     * Largest read of a filtered extraction, unless a single file is larger.
+     */
+    private static final long MAX_RUN_SIZE = 4 * 1024 * 1024;
 
-    public static boolean perform(Path datPath, Path hd6Path, Path destFolderPath) {
+    public static boolean perform(Path datPath, Path hd6Path, Path destFolderPath, OperationOptions options) {
+        try {
+            return extract(datPath, hd6Path, destFolderPath, options);
+        } finally {
+            options.getMetrics().finish();
+        }
+    }
+
+    private static boolean extract(Path datPath, Path hd6Path, Path destFolderPath, OperationOptions options) {
+        OperationMetrics metrics = options.getMetrics();
+        metrics.startOperation("extract");
         // Check if dat/hd6 exist, create destination folder if needed
         if (Files.notExists(datPath)) {
             System.err.println("Data file could not be found!");
@@ -27,6 +51,139 @@ class Extraction {
             System.err.println("HD6 file could not be found!");
             return false;
         }
+        if (options.getContainerFormat() == null ? !prepareDestFolder(destFolderPath, options)
+                : !prepareContainerFile(destFolderPath, options)) {
+            return false;
+        }
+
+        // Read the HD6 index
+        System.out.println("Reading HD6...");
+        metrics.startPhase("Reading HD6");
+        HD6Archive archive;
+        try {
+            archive = HD6Archive.open(hd6Path, datPath, options.isUseIndexCache());
+            metrics.addFile(Files.size(hd6Path));
+        } catch (IOException e) {
+            System.err.println("Could not open HD6/DAT files! " + e.getLocalizedMessage());
+            return false;
+        }
+        // Containers are written sequentially from the DAT channel
+        DirectDatReader directReader = options.isDirectIO() && options.getContainerFormat() == null
+                ? openDirectReader(datPath) : null;
+        try (archive; directReader) {
+            int fileCount = archive.size();
+
+            // Select the files to write, and list their folders: names are decoded once here, and again when written
+            System.out.println("Decoding filenames...");
+            metrics.startPhase("Decoding filenames", fileCount);
+            EntryFilter entryFilter = options.getEntryFilter();
+            BitSet overwrittenFiles = archive.getOverwrittenFiles();
+            int[] selectedIndexes = new int[fileCount];
+            int selectedCount = 0;
+            int matchingCount = 0;
+            Set<String> folderNames = new HashSet<>();
+            for (int i = 0; i < fileCount; i++) {
+                String name = archive.getName(i);
+                if (entryFilter != null && !entryFilter.matches(name)) {
+                    continue;
+                }
+                matchingCount++;
+                if (overwrittenFiles.get(i)) {
+                    continue; // a later entry has the same name
+                }
+                selectedIndexes[selectedCount++] = i;
+                if (name.lastIndexOf('/') > 0) {
+                    folderNames.add(name.substring(0, name.lastIndexOf('/')));
+                }
+            }
+            selectedIndexes = Arrays.copyOf(selectedIndexes, selectedCount);
+            metrics.addFiles(fileCount);
+            if (entryFilter != null) {
+                System.out.println("Selected " + matchingCount + " of " + fileCount + " files.");
+            }
+
+            if (options.getContainerFormat() != null) {
+                System.out.println("Writing files to " + options.getContainerFormat() + " container...");
+                metrics.startPhase("Writing container", selectedCount);
+                writeContainer(archive, selectedIndexes, destFolderPath, hd6Path, options);
+                return true;
+            }
+
+            // Create every folder up front, so that writing a file is a single open/copy/close
+            System.out.println("Creating folders...");
+            metrics.startPhase("Creating folders");
+            for (String folderName : folderNames) {
+                Files.createDirectories(resolve(destFolderPath, folderName));
+            }
+            metrics.addFiles(folderNames.size());
+
+            // Leave out the files the folder already holds
+            UnchangedCheck unchangedCheck = options.getUnchangedCheck();
+            ExtractionManifest manifest = null;
+            byte[][] hashes = null;
+            int[] writtenIndexes = selectedIndexes;
+            if (unchangedCheck != null) {
+                System.out.println("Comparing files...");
+                metrics.startPhase("Comparing files", selectedCount);
+                if (unchangedCheck == UnchangedCheck.MANIFEST) {
+                    manifest = ExtractionManifest.read(ExtractionManifest.getPath(destFolderPath));
+                    hashes = new byte[fileCount][];
+                }
+                writtenIndexes = findChangedFiles(archive, selectedIndexes, destFolderPath, manifest, hashes, options);
+                System.out.println("Skipped " + (selectedCount - writtenIndexes.length) + " unchanged files.");
+            }
+
+            // Write the resulting files
+            System.out.println("Writing files...");
+            metrics.startPhase("Writing files", writtenIndexes.length);
+            if (entryFilter != null || writtenIndexes.length < selectedCount) {
+                writeSelectedFiles(archive, directReader, writtenIndexes, destFolderPath, options);
+            } else if (options.getThreadCount() == 1) {
+                for (int i : writtenIndexes) {
+                    copyEntry(archive.getDatChannel(), directReader, archive.getStartOffset(i),
+                            archive.getFileSize(i), resolve(destFolderPath, archive.getName(i)), metrics);
+                }
+            } else {
+                writeFilesInParallel(archive, directReader, writtenIndexes, destFolderPath, options);
+            }
+
+            if (options.isPrune()) {
+                System.out.println("Pruning folder...");
+                metrics.startPhase("Pruning folder");
+                List<String> prunedNames = prune(archive, destFolderPath);
+                metrics.addFiles(prunedNames.size());
+                System.out.println("Deleted " + prunedNames.size() + " files missing from the archive.");
+                if (manifest != null) {
+                    prunedNames.forEach(manifest::remove);
+                }
+            }
+            if (manifest != null) {
+                System.out.println("Writing manifest...");
+                metrics.startPhase("Writing manifest", selectedCount);
+                for (int i : selectedIndexes) {
+                    Path destFilePath = resolve(destFolderPath, archive.getName(i));
+                    manifest.put(archive.getName(i), new ExtractionManifest.Entry(hashes[i],
+                            archive.getFileSize(i), Files.getLastModifiedTime(destFilePath).toMillis()));
+                }
+                manifest.write(ExtractionManifest.getPath(destFolderPath));
+                metrics.addFiles(selectedCount);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the path of a file or folder of the archive within the destination folder
+     */
+    private static Path resolve(Path destFolderPath, String name) {
+        String separator = destFolderPath.getFileSystem().getSeparator();
+        return destFolderPath.resolve(separator.equals("/") ? name : name.replace("/", separator));
+    }
+
+    private static boolean prepareDestFolder(Path destFolderPath, OperationOptions options) {
         if (Files.notExists(destFolderPath)) {
             System.out.println("Destination folder does not exist. Creating it...");
             try {
@@ -36,180 +193,346 @@ class Extraction {
                 return false;
             }
         }
+        if (options.getUnchangedCheck() != null) {
+            return true; // only the files which differ are overwritten
+        }
         try (Stream<Path> walk = Files.walk(destFolderPath, 1)) {
-            if (walk.count() > 1) {
-                System.out.println("Warning! The destination folder is not empty. Some files may be overwritten.\n" +
-                        "Do you want to proceed (yes or no)?");
-                String userAnswer = new Scanner(System.in).nextLine();
-                if (!userAnswer.equalsIgnoreCase("yes") && !userAnswer.equalsIgnoreCase("y")) {
-                    // User did not answer yes
-                    System.out.println("Aborting.");
-                    return false;
-                }
+            if (walk.count() > 1 && !Operations.askToProceed("Warning! The destination folder is not empty. " +
+                    "Some files may be overwritten.", options)) {
+                return false;
             }
         } catch (IOException e) {
             System.err.println("An I/O error has occurred while walking the folder path! " + e.getLocalizedMessage());
         }
+        return true;
+    }
 
-        // Open stream to dat and HD6 files
-        InputStream datStream, hd6Stream;
-        try {
-            datStream = new BufferedInputStream(Files.newInputStream(datPath));
-        } catch (IOException e) {
-            System.err.println("Could not open DAT file! " + e.getLocalizedMessage());
+    private static boolean prepareContainerFile(Path containerPath, OperationOptions options) {
+        if (options.getContainerStream() != null) {
+            return true;
+        }
+        if (Files.exists(containerPath)
+                && !Operations.askToProceed("Warning! The destination file already exists.", options)) {
             return false;
         }
-        try {
-            hd6Stream = new BufferedInputStream(Files.newInputStream(hd6Path));
-        } catch (IOException e) {
-            System.err.println("Could not open HD6 file! " + e.getLocalizedMessage());
+        Path parentPath = containerPath.toAbsolutePath().getParent();
+        if (Files.notExists(parentPath)) {
+            System.out.println("Creating parent folders for destination file...");
             try {
-                datStream.close();
-            } catch (IOException ioe) {
-                System.err.println("Could not close DAT stream! " + ioe.getLocalizedMessage());
+                Files.createDirectories(parentPath);
+            } catch (IOException e) {
+                System.err.println("Could not create parent folders for destination file! "
+                        + e.getLocalizedMessage());
+                return false;
             }
-            return false;
         }
-        try {
-            int hd6StreamOffset = 0;
-            ByteBuffer bb_nameChunkDataSize = ByteBuffer.allocate(4).order(LITTLE_ENDIAN);
-            ByteBuffer bb_filenameTableSize = ByteBuffer.allocate(4).order(LITTLE_ENDIAN);
-            ByteBuffer bb_fileCount = ByteBuffer.allocate(4).order(LITTLE_ENDIAN);
-            ByteBuffer bb_p_filenameTable = ByteBuffer.allocate(4).order(LITTLE_ENDIAN);
-            ByteBuffer bb_p_fileEntries = ByteBuffer.allocate(4).order(LITTLE_ENDIAN);
-
-            // Read necessary informations from the header
-            System.out.println("Reading header...");
-            hd6StreamOffset += hd6Stream.skip(8); // magic, p_nameChunkData
-            hd6StreamOffset += hd6Stream.read(bb_nameChunkDataSize.array());
-            hd6StreamOffset += hd6Stream.skip(8); // nameChunkCount, unk
-            hd6StreamOffset += hd6Stream.read(bb_p_filenameTable.array());
-            hd6StreamOffset += hd6Stream.read(bb_filenameTableSize.array());
-            hd6StreamOffset += hd6Stream.skip(8); // unk, unk
-            hd6StreamOffset += hd6Stream.read(bb_fileCount.array());
-            hd6StreamOffset += hd6Stream.read(bb_p_fileEntries.array());
-            hd6StreamOffset += hd6Stream.skip(8); // unk, fileSize. end of header
-
-            // Make integers from ByteBuffers...
-            int nameChunkDataSize = bb_nameChunkDataSize.getInt();
-            int p_filenameTable = bb_p_filenameTable.getInt();
-            int filenameTableSize = bb_filenameTableSize.getInt();
-            int p_fileEntries = bb_p_fileEntries.getInt();
-            int fileCount = bb_fileCount.getInt() - 1; // -1 is here to remove the final dummy
-            // ...and create others for nameChunkData, filenameTable and an array for fileEntries
-            ByteBuffer bb_nameChunkData = ByteBuffer.allocate(nameChunkDataSize).order(LITTLE_ENDIAN);
-            ByteBuffer bb_filenameTable = ByteBuffer.allocate(filenameTableSize).order(LITTLE_ENDIAN);
-            ByteBuffer[] bb_fileEntryArr = new ByteBuffer[fileCount];
-
-            // Read nameChunkData, filenameTable and fileEntries
-            System.out.println("Reading name chunk data...");
-            hd6StreamOffset += hd6Stream.read(bb_nameChunkData.array());
-            hd6StreamOffset += hd6Stream.skip(p_filenameTable - hd6StreamOffset); // skip to filenameTable
-            System.out.println("Reading filename table...");
-            hd6StreamOffset += hd6Stream.read(bb_filenameTable.array());
-            hd6StreamOffset += hd6Stream.skip(p_fileEntries - hd6StreamOffset); // skip to fileEntries
-            System.out.println("Reading file entries...");
-            for (int i = 0; i < fileCount; i++) {
-                bb_fileEntryArr[i] = ByteBuffer.allocate(8).order(LITTLE_ENDIAN);
-                hd6StreamOffset += hd6Stream.read(bb_fileEntryArr[i].array());
-            }
+        return true;
+    }
 
-            // Create arrays for start offsets, file sizes, and filenames
-            int[] startOffsetArr = new int[fileCount];
-            int[] fileSizeArr = new int[fileCount];
-            String[] filenameArr = new String[fileCount];
+    /**
+     * @return null if direct I/O is not available for the DAT file
+     */
+    private static DirectDatReader openDirectReader(Path datPath) {
+        try {
+            return DirectDatReader.open(datPath);
+        } catch (IOException e) {
+            System.out.println("Direct I/O is not available for the DAT file, using buffered I/O instead. "
+                    + e.getLocalizedMessage());
+            return null;
+        }
+    }
 
-            // Decode name chunk data and make an array
-            int[] nameChunkDataOffsetArr = getNameChunkDataOffsetArr(bb_nameChunkData.array());
+    /**
+     * Fans the files out to worker threads, in archive order.
+     */
+    private static void writeFilesInParallel(HD6Archive archive, DirectDatReader directReader, int[] indexes,
+                                             Path destFolderPath, OperationOptions options) throws IOException {
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            for (int index : indexes) {
+                boolean submitted = runner.submit(archive.getFileSize(index), () -> copyEntry(archive.getDatChannel(),
+                        directReader, archive.getStartOffset(index), archive.getFileSize(index),
+                        resolve(destFolderPath, archive.getName(index)), options.getMetrics()));
+                if (!submitted) {
+                    break;
+                }
+            }
+        } finally {
+            runner.finish();
+        }
+    }
 
-            // Populate start offset and file size arrays
-            for (int i = 0; i < fileCount; i++) {
-                bb_fileEntryArr[i].position(2); // Skip filenameTableOffset
-                byte[] ba = new byte[3];
-                for (int j = 0; j < 3; j++) {
-                    ba[j] = bb_fileEntryArr[i].get();
+    /**
+     * Writes the selected files in DAT order, as runs of files read from the DAT at once and then written from memory.
+     * A run ends before a file more than {@link #MAX_COALESCED_GAP} bytes after it, or which would make it larger than
+     * {@link #MAX_RUN_SIZE} or the bytes allowed in flight, so the DAT regions between runs are never read. Runs are
+     * written on worker threads.
+     */
+    private static void writeSelectedFiles(HD6Archive archive, DirectDatReader directReader, int[] selectedIndexes,
+                                           Path destFolderPath, OperationOptions options) throws IOException {
+        int[] indexes = sortByStartOffset(archive, selectedIndexes);
+        long maxRunSize = Math.min(MAX_RUN_SIZE, options.getMaxBytesInFlight());
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            int runStart = 0;
+            while (runStart < indexes.length) {
+                long runStartOffset = archive.getStartOffset(indexes[runStart]);
+                long runEndOffset = runStartOffset + archive.getFileSize(indexes[runStart]);
+                int runEnd = runStart + 1;
+                while (runEnd < indexes.length) {
+                    int index = indexes[runEnd];
+                    // Entries of a deduplicated archive may share their data, hence the max
+                    long endOffset = Math.max(runEndOffset, archive.getStartOffset(index) + archive.getFileSize(index));
+                    if (archive.getStartOffset(index) - runEndOffset > MAX_COALESCED_GAP
+                            || endOffset - runStartOffset > maxRunSize) {
+                        break;
+                    }
+                    runEndOffset = endOffset;
+                    runEnd++;
                 }
-                startOffsetArr[i] = (uint24ToInt(ba) & 0xFFFFFC) << 0x9; // bit magic
-                for (int j = 0; j < 3; j++) {
-                    ba[j] = bb_fileEntryArr[i].get();
+                int[] runIndexes = Arrays.copyOfRange(indexes, runStart, runEnd);
+                long startOffset = runStartOffset;
+                long endOffset = runEndOffset;
+                boolean submitted = runner.submit(endOffset - startOffset, () -> {
+                    if (runIndexes.length == 1) {
+                        int index = runIndexes[0];
+                        copyEntry(archive.getDatChannel(), directReader, archive.getStartOffset(index),
+                                archive.getFileSize(index), resolve(destFolderPath, archive.getName(index)),
+                                options.getMetrics());
+                    } else {
+                        writeRun(archive, directReader, startOffset, endOffset, runIndexes, destFolderPath,
+                                options.getMetrics());
+                    }
+                });
+                if (!submitted) {
+                    break;
                 }
-                fileSizeArr[i] = uint24ToInt(ba) << 0x4;
+                runStart = runEnd;
             }
+        } finally {
+            runner.finish();
+        }
+    }
 
-            // Populate filename array
-            System.out.println("Decoding filenames...");
-            for (int i = 0; i < fileCount; i++) {
-                byte b;
-                ByteBuffer bb_filename = ByteBuffer.allocate(580); // (Windows MAX_PATH, 260) * (max bytes for a Shift JIS char, 2)
-                int filenameOffset = 0;
-                while ((b = bb_filenameTable.get()) != 0) {
-                    int finalIndex;
-                    if ((b & 0x80) != 0) { // 2-byte index
-                        byte b2 = bb_filenameTable.get();
-                        int shortIndex = uint16ToInt(new byte[]{b, b2});
-                        int factor = b2 + 0x1;
-                        finalIndex = shortIndex - (factor * 0x80);
-                    } else { // 1-byte index
-                        finalIndex = b;
-                    }
-                    int curOffset = nameChunkDataOffsetArr[finalIndex];
-                    int nextOffset = nameChunkDataOffsetArr[finalIndex + 1];
-                    int chunkSize = nextOffset - curOffset - 1; // -1 to remove trailing NUL
-                    bb_nameChunkData.get(curOffset, bb_filename.array(), filenameOffset, chunkSize);
-                    filenameOffset += chunkSize;
+    private static void writeRun(HD6Archive archive, DirectDatReader directReader, long startOffset, long endOffset,
+                                 int[] runIndexes, Path destFolderPath, OperationMetrics metrics) throws IOException {
+        ByteBuffer runBuffer;
+        if (directReader != null) {
+            runBuffer = directReader.read(startOffset, (int) (endOffset - startOffset));
+        } else {
+            FileChannel datChannel = archive.getDatChannel();
+            runBuffer = ByteBuffer.allocate((int) (endOffset - startOffset));
+            while (runBuffer.hasRemaining()) {
+                if (datChannel.read(runBuffer, startOffset + runBuffer.position()) < 0) {
+                    throw new IOException("Unexpected end of DAT file at offset "
+                            + (startOffset + runBuffer.position()));
                 }
-                filenameArr[i] = CS_SHIFT_JIS.decode(bb_filename.slice(0, filenameOffset)).toString();
-                filenameArr[i] = filenameArr[i].replace("\\", System.getProperty("file.separator"));
             }
+        }
+        for (int index : runIndexes) {
+            int fileSize = (int) archive.getFileSize(index);
+            ByteBuffer fileBuffer = runBuffer.slice((int) (archive.getStartOffset(index) - startOffset), fileSize);
+            Path destFilePath = resolve(destFolderPath, archive.getName(index));
+            try (FileChannel destChannel = FileChannel.open(destFilePath, WRITE, CREATE, TRUNCATE_EXISTING)) {
+                while (fileBuffer.hasRemaining()) {
+                    destChannel.write(fileBuffer);
+                }
+            }
+            metrics.addFile(fileSize);
+        }
+    }
 
-            // Write the resulting files
-            System.out.println("Writing files...");
-            int datStreamOffset = 0;
-            for (int i = 0; i < fileCount; i++) {
-                byte[] fileData = new byte[fileSizeArr[i]];
-                datStreamOffset += datStream.skip(startOffsetArr[i] - datStreamOffset); // skip to next file
-                datStreamOffset += datStream.read(fileData);
+    /**
+     * Streams the selected files into a single container, in DAT order, without creating any file or folder per entry.
+     * Entries get the last modified time of the HD6 file.
+     */
+    private static void writeContainer(HD6Archive archive, int[] selectedIndexes, Path containerPath, Path hd6Path,
+                                       OperationOptions options) throws IOException {
+        int[] indexes = sortByStartOffset(archive, selectedIndexes);
+        OutputStream containerStream = options.getContainerStream();
+        try (WritableByteChannel outChannel = containerStream != null ? null
+                : FileChannel.open(containerPath, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            ExtractionSink sink = options.getContainerFormat().createSink(
+                    outChannel != null ? outChannel : toChannel(containerStream),
+                    Files.getLastModifiedTime(hd6Path).toMillis());
+            for (int index : indexes) {
+                sink.addEntry(archive.getName(index), archive.getDatChannel(), archive.getStartOffset(index),
+                        archive.getFileSize(index));
+                options.getMetrics().addFile(archive.getFileSize(index));
+            }
+            sink.finish();
+        }
+        if (containerStream != null) {
+            containerStream.flush();
+        }
+    }
 
-                // Create folders and write the file
-                Path destFilePath = destFolderPath.resolve(filenameArr[i]);
-                Path destFileFolderPath = destFilePath.getParent();
-                Files.createDirectories(destFileFolderPath);
-                Files.write(destFilePath, fileData);
+    /**
+     * Compares the selected files with the destination folder in DAT order, several at a time on the worker threads.
+     * With a manifest, the hash of every selected file is stored in {@code hashes}, to record it in the new manifest.
+     *
+     * @return the indexes of the files to write, in DAT order
+     */
+    private static int[] findChangedFiles(HD6Archive archive, int[] selectedIndexes, Path destFolderPath,
+                                          ExtractionManifest manifest, byte[][] hashes, OperationOptions options)
+            throws IOException {
+        OperationMetrics metrics = options.getMetrics();
+        UnchangedCheck unchangedCheck = options.getUnchangedCheck();
+        int[] indexes = sortByStartOffset(archive, selectedIndexes);
+        boolean[] changed = new boolean[indexes.length];
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            for (int i = 0; i < indexes.length; i++) {
+                final int position = i;
+                int index = indexes[i];
+                long fileSize = archive.getFileSize(index);
+                boolean submitted = runner.submit(unchangedCheck == UnchangedCheck.SIZE ? 0 : fileSize, () -> {
+                    changed[position] = !isUnchanged(archive, index, destFolderPath, unchangedCheck, manifest,
+                            hashes);
+                    metrics.addFile(unchangedCheck == UnchangedCheck.SIZE ? 0 : fileSize);
+                });
+                if (!submitted) {
+                    break;
+                }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
         } finally {
-            try {
-                datStream.close();
-            } catch (IOException e) {
-                System.err.println("Could not close DAT stream! " + e.getLocalizedMessage());
-            }
-            try {
-                hd6Stream.close();
-            } catch (IOException e) {
-                System.err.println("Could not close HD6 stream! " + e.getLocalizedMessage());
+            runner.finish();
+        }
+
+        int changedCount = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (changed[i]) {
+                indexes[changedCount++] = indexes[i];
             }
         }
-        return true;
+        return Arrays.copyOf(indexes, changedCount);
     }
 
-    private static int uint16ToInt(byte[] ba) {
-        return ((ba[0] & 0xFF) | ((ba[1] & 0xFF) << 8));
+    private static boolean isUnchanged(HD6Archive archive, int index, Path destFolderPath,
+                                       UnchangedCheck unchangedCheck, ExtractionManifest manifest, byte[][] hashes)
+            throws IOException {
+        String name = archive.getName(index);
+        long startOffset = archive.getStartOffset(index);
+        long fileSize = archive.getFileSize(index);
+        if (hashes != null) {
+            hashes[index] = ExtractionManifest.hash(archive.getDatChannel(), startOffset, fileSize);
+        }
+        Path destFilePath = resolve(destFolderPath, name);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(destFilePath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile() || attributes.size() != fileSize) {
+            return false;
+        }
+        return switch (unchangedCheck) {
+            case SIZE -> true;
+            case CONTENTS -> fileSize == 0
+                    || IncrementalReconstruction.sameContents(archive.getDatChannel(), startOffset, destFilePath,
+                    fileSize);
+            case MANIFEST -> {
+                ExtractionManifest.Entry entry = manifest.get(name);
+                yield entry != null && entry.size() == fileSize
+                        && entry.modifiedTime() == attributes.lastModifiedTime().toMillis()
+                        && Arrays.equals(entry.hash(), hashes[index]);
+            }
+        };
     }
 
-    private static int uint24ToInt(byte[] ba) {
-        return ((ba[0] & 0xFF) | ((ba[1] & 0xFF) << 8) | ((ba[2] & 0xFF) << 16));
+    /**
+     * Deletes the files of the destination folder which are not in the archive, whether or not they were selected,
+     * then the folders this left empty.
+     *
+     * @return the names of the deleted files
+     */
+    private static List<String> prune(HD6Archive archive, Path destFolderPath) throws IOException {
+        List<String> prunedNames = new ArrayList<>();
+        Set<Path> prunedFolderPaths = new HashSet<>();
+        String separator = destFolderPath.getFileSystem().getSeparator();
+        Files.walkFileTree(destFolderPath, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path filePath, BasicFileAttributes attributes) throws IOException {
+                String name = destFolderPath.relativize(filePath).toString().replace(separator, "/");
+                if (archive.find(name) < 0) {
+                    Files.delete(filePath);
+                    prunedNames.add(name);
+                    prunedFolderPaths.add(filePath.getParent());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path folderPath, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                if (prunedFolderPaths.contains(folderPath) && !folderPath.equals(destFolderPath)) {
+                    try (Stream<Path> entries = Files.list(folderPath)) {
+                        if (entries.findAny().isEmpty()) {
+                            Files.delete(folderPath);
+                            prunedFolderPaths.add(folderPath.getParent());
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return prunedNames;
+    }
+
+    /**
+     * @return the channel of a file stream, e.g. standard output, so that entries are transferred from the DAT without
+     * going through a heap buffer, or a channel copying to the stream otherwise. Neither is closed after use, as the
+     * stream is left open.
+     */
+    private static WritableByteChannel toChannel(OutputStream stream) {
+        return stream instanceof FileOutputStream fileStream ? fileStream.getChannel() : Channels.newChannel(stream);
     }
 
-    private static int[] getNameChunkDataOffsetArr(byte[] nameChunkData) {
-        List<Integer> offsetList = new ArrayList<>(nameChunkData.length / 2); // safe initial capacity
-        offsetList.add(0); // add first null offset
-        for (int i = 0; i < nameChunkData.length; i++) {
-            if (nameChunkData[i] == 0x00) {
-                offsetList.add(i + 1);
+    /**
+     * Sorts file indexes by start offset, then by index, without boxing them: start offsets are multiples of 0x800
+     * below 8 GiB, so that both fit in a long.
+     */
+    private static int[] sortByStartOffset(HD6Archive archive, int[] indexes) {
+        long[] keys = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            keys[i] = ((archive.getStartOffset(indexes[i]) >> 0xB) << 32) | indexes[i];
+        }
+        Arrays.sort(keys);
+        int[] sortedIndexes = new int[indexes.length];
+        for (int i = 0; i < keys.length; i++) {
+            sortedIndexes[i] = (int) keys[i];
+        }
+        return sortedIndexes;
+    }
+
+    private static void copyEntry(FileChannel datChannel, DirectDatReader directReader, long startOffset,
+                                  long fileSize, Path destFilePath, OperationMetrics metrics) throws IOException {
+        if (directReader != null) {
+            directReader.copyTo(startOffset, fileSize, destFilePath, metrics);
+        } else {
+            transferEntry(datChannel, startOffset, fileSize, destFilePath, metrics);
+        }
+    }
+
+    /**
+     * Copies a file from the DAT to the given destination without going through a heap buffer. The kernel may
+     * transfer fewer bytes than requested, hence the loop.
+     */
+    static void transferEntry(FileChannel datChannel, long startOffset, long fileSize, Path destFilePath,
+                              OperationMetrics metrics) throws IOException {
+        try (FileChannel destChannel = FileChannel.open(destFilePath, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            long transferred = 0;
+            while (transferred < fileSize) {
+                long count = datChannel.transferTo(startOffset + transferred, fileSize - transferred, destChannel);
+                if (count <= 0) {
+                    throw new IOException("Unexpected end of DAT file at offset " + (startOffset + transferred));
+                }
+                transferred += count;
             }
         }
-        return offsetList.stream().mapToInt(Integer::intValue).toArray();
+        metrics.addFile(fileSize);
     }
 }
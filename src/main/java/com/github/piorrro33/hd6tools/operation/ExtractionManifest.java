@@ -0,0 +1,118 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record of the files an extraction left in a folder, used by {@link UnchangedCheck#MANIFEST} to skip the files that
+ * neither the archive nor anybody else changed since.
+ * <p>
+ * The manifest is kept next to the folder, as {@code FOLDER.manifest}, so that it is never taken for one of its
+ * files. It holds a line per file: the SHA-256 hash of its contents in hex, its size, its last modified time in
+ * milliseconds since the epoch and its name with {@code /} separators, separated by tabs.
+ */
+class ExtractionManifest {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String HEADER = "# HD6Tools extraction manifest";
+
+    record Entry(byte[] hash, long size, long modifiedTime) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    private ExtractionManifest(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    static Path getPath(Path destFolderPath) {
+        Path folderPath = destFolderPath.toAbsolutePath().normalize();
+        return folderPath.resolveSibling(folderPath.getFileName() + ".manifest");
+    }
+
+    /**
+     * @return the manifest of the given file, empty if there is no such file
+     */
+    static ExtractionManifest read(Path manifestPath) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(manifestPath);
+        } catch (NoSuchFileException e) {
+            return new ExtractionManifest(new HashMap<>());
+        }
+        Map<String, Entry> entries = new HashMap<>(lines.size() * 2);
+        HexFormat hexFormat = HexFormat.of();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t", 4);
+            try {
+                entries.put(fields[3], new Entry(hexFormat.parseHex(fields[0]), Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2])));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("Line " + (i + 1) + " of manifest " + manifestPath + " is malformed!", e);
+            }
+        }
+        return new ExtractionManifest(entries);
+    }
+
+    /**
+     * @return the entry of the given file, or null if the manifest does not have it
+     */
+    Entry get(String name) {
+        return entries.get(name);
+    }
+
+    void put(String name, Entry entry) {
+        entries.put(name, entry);
+    }
+
+    void remove(String name) {
+        entries.remove(name);
+    }
+
+    /**
+     * Writes the manifest, its lines sorted by name so that manifests of the same folder can be compared.
+     */
+    void write(Path manifestPath) throws IOException {
+        List<String> names = new ArrayList<>(entries.keySet());
+        names.sort(null);
+        HexFormat hexFormat = HexFormat.of();
+        try (BufferedWriter writer = Files.newBufferedWriter(manifestPath)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (String name : names) {
+                Entry entry = entries.get(name);
+                writer.write(hexFormat.formatHex(entry.hash()) + "\t" + entry.size() + "\t" + entry.modifiedTime()
+                        + "\t" + name);
+                writer.newLine();
+            }
+        }
+    }
+
+    static byte[] hash(FileChannel datChannel, long startOffset, long fileSize) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(HASH_ALGORITHM + " is not available!", e);
+        }
+        if (startOffset + fileSize > datChannel.size()) {
+            throw new IOException("Unexpected end of DAT file at offset " + datChannel.size());
+        }
+        digest.update(datChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, fileSize));
+        return digest.digest();
+    }
+}
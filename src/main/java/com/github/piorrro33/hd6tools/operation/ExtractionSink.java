@@ -0,0 +1,44 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Receives the files of an extraction one after the other, in DAT order, and writes them to a single output.
+ * Sinks never close their output, which may be standard output.
+ */
+interface ExtractionSink {
+    /**
+     * @param name path of the file in the archive, with {@code /} separators
+     */
+    void addEntry(String name, FileChannel datChannel, long startOffset, long fileSize) throws IOException;
+
+    /**
+     * Writes what the container needs after its last entry.
+     */
+    void finish() throws IOException;
+
+    /**
+     * Copies a range of the DAT to the output, without going through a heap buffer when the output is a file or a
+     * pipe.
+     */
+    static void transfer(FileChannel datChannel, long startOffset, long size, WritableByteChannel outChannel)
+            throws IOException {
+        long transferred = 0;
+        while (transferred < size) {
+            long count = datChannel.transferTo(startOffset + transferred, size - transferred, outChannel);
+            if (count <= 0) {
+                throw new IOException("Unexpected end of DAT file at offset " + (startOffset + transferred));
+            }
+            transferred += count;
+        }
+    }
+
+    static void write(ByteBuffer buffer, WritableByteChannel outChannel) throws IOException {
+        while (buffer.hasRemaining()) {
+            outChannel.write(buffer);
+        }
+    }
+}
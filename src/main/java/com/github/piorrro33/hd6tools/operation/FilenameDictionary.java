@@ -0,0 +1,431 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits filenames into the name chunks stored in an HD6 file and counts how often each chunk is used.
+ * <p>
+ * Chunks get a token id in order of first appearance. Once every filename has been added,
+ * {@link #sortByFrequency()} orders the chunks like the game files do (most used first, so that they get 1-byte
+ * indexes) and gives back the table translating token ids into dictionary indexes. As every chunk costs the same
+ * whatever its index, this order also gives the smallest filename table for a given set of chunks;
+ * {@link #mergeChunks(int[][], int[][], OperationOptions)} looks for a smaller set.
+ */
+class FilenameDictionary {
+    private static final Charset CS_SHIFT_JIS = Charset.forName("Shift_JIS");
+    private static final int ONE_BYTE_INDEX_COUNT = 0x7F; // indexes 0x01 to 0x7F take one byte
+    private static final int MIN_FILENAMES_PER_SLICE = 2048;
+    private static final int MAX_MERGE_ROUNDS = 256;
+
+    private final Map<String, Integer> tokenIds;
+    private final List<String> chunks;
+    private int[] counts;
+    private int filenameCount;
+
+    FilenameDictionary(int expectedChunkCount) {
+        tokenIds = new HashMap<>(expectedChunkCount * 2);
+        chunks = new ArrayList<>(expectedChunkCount);
+        counts = new int[Math.max(expectedChunkCount, 16)];
+    }
+
+    /**
+     * Splits every filename into chunks and counts them, on several threads for long lists. This gives the same
+     * dictionary and token ids as adding the filenames one after the other.
+     *
+     * @param filenameTokenIds receives the token ids of each filename
+     */
+    static FilenameDictionary build(List<String> filenames, int[][] filenameTokenIds, OperationOptions options)
+            throws IOException {
+        int sliceCount = sliceCount(filenames.size(), options);
+        FilenameDictionary[] sliceDictionaries = new FilenameDictionary[sliceCount];
+        forEachSlice(filenames.size(), sliceCount, options, (slice, from, to) -> {
+            FilenameDictionary sliceDictionary = new FilenameDictionary(4300); // DC Data0_0 has 4277
+            for (int i = from; i < to; i++) {
+                filenameTokenIds[i] = sliceDictionary.addFilename(filenames.get(i));
+            }
+            sliceDictionaries[slice] = sliceDictionary;
+        });
+
+        // Merge the slices in filename order, so that token ids still follow the first appearance of each chunk
+        FilenameDictionary dictionary = sliceDictionaries[0];
+        for (int slice = 1; slice < sliceCount; slice++) {
+            FilenameDictionary sliceDictionary = sliceDictionaries[slice];
+            int[] ids = new int[sliceDictionary.size()];
+            for (int sliceId = 0; sliceId < ids.length; sliceId++) {
+                ids[sliceId] = dictionary.idOf(sliceDictionary.chunks.get(sliceId));
+                dictionary.counts[ids[sliceId]] += sliceDictionary.counts[sliceId];
+            }
+            dictionary.filenameCount += sliceDictionary.filenameCount;
+            for (int i = sliceStart(filenames.size(), sliceCount, slice);
+                 i < sliceStart(filenames.size(), sliceCount, slice + 1); i++) {
+                for (int j = 0; j < filenameTokenIds[i].length; j++) {
+                    filenameTokenIds[i][j] = ids[filenameTokenIds[i][j]];
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    private int idOf(String chunk) {
+        Integer id = tokenIds.get(chunk);
+        if (id == null) {
+            id = chunks.size();
+            tokenIds.put(chunk, id);
+            chunks.add(chunk);
+            if (id == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Splits the given filename (with {@code \} separators) into chunks and adds them to the dictionary.
+     *
+     * @return the token ids of the chunks making up the filename, in order
+     */
+    int[] addFilename(String filename) {
+        List<String> split = splitFilename(filename);
+        int[] ids = new int[split.size()];
+        for (int i = 0; i < ids.length; i++) {
+            int id = idOf(split.get(i));
+            counts[id]++;
+            ids[i] = id;
+        }
+        filenameCount++;
+        return ids;
+    }
+
+    /**
+     * Looks for chunks giving a smaller HD6 file: pairs of chunks that follow each other in many filenames are merged
+     * into one chunk, when the bytes saved in the filename table outweigh the bytes added to the name chunk data.
+     * Chunks used once next to each other are always merged. Each round merges the most profitable pairs not sharing
+     * a chunk, as estimated from the use counts, until no pair is worth it. Pairs are counted on several threads.
+     * <p>
+     * This dictionary and the given token ids are left alone, so that callers can keep whichever is smaller.
+     *
+     * @param mergedTokenIds receives the token ids of each filename in the returned dictionary
+     * @return a new dictionary, whose chunks keep their order of first appearance
+     */
+    FilenameDictionary mergeChunks(int[][] filenameTokenIds, int[][] mergedTokenIds, OperationOptions options)
+            throws IOException {
+        FilenameDictionary merged = new FilenameDictionary(size());
+        merged.tokenIds.putAll(tokenIds);
+        merged.chunks.addAll(chunks);
+        merged.counts = counts.clone();
+        merged.filenameCount = filenameCount;
+        for (int i = 0; i < filenameTokenIds.length; i++) {
+            mergedTokenIds[i] = filenameTokenIds[i].clone();
+        }
+        int[] encodedLengths = new int[size()];
+        for (int id = 0; id < encodedLengths.length; id++) {
+            encodedLengths[id] = encodedLength(chunks.get(id));
+        }
+
+        int sliceCount = sliceCount(mergedTokenIds.length, options);
+        for (int round = 0; round < MAX_MERGE_ROUNDS; round++) {
+            Map<Long, Integer> pairCounts = countPairs(mergedTokenIds, sliceCount, options);
+
+            // Sort the pairs by estimated gain, highest first, and keep those not sharing a chunk
+            int[] indexCosts = merged.indexCosts();
+            int oneByteMinCount = merged.oneByteMinCount();
+            List<long[]> candidates = new ArrayList<>();
+            for (Map.Entry<Long, Integer> pairCount : pairCounts.entrySet()) {
+                long pair = pairCount.getKey();
+                int first = (int) (pair >>> 32);
+                int second = (int) pair;
+                int pairUses = pairCount.getValue();
+                boolean exists = merged.tokenIds.containsKey(merged.chunks.get(first) + merged.chunks.get(second));
+                long gain = (long) pairUses * (indexCosts[first] + indexCosts[second]
+                        - (pairUses >= oneByteMinCount ? 1 : 2))
+                        + (merged.counts[first] == pairUses ? encodedLengths[first] + 1 : 0)
+                        + (merged.counts[second] == pairUses ? encodedLengths[second] + 1 : 0)
+                        - (exists ? 0 : encodedLengths[first] + encodedLengths[second] + 1);
+                if (gain > 0) {
+                    candidates.add(new long[]{gain, pair});
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            candidates.sort((c1, c2) -> c1[0] != c2[0] ? Long.compare(c2[0], c1[0]) : Long.compare(c1[1], c2[1]));
+            boolean[] isMerged = new boolean[merged.size()];
+            Map<Long, Integer> pairTokenIds = new HashMap<>();
+            for (long[] candidate : candidates) {
+                int first = (int) (candidate[1] >>> 32);
+                int second = (int) candidate[1];
+                if (!isMerged[first] && !isMerged[second]) {
+                    isMerged[first] = true;
+                    isMerged[second] = true;
+                    int id = merged.idOf(merged.chunks.get(first) + merged.chunks.get(second));
+                    if (id >= encodedLengths.length) {
+                        encodedLengths = Arrays.copyOf(encodedLengths, merged.counts.length);
+                    }
+                    encodedLengths[id] = encodedLengths[first] + encodedLengths[second];
+                    pairTokenIds.put(candidate[1], id);
+                }
+            }
+            merged.counts = replacePairs(mergedTokenIds, isMerged, pairTokenIds, merged.counts.length, sliceCount,
+                    options);
+        }
+        return merged.withoutUnusedChunks(mergedTokenIds);
+    }
+
+    /**
+     * @return how many times each pair of chunks appears, the key holding the first token id in its high half
+     */
+    private static Map<Long, Integer> countPairs(int[][] filenameTokenIds, int sliceCount, OperationOptions options)
+            throws IOException {
+        List<Map<Long, Integer>> slicePairCounts = new ArrayList<>();
+        for (int slice = 0; slice < sliceCount; slice++) {
+            slicePairCounts.add(new HashMap<>());
+        }
+        forEachSlice(filenameTokenIds.length, sliceCount, options, (slice, from, to) -> {
+            Map<Long, Integer> pairCounts = slicePairCounts.get(slice);
+            for (int i = from; i < to; i++) {
+                int[] ids = filenameTokenIds[i];
+                for (int j = 0; j + 1 < ids.length; j++) {
+                    if (ids[j] != ids[j + 1]) {
+                        pairCounts.merge(((long) ids[j] << 32) | ids[j + 1], 1, Integer::sum);
+                    }
+                }
+            }
+        });
+        Map<Long, Integer> pairCounts = slicePairCounts.get(0);
+        for (int slice = 1; slice < sliceCount; slice++) {
+            slicePairCounts.get(slice).forEach((pair, count) -> pairCounts.merge(pair, count, Integer::sum));
+        }
+        return pairCounts;
+    }
+
+    /**
+     * Replaces the given pairs of chunks by their merged chunk in every filename. A chunk is part of one pair at
+     * most, so pairs cannot overlap.
+     *
+     * @return the new use count of every chunk
+     */
+    private static int[] replacePairs(int[][] filenameTokenIds, boolean[] isMerged, Map<Long, Integer> pairTokenIds,
+                                      int chunkCapacity, int sliceCount, OperationOptions options)
+            throws IOException {
+        int[][] sliceCounts = new int[sliceCount][chunkCapacity];
+        forEachSlice(filenameTokenIds.length, sliceCount, options, (slice, from, to) -> {
+            int[] counts = sliceCounts[slice];
+            for (int i = from; i < to; i++) {
+                int[] ids = filenameTokenIds[i];
+                int length = 0;
+                for (int j = 0; j < ids.length; j++) {
+                    int id = ids[j];
+                    if (isMerged[id] && j + 1 < ids.length) {
+                        Integer pairId = pairTokenIds.get(((long) id << 32) | ids[j + 1]);
+                        if (pairId != null) {
+                            id = pairId;
+                            j++;
+                        }
+                    }
+                    ids[length++] = id;
+                    counts[id]++;
+                }
+                if (length < ids.length) {
+                    filenameTokenIds[i] = Arrays.copyOf(ids, length);
+                }
+            }
+        });
+        for (int slice = 1; slice < sliceCount; slice++) {
+            for (int id = 0; id < chunkCapacity; id++) {
+                sliceCounts[0][id] += sliceCounts[slice][id];
+            }
+        }
+        return sliceCounts[0];
+    }
+
+    /**
+     * @return a copy of this dictionary without the chunks no filename uses anymore, the token ids being updated
+     */
+    private FilenameDictionary withoutUnusedChunks(int[][] filenameTokenIds) {
+        FilenameDictionary used = new FilenameDictionary(size());
+        used.filenameCount = filenameCount;
+        int[] ids = new int[size()];
+        for (int id = 0; id < ids.length; id++) {
+            if (counts[id] > 0) {
+                ids[id] = used.idOf(chunks.get(id));
+                used.counts[ids[id]] = counts[id];
+            }
+        }
+        for (int[] tokenIds : filenameTokenIds) {
+            for (int j = 0; j < tokenIds.length; j++) {
+                tokenIds[j] = ids[tokenIds[j]];
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @return the size of the name chunk data and filename table, padding included, once sorted by frequency
+     */
+    long getIndexSize() {
+        long nameChunkDataSize = 1; // first null byte
+        for (String chunk : chunks) {
+            nameChunkDataSize += encodedLength(chunk) + 1;
+        }
+        long filenameTableSize = filenameCount; // terminating 0 indexes
+        int[] indexCosts = indexCosts();
+        for (int id = 0; id < size(); id++) {
+            filenameTableSize += (long) counts[id] * indexCosts[id];
+        }
+        return nameChunkDataSize + (0x4 - (0x34 + nameChunkDataSize) % 0x4) % 0x4
+                + filenameTableSize + (0x8 - filenameTableSize % 0x8) % 0x8;
+    }
+
+    /**
+     * @return the size of the index of each chunk in the filename table, once sorted by frequency
+     */
+    private int[] indexCosts() {
+        int[] indexCosts = new int[size()];
+        Arrays.fill(indexCosts, 2);
+        int oneByteMinCount = oneByteMinCount();
+        int oneByteChunkCount = 0;
+        // Same order as sortByFrequency: ties go to the first chunk to appear
+        for (int id = 0; id < size() && oneByteChunkCount < ONE_BYTE_INDEX_COUNT; id++) {
+            if (counts[id] > oneByteMinCount) {
+                indexCosts[id] = 1;
+                oneByteChunkCount++;
+            }
+        }
+        for (int id = 0; id < size() && oneByteChunkCount < ONE_BYTE_INDEX_COUNT; id++) {
+            if (counts[id] == oneByteMinCount) {
+                indexCosts[id] = 1;
+                oneByteChunkCount++;
+            }
+        }
+        return indexCosts;
+    }
+
+    /**
+     * @return the use count of the least used chunk still getting a 1-byte index
+     */
+    private int oneByteMinCount() {
+        if (size() <= ONE_BYTE_INDEX_COUNT) {
+            return 0;
+        }
+        int[] sortedCounts = Arrays.copyOf(counts, size());
+        Arrays.sort(sortedCounts);
+        return sortedCounts[sortedCounts.length - ONE_BYTE_INDEX_COUNT];
+    }
+
+    private static int encodedLength(String chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.charAt(i) >= 0x80) {
+                return CS_SHIFT_JIS.encode(chunk).limit();
+            }
+        }
+        return chunk.length();
+    }
+
+    private static int sliceCount(int filenameCount, OperationOptions options) {
+        return Math.max(1, Math.min(options.getThreadCount(), filenameCount / MIN_FILENAMES_PER_SLICE));
+    }
+
+    private static int sliceStart(int filenameCount, int sliceCount, int slice) {
+        return (int) ((long) filenameCount * slice / sliceCount);
+    }
+
+    /**
+     * Runs the task on consecutive slices of the filenames, on the threads of a {@link BoundedTaskRunner} unless
+     * there is a single slice.
+     */
+    private static void forEachSlice(int filenameCount, int sliceCount, OperationOptions options, SliceTask task)
+            throws IOException {
+        if (sliceCount == 1) {
+            task.run(0, 0, filenameCount);
+            return;
+        }
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            for (int slice = 0; slice < sliceCount; slice++) {
+                final int sliceIndex = slice;
+                boolean submitted = runner.submit(0, () -> task.run(sliceIndex,
+                        sliceStart(filenameCount, sliceCount, sliceIndex),
+                        sliceStart(filenameCount, sliceCount, sliceIndex + 1)));
+                if (!submitted) {
+                    break;
+                }
+            }
+        } finally {
+            runner.finish();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SliceTask {
+        void run(int slice, int from, int to);
+    }
+
+    /**
+     * Sorts the chunks by descending use count. Chunks used equally often keep their order of first appearance.
+     *
+     * @return an array mapping each token id to its dictionary index (1-based, index 0 ends a filename)
+     */
+    int[] sortByFrequency() {
+        int chunkCount = chunks.size();
+        // Count in the high half, token id in the low half: a plain sort is then stable
+        long[] keys = new long[chunkCount];
+        for (int id = 0; id < chunkCount; id++) {
+            keys[id] = ((long) (Integer.MAX_VALUE - counts[id]) << 32) | id;
+        }
+        Arrays.sort(keys);
+
+        int[] dictionaryIndexes = new int[chunkCount];
+        List<String> sortedChunks = new ArrayList<>(chunkCount);
+        int[] sortedCounts = new int[counts.length];
+        for (int i = 0; i < chunkCount; i++) {
+            int id = (int) keys[i];
+            dictionaryIndexes[id] = i + 1;
+            sortedChunks.add(chunks.get(id));
+            sortedCounts[i] = counts[id];
+            tokenIds.put(chunks.get(id), i);
+        }
+        chunks.clear();
+        chunks.addAll(sortedChunks);
+        counts = sortedCounts;
+        return dictionaryIndexes;
+    }
+
+    List<String> getChunks() {
+        return chunks;
+    }
+
+    int size() {
+        return chunks.size();
+    }
+
+    static List<String> splitFilename(String filename) {
+        List<String> split = new ArrayList<>();
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < filename.length(); i++) {
+            char c = filename.charAt(i);
+            if (isSeparator(c)) {
+                // A separator starts a new chunk, unless the current chunk only holds (up to two) separators
+                for (int count = 0; count < s.length(); count++) {
+                    if (!isSeparator(s.charAt(count)) || count == 2) {
+                        split.add(s.toString());
+                        s.setLength(0);
+                        break;
+                    }
+                }
+            }
+            s.append(c);
+        }
+        split.add(s.toString());
+        return split;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == '_' || c == '\\' || c == '-';
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.FileIndex;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import com.github.piorrro33.hd6tools.archive.IndexCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Updates an existing HD6/DAT pair in place from its source folder.
+ * <p>
+ * This only works while the folder holds the same files as the archive, in the same order: the filename dictionary
+ * and table are then unchanged, and only the start offset and size fields of file entries need patching. A changed
+ * file is written over its old 0x800-aligned slot when it fits, and appended to the DAT otherwise. Slots shared by
+ * several file entries, as written by a deduplicating rebuild, are never overwritten: a changed file using one is
+ * always appended.
+ * <p>
+ * A file is considered unchanged when its size and contents match its copy in the DAT. With
+ * {@link OperationOptions#isTrustModifiedTimes()}, a file of the same size not modified after the archive was written
+ * is taken as unchanged without reading it, which misses files copied with their original time.
+ */
+class IncrementalReconstruction {
+    enum Outcome {
+        UPDATED, FAILED, FULL_REBUILD_NEEDED
+    }
+
+    public static Outcome perform(Path datPath, Path hd6Path, Path sourceFolderPath, OperationOptions options) {
+        OperationMetrics metrics = options.getMetrics();
+        metrics.startOperation("incremental rebuild");
+        System.out.println("Reading existing HD6...");
+        metrics.startPhase("Reading existing HD6");
+        long[] startOffsetArr;
+        long[] archiveFileSizeArr;
+        SourceFileList sourceFiles;
+        List<Path> filePathList;
+        long archiveModifiedTime;
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            archiveModifiedTime = Math.min(Files.getLastModifiedTime(hd6Path).toMillis(),
+                    Files.getLastModifiedTime(datPath).toMillis());
+
+            metrics.addFile(Files.size(hd6Path));
+
+            System.out.println("Browsing source folder...");
+            metrics.startPhase("Browsing source folder");
+            sourceFiles = SourceFileList.scan(sourceFolderPath, options);
+            filePathList = sourceFiles.getPaths();
+            metrics.addFiles(filePathList.size());
+            if (filePathList.size() != archive.size()) {
+                System.out.println("Source folder and archive do not hold the same number of files.");
+                return Outcome.FULL_REBUILD_NEEDED;
+            }
+            startOffsetArr = new long[archive.size()];
+            archiveFileSizeArr = new long[archive.size()];
+            String separator = System.getProperty("file.separator");
+            for (int i = 0; i < archive.size(); i++) {
+                String s_relativeFilePath = sourceFolderPath.relativize(filePathList.get(i)).toString()
+                        .replace(separator, "/");
+                if (!s_relativeFilePath.equals(archive.getName(i))) {
+                    System.out.println("Source folder and archive do not hold the same files.");
+                    return Outcome.FULL_REBUILD_NEEDED;
+                }
+                startOffsetArr[i] = archive.getStartOffset(i);
+                archiveFileSizeArr[i] = archive.getFileSize(i);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read existing archive! " + e.getLocalizedMessage());
+            return Outcome.FULL_REBUILD_NEEDED;
+        }
+
+        Map<Long, Integer> slotUseCounts = new HashMap<>();
+        for (int i = 0; i < startOffsetArr.length; i++) {
+            if (archiveFileSizeArr[i] > 0) {
+                slotUseCounts.merge(startOffsetArr[i], 1, Integer::sum);
+            }
+        }
+
+        // Patching stops at the first error, so check the file sizes before anything is written
+        for (int i = 0; i < filePathList.size(); i++) {
+            if (sourceFiles.getSize(i) > FileIndex.MAX_FILE_SIZE) {
+                System.err.println("File " + filePathList.get(i) + " is too large for an HD6 archive! Files must be "
+                        + "smaller than 256 MiB.");
+                return Outcome.FAILED;
+            }
+        }
+
+        System.out.println("Looking for changed files...");
+        metrics.startPhase("Looking for changed files", filePathList.size());
+        try (FileChannel datChannel = FileChannel.open(datPath, READ, WRITE);
+             FileChannel hd6Channel = FileChannel.open(hd6Path, READ, WRITE)) {
+            ByteBuffer bb_header = ByteBuffer.allocate(0x34).order(LITTLE_ENDIAN);
+            hd6Channel.read(bb_header, 0);
+            int p_fileEntries = bb_header.getInt(0x28);
+
+            // Place every changed file before writing anything, so that a DAT growing too large is found first
+            long datSize = datChannel.size();
+            long appendOffset = alignedSize(datSize);
+            boolean[] isChanged = new boolean[filePathList.size()];
+            boolean[] isAppended = new boolean[filePathList.size()];
+            long[] newStartOffsetArr = new long[filePathList.size()];
+            int patchedCount = 0;
+            int appendedCount = 0;
+            for (int i = 0; i < filePathList.size(); i++) {
+                long curFileSize = sourceFiles.getSize(i);
+                long slotSize = alignedSize(archiveFileSizeArr[i]);
+                boolean sameSize = (curFileSize >> 0x4) << 0x4 == archiveFileSizeArr[i] && curFileSize <= slotSize;
+                boolean isUnchanged = sameSize && (options.isTrustModifiedTimes()
+                        && sourceFiles.getModifiedTime(i) <= archiveModifiedTime
+                        || sameContents(datChannel, startOffsetArr[i], filePathList.get(i), curFileSize));
+                metrics.addFiles(1);
+                if (isUnchanged) {
+                    continue;
+                }
+                isChanged[i] = true;
+
+                boolean isSlotShared = archiveFileSizeArr[i] > 0 && slotUseCounts.get(startOffsetArr[i]) > 1;
+                if (isSlotShared) {
+                    slotUseCounts.merge(startOffsetArr[i], -1, Integer::sum);
+                }
+                if (!isSlotShared && alignedSize(curFileSize) <= slotSize) {
+                    newStartOffsetArr[i] = startOffsetArr[i];
+                    patchedCount++;
+                } else {
+                    if (appendOffset > FileIndex.MAX_START_OFFSET) {
+                        System.out.println("The DAT file would become too large to be patched.");
+                        return Outcome.FULL_REBUILD_NEEDED;
+                    }
+                    newStartOffsetArr[i] = appendOffset;
+                    isAppended[i] = true;
+                    appendOffset += alignedSize(curFileSize);
+                    appendedCount++;
+                }
+            }
+
+            System.out.println("Updating changed files...");
+            metrics.startPhase("Updating changed files", patchedCount + appendedCount);
+            long writtenBytes = 0;
+            for (int i = 0; i < filePathList.size(); i++) {
+                if (!isChanged[i]) {
+                    continue;
+                }
+                Path curFilePath = filePathList.get(i);
+                long curFileSize = sourceFiles.getSize(i);
+                long startOffset = newStartOffsetArr[i];
+                if (!isAppended[i]) {
+                    // Fits in its old slot: overwrite it, and clear whatever the old file left after the new one
+                    clear(datChannel, startOffset + curFileSize, alignedSize(archiveFileSizeArr[i]) - curFileSize);
+                } else if (curFileSize > 0) {
+                    // Extend the DAT to the end of the new slot first: transferFrom writes nothing past the end of
+                    // the DAT, which may not end on a slot boundary
+                    datChannel.write(ByteBuffer.allocate(1), startOffset + alignedSize(curFileSize) - 1);
+                }
+                try (FileChannel sourceChannel = FileChannel.open(curFilePath, READ)) {
+                    long transferred = 0;
+                    while (transferred < curFileSize) {
+                        long count = datChannel.transferFrom(sourceChannel, startOffset + transferred,
+                                curFileSize - transferred);
+                        if (count <= 0) {
+                            throw new IOException("File " + curFilePath + " is shorter than expected!");
+                        }
+                        transferred += count;
+                    }
+                }
+                writtenBytes += curFileSize;
+                metrics.addFile(curFileSize);
+
+                // Patch the file entry, keeping the upper bits of the filename offset stored next to the start offset
+                int entryOffset = p_fileEntries + i * 8;
+                ByteBuffer bb_fileEntry = ByteBuffer.allocate(6).order(LITTLE_ENDIAN);
+                hd6Channel.read(bb_fileEntry, entryOffset + 2);
+                int filenameOffsetBits = bb_fileEntry.get(0) & 0x3;
+                bb_fileEntry.clear();
+                bb_fileEntry.put(Reconstruction.intToUint24((int) (startOffset >> 0x9) | filenameOffsetBits));
+                bb_fileEntry.put(Reconstruction.intToUint24((int) (curFileSize >> 0x4)));
+                bb_fileEntry.flip();
+                hd6Channel.write(bb_fileEntry, entryOffset + 2);
+            }
+            IndexCache.invalidate(hd6Path);
+            System.out.println("Updated " + (patchedCount + appendedCount) + " file(s) (" + patchedCount +
+                    " in place, " + appendedCount + " appended), " + writtenBytes + " bytes written.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Outcome.FAILED;
+        }
+        return Outcome.UPDATED;
+    }
+
+    private static long alignedSize(long fileSize) {
+        return fileSize + (0x800 - fileSize % 0x800) % 0x800;
+    }
+
+    private static void clear(FileChannel datChannel, long position, long size) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(size, 0x10000));
+        long cleared = 0;
+        while (cleared < size) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), size - cleared));
+            cleared += datChannel.write(zeros, position + cleared);
+        }
+    }
+
+    static boolean sameContents(FileChannel datChannel, long startOffset, Path filePath, long fileSize)
+            throws IOException {
+        if (startOffset + fileSize > datChannel.size()) {
+            return false;
+        }
+        try (FileChannel fileChannel = FileChannel.open(filePath, READ)) {
+            MappedByteBuffer datData = datChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, fileSize);
+            MappedByteBuffer fileData = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            return datData.mismatch(fileData) == -1;
+        }
+    }
+}
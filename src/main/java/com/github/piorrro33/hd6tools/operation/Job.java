@@ -0,0 +1,34 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.Utils;
+
+import java.nio.file.Path;
+
+/**
+ * One extraction or rebuild, with every path resolved.
+ */
+public record Job(OperationMode mode, Path datPath, Path hd6Path, Path folderPath) {
+    /**
+     * @param destFolderPath the folder to extract to, or null for a folder named after the HD6 file, next to it
+     */
+    public static Job extract(Path hd6Path, Path destFolderPath) {
+        return new Job(OperationMode.EXTRACT, Utils.hd6PathToDatPath(hd6Path), hd6Path,
+                destFolderPath != null ? destFolderPath : Utils.hd6PathToFolderPath(hd6Path));
+    }
+
+    /**
+     * @param hd6Path the HD6 file to write, or null for an HD6 file named after the source folder, next to it
+     */
+    public static Job rebuild(Path sourceFolderPath, Path hd6Path) {
+        Path actualHD6Path = hd6Path != null ? hd6Path : Utils.folderPathToHD6Path(sourceFolderPath);
+        return new Job(OperationMode.REBUILD, Utils.hd6PathToDatPath(actualHD6Path), actualHD6Path, sourceFolderPath);
+    }
+
+    @Override
+    public String toString() {
+        return switch (mode) {
+            case EXTRACT -> "extract " + hd6Path + " to " + folderPath;
+            case REBUILD -> "rebuild " + folderPath + " into " + hd6Path;
+        };
+    }
+}
@@ -0,0 +1,260 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records wall time, file and byte counts, peak heap and allocated bytes for each phase of an operation, and reports
+ * them as JSON.
+ * <p>
+ * Operations start a phase whenever they print a step banner, and count files and bytes as they go; the counters may
+ * be updated from worker threads. Peak heap is the sum of the peak usage of every heap pool over the phase, which can
+ * be a bit more than the actual peak. Allocated bytes are those of the thread running the operation, plus those of
+ * the tasks it ran on a {@link BoundedTaskRunner}. Memory figures are -1 when the JVM cannot measure them.
+ */
+public class OperationMetrics {
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final List<Phase> phases = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private String operation = "";
+    private volatile Phase currentPhase;
+    private ScheduledExecutorService progressPrinter;
+
+    private static class Phase {
+        final String operation;
+        final String name;
+        final long expectedFiles;
+        final long startNanos = System.nanoTime();
+        final long threadId = Thread.currentThread().getId();
+        final long startAllocatedBytes = threadAllocatedBytes(threadId);
+        final LongAdder files = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder taskAllocatedBytes = new LongAdder();
+        long wallTimeNanos;
+        long peakHeapBytes;
+        long allocatedBytes;
+
+        Phase(String operation, String name, long expectedFiles) {
+            this.operation = operation;
+            this.name = name;
+            this.expectedFiles = expectedFiles;
+        }
+    }
+
+    /**
+     * Sets the name of the operation the following phases belong to, e.g. {@code extract}.
+     */
+    synchronized void startOperation(String operation) {
+        endPhase();
+        this.operation = operation;
+    }
+
+    synchronized void startPhase(String name) {
+        startPhase(name, -1);
+    }
+
+    /**
+     * Ends the current phase, if any, and starts a new one.
+     *
+     * @param expectedFiles how many files the phase will count, shown by the progress line; -1 if unknown
+     */
+    synchronized void startPhase(String name, long expectedFiles) {
+        endPhase();
+        resetPeakHeap();
+        currentPhase = new Phase(operation, name, expectedFiles);
+        phases.add(currentPhase);
+    }
+
+    /**
+     * Counts a processed file and its bytes in the current phase.
+     */
+    void addFile(long byteCount) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.files.increment();
+            phase.bytes.add(byteCount);
+        }
+    }
+
+    void addFiles(long fileCount) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.files.add(fileCount);
+        }
+    }
+
+    void addBytes(long byteCount) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.bytes.add(byteCount);
+        }
+    }
+
+    /**
+     * Counts the bytes allocated by a task running on another thread for the current phase.
+     */
+    void addAllocatedBytes(long byteCount) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.taskAllocatedBytes.add(byteCount);
+        }
+    }
+
+    /**
+     * Ends the current phase and stops the progress line.
+     */
+    public synchronized void finish() {
+        endPhase();
+        if (progressPrinter != null) {
+            progressPrinter.shutdownNow();
+            progressPrinter = null;
+        }
+    }
+
+    /**
+     * Prints the files and bytes processed so far by the current phase every given number of seconds, until
+     * {@link #finish()} is called.
+     */
+    public synchronized void startProgress(long intervalSeconds, PrintStream out) {
+        if (progressPrinter != null) {
+            progressPrinter.shutdownNow();
+        }
+        progressPrinter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progressPrinter.scheduleAtFixedRate(() -> printProgress(out), intervalSeconds, intervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    private void printProgress(PrintStream out) {
+        Phase phase = currentPhase;
+        if (phase == null) {
+            return;
+        }
+        double seconds = (System.nanoTime() - phase.startNanos) / NANOS_PER_SECOND;
+        long files = phase.files.sum();
+        double megabytes = phase.bytes.sum() / BYTES_PER_MEGABYTE;
+        out.printf(Locale.ROOT, "[%s] %d%s files, %.1f MB, %.1f files/s, %.1f MB/s%n", phase.name, files,
+                phase.expectedFiles >= 0 ? "/" + phase.expectedFiles : "", megabytes, files / seconds,
+                megabytes / seconds);
+    }
+
+    /**
+     * @return the total wall time and the recorded phases as a JSON object
+     */
+    public synchronized String toJson(boolean isSuccessful) {
+        endPhase();
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"successful\": ").append(isSuccessful).append(",\n");
+        json.append(String.format(Locale.ROOT, "  \"wallTimeMs\": %.3f,%n",
+                (System.nanoTime() - startNanos) / 1e6));
+        json.append("  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            double seconds = phase.wallTimeNanos / NANOS_PER_SECOND;
+            long files = phase.files.sum();
+            long bytes = phase.bytes.sum();
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"operation\": ").append(quote(phase.operation));
+            json.append(", \"name\": ").append(quote(phase.name));
+            json.append(String.format(Locale.ROOT, ", \"wallTimeMs\": %.3f", phase.wallTimeNanos / 1e6));
+            json.append(", \"files\": ").append(files);
+            json.append(", \"bytes\": ").append(bytes);
+            json.append(String.format(Locale.ROOT, ", \"filesPerSecond\": %.1f", seconds > 0 ? files / seconds : 0));
+            json.append(String.format(Locale.ROOT, ", \"megabytesPerSecond\": %.3f",
+                    seconds > 0 ? bytes / BYTES_PER_MEGABYTE / seconds : 0));
+            json.append(", \"peakHeapBytes\": ").append(phase.peakHeapBytes);
+            json.append(", \"allocatedBytes\": ").append(phase.allocatedBytes).append('}');
+        }
+        json.append(phases.isEmpty() ? "]\n" : "\n  ]\n").append("}\n");
+        return json.toString();
+    }
+
+    public void writeJson(Path path, boolean isSuccessful) throws IOException {
+        Files.writeString(path, toJson(isSuccessful));
+    }
+
+    private void endPhase() {
+        Phase phase = currentPhase;
+        if (phase == null) {
+            return;
+        }
+        phase.wallTimeNanos = System.nanoTime() - phase.startNanos;
+        phase.peakHeapBytes = peakHeap();
+        long endAllocatedBytes = threadAllocatedBytes(phase.threadId);
+        phase.allocatedBytes = phase.startAllocatedBytes < 0 || endAllocatedBytes < 0 ? -1
+                : endAllocatedBytes - phase.startAllocatedBytes + phase.taskAllocatedBytes.sum();
+        currentPhase = null;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid() && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    static long currentThreadAllocatedBytes() {
+        return threadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return the bytes allocated by the given thread since it started, or -1 if unknown
+     */
+    private static long threadAllocatedBytes(long threadId) {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                    && threadBean.isThreadAllocatedMemoryEnabled()) {
+                return threadBean.getThreadAllocatedBytes(threadId);
+            }
+        } catch (UnsupportedOperationException ignored) {
+        }
+        return -1;
+    }
+
+    static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
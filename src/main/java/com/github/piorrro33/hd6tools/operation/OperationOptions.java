@@ -0,0 +1,262 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Tuning knobs shared by all operations. Every option has a default matching the plain command line usage, so
+ * {@code new OperationOptions()} is always a valid argument.
+ */
+public class OperationOptions {
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private long maxBytesInFlight = 256L * 1024 * 1024;
+    private boolean useIndexCache = false;
+    private boolean incremental = false;
+    private boolean trustModifiedTimes = false;
+    private boolean assumeYes = false;
+    private boolean compactFilenames = false;
+    private boolean deduplicate = false;
+    private EntryFilter entryFilter = null;
+    private UnchangedCheck unchangedCheck = null;
+    private boolean prune = false;
+    private boolean directIO = false;
+    private ContainerFormat containerFormat = null;
+    private OutputStream containerStream = null;
+    private ExecutorService executor = null;
+    private OperationMetrics metrics = new OperationMetrics();
+
+    /**
+     * @return new options with the same settings, but their own, empty metrics
+     */
+    public OperationOptions copy() {
+        return new OperationOptions()
+                .setThreadCount(threadCount)
+                .setMaxBytesInFlight(maxBytesInFlight)
+                .setUseIndexCache(useIndexCache)
+                .setIncremental(incremental)
+                .setTrustModifiedTimes(trustModifiedTimes)
+                .setAssumeYes(assumeYes)
+                .setCompactFilenames(compactFilenames)
+                .setDeduplicate(deduplicate)
+                .setEntryFilter(entryFilter)
+                .setUnchangedCheck(unchangedCheck)
+                .setPrune(prune)
+                .setDirectIO(directIO)
+                .setContainerFormat(containerFormat)
+                .setContainerStream(containerStream)
+                .setExecutor(executor);
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets how many files may be written at the same time. 1 processes files one after the other.
+     */
+    public OperationOptions setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, got " + threadCount);
+        }
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public long getMaxBytesInFlight() {
+        return maxBytesInFlight;
+    }
+
+    /**
+     * Sets how many bytes of file data may be queued or being copied at once when working in parallel. A single
+     * file larger than this limit is still processed, but alone.
+     */
+    public OperationOptions setMaxBytesInFlight(long maxBytesInFlight) {
+        if (maxBytesInFlight < 1) {
+            throw new IllegalArgumentException("Max bytes in flight must be positive, got " + maxBytesInFlight);
+        }
+        this.maxBytesInFlight = maxBytesInFlight;
+        return this;
+    }
+
+    public boolean isUseIndexCache() {
+        return useIndexCache;
+    }
+
+    /**
+     * Sets whether archives are opened through their index cache (an {@code .hd6.idx} file next to the HD6 file),
+     * which is created when missing.
+     */
+    public OperationOptions setUseIndexCache(boolean useIndexCache) {
+        this.useIndexCache = useIndexCache;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets whether a rebuild over an existing HD6/DAT pair only rewrites the files that changed. The whole archive is
+     * still rebuilt when files were added, removed or renamed.
+     */
+    public OperationOptions setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public boolean isTrustModifiedTimes() {
+        return trustModifiedTimes;
+    }
+
+    /**
+     * Sets whether an incremental rebuild takes a file of the same size that was not modified after the archive was
+     * written as unchanged, without comparing its contents. This misses files copied with their original time.
+     */
+    public OperationOptions setTrustModifiedTimes(boolean trustModifiedTimes) {
+        this.trustModifiedTimes = trustModifiedTimes;
+        return this;
+    }
+
+    public boolean isAssumeYes() {
+        return assumeYes;
+    }
+
+    /**
+     * Sets whether operations go on without asking when they would overwrite files, for unattended runs.
+     */
+    public OperationOptions setAssumeYes(boolean assumeYes) {
+        this.assumeYes = assumeYes;
+        return this;
+    }
+
+    public boolean isCompactFilenames() {
+        return compactFilenames;
+    }
+
+    /**
+     * Sets whether a rebuild merges name chunks that often follow each other, when this gives a smaller HD6 file
+     * than the usual split of filenames on {@code .}, {@code _}, {@code \} and {@code -}.
+     */
+    public OperationOptions setCompactFilenames(boolean compactFilenames) {
+        this.compactFilenames = compactFilenames;
+        return this;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Sets whether a rebuild stores files with identical contents once in the DAT, their file entries sharing the
+     * same start offset.
+     */
+    public OperationOptions setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        return this;
+    }
+
+    public EntryFilter getEntryFilter() {
+        return entryFilter;
+    }
+
+    /**
+     * Sets which entries an extraction writes, null writing all of them.
+     */
+    public OperationOptions setEntryFilter(EntryFilter entryFilter) {
+        this.entryFilter = entryFilter;
+        return this;
+    }
+
+    public UnchangedCheck getUnchangedCheck() {
+        return unchangedCheck;
+    }
+
+    /**
+     * Sets how an extraction to a folder finds the files it can skip because they already hold their entry, null
+     * writing every file. The extraction then goes on without asking when the folder is not empty.
+     */
+    public OperationOptions setUnchangedCheck(UnchangedCheck unchangedCheck) {
+        this.unchangedCheck = unchangedCheck;
+        return this;
+    }
+
+    public boolean isPrune() {
+        return prune;
+    }
+
+    /**
+     * Sets whether an extraction to a folder deletes the files of the folder that are not in the archive, along with
+     * the folders this leaves empty.
+     */
+    public OperationOptions setPrune(boolean prune) {
+        this.prune = prune;
+        return this;
+    }
+
+    public boolean isDirectIO() {
+        return directIO;
+    }
+
+    /**
+     * Sets whether DAT files are read by extractions and written by full rebuilds with direct I/O, bypassing the page
+     * cache. Operations fall back to buffered I/O when the file system does not support it.
+     */
+    public OperationOptions setDirectIO(boolean directIO) {
+        this.directIO = directIO;
+        return this;
+    }
+
+    public ContainerFormat getContainerFormat() {
+        return containerFormat;
+    }
+
+    /**
+     * Sets the container an extraction writes its files into, in DAT order, instead of writing them to a folder.
+     * The destination path is then the container file. Null writes a folder.
+     */
+    public OperationOptions setContainerFormat(ContainerFormat containerFormat) {
+        this.containerFormat = containerFormat;
+        return this;
+    }
+
+    public OutputStream getContainerStream() {
+        return containerStream;
+    }
+
+    /**
+     * Sets a stream, e.g. standard output, that an extraction writes its container to instead of the destination
+     * path. The stream is flushed but left open. A {@link java.io.FileOutputStream} is written through its channel,
+     * without copying entries to the heap. Null writes to the destination path.
+     */
+    public OperationOptions setContainerStream(OutputStream containerStream) {
+        this.containerStream = containerStream;
+        return this;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets a pool on which file copies run instead of a pool of {@link #getThreadCount()} threads created for each
+     * operation, so that concurrent operations share their threads. The pool is left running when operations end.
+     * Its threads must never be interrupted while an operation runs.
+     */
+    public OperationOptions setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public OperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets where operations record the timings and counters of their phases. Each options object starts with its
+     * own, empty metrics.
+     */
+    public OperationOptions setMetrics(OperationMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+}
@@ -1,15 +1,25 @@
 package com.github.piorrro33.hd6tools.operation;
 
 import java.nio.file.Path;
+import java.util.Scanner;
 
 public class Operations {
     public static boolean perform(OperationMode mode, Path datPath, Path hd6Path, Path folderPath) {
+        return perform(mode, datPath, hd6Path, folderPath, new OperationOptions());
+    }
+
+    public static boolean perform(Job job, OperationOptions options) {
+        return perform(job.mode(), job.datPath(), job.hd6Path(), job.folderPath(), options);
+    }
+
+    public static boolean perform(OperationMode mode, Path datPath, Path hd6Path, Path folderPath,
+                                  OperationOptions options) {
         switch (mode) {
             case EXTRACT -> {
-                return Extraction.perform(datPath, hd6Path, folderPath);
+                return Extraction.perform(datPath, hd6Path, folderPath, options);
             }
             case REBUILD -> {
-                return Reconstruction.perform(datPath, hd6Path, folderPath);
+                return Reconstruction.perform(datPath, hd6Path, folderPath, options);
             }
             default -> {
                 System.err.println("Warning: no handler for OperationMode" + mode.toString());
@@ -17,4 +27,24 @@ public class Operations {
             }
         }
     }
+
+    /**
+     * Prints a warning, then asks the user whether to go on unless {@link OperationOptions#isAssumeYes()} is set.
+     *
+     * @return true if the operation may go on
+     */
+    static boolean askToProceed(String warning, OperationOptions options) {
+        if (options.isAssumeYes()) {
+            System.out.println(warning + " Proceeding anyway.");
+            return true;
+        }
+        System.out.println(warning + "\nDo you want to proceed (yes or no)?");
+        String userAnswer = new Scanner(System.in).nextLine();
+        if (!userAnswer.equalsIgnoreCase("yes") && !userAnswer.equalsIgnoreCase("y")) {
+            // User did not answer yes
+            System.out.println("Aborting.");
+            return false;
+        }
+        return true;
+    }
 }
@@ -0,0 +1,26 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Files that a streamed rebuild reads once, in archive order, without a source folder.
+ */
+interface RebuildSource {
+    interface FileConsumer {
+        /**
+         * @param name    path of the file, with {@code /} separators
+         * @param payload contents of the file, only valid until this method returns
+         */
+        void accept(String name, long size, Payload payload) throws IOException;
+    }
+
+    interface Payload {
+        /**
+         * Writes the whole file at the position of the DAT channel, which ends up right after it.
+         */
+        void writeTo(FileChannel datChannel) throws IOException;
+    }
+
+    void forEachFile(FileConsumer consumer) throws IOException;
+}
@@ -1,51 +1,63 @@
 package com.github.piorrro33.hd6tools.operation;
 
-import java.io.BufferedOutputStream;
-import java.io.File;
+import com.github.piorrro33.hd6tools.archive.FileIndex;
+import com.github.piorrro33.hd6tools.archive.IndexCache;
+
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.IntStream;
 
-import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.*;
 
 class Reconstruction {
     private static final Charset CS_SHIFT_JIS = Charset.forName("Shift_JIS");
-    private static final List<String> FILENAME_DICTIONARY = new ArrayList<>(4300); // DC Data0_0 has 4277
-    private static final Map<String, Integer> FILENAME_DICT_COUNTS = new HashMap<>(4300);
+    /**
+     * Largest name chunk index of the filename table, written on two bytes of which the first keeps its high bit set
+     */
+    private static final int MAX_NAME_CHUNK_INDEX = 0x7FFF;
 
-    public static boolean perform(Path datPath, Path hd6Path, Path sourceFolderPath) {
+    public static boolean perform(Path datPath, Path hd6Path, Path sourceFolderPath, OperationOptions options) {
+        try {
+            return rebuild(datPath, hd6Path, sourceFolderPath, options);
+        } finally {
+            options.getMetrics().finish();
+        }
+    }
+
+    private static boolean rebuild(Path datPath, Path hd6Path, Path sourceFolderPath, OperationOptions options) {
+        OperationMetrics metrics = options.getMetrics();
+        metrics.startOperation("rebuild");
         // Check if source folder exists and if DAT/HD6 files do not exist
         if (Files.notExists(sourceFolderPath)) {
             System.err.println("Source folder could not be found!");
             return false;
         }
-        if (Files.exists(datPath)) {
-            System.out.println("Warning! The destination DAT file already exists.\n" +
-                    "Do you want to proceed (yes or no)?");
-            Scanner sc = new Scanner(System.in);
-            final String userAnswer = sc.nextLine();
-            if (!userAnswer.equalsIgnoreCase("yes") && !userAnswer.equalsIgnoreCase("y")) {
-                // User did not answer yes
-                System.out.println("Aborting.");
-                return false;
+        boolean updateInPlace = options.isIncremental() && Files.exists(datPath) && Files.exists(hd6Path);
+        if (updateInPlace) {
+            switch (IncrementalReconstruction.perform(datPath, hd6Path, sourceFolderPath, options)) {
+                case UPDATED -> {
+                    return true;
+                }
+                case FAILED -> {
+                    return false;
+                }
+                case FULL_REBUILD_NEEDED -> {
+                    System.out.println("Rebuilding the whole archive instead...");
+                    metrics.startOperation("rebuild");
+                }
             }
         }
-        if (Files.exists(hd6Path)) {
-            System.out.println("Warning! The destination HD6 file already exists.\n" +
-                    "Do you want to proceed (yes or no)?");
-            Scanner sc = new Scanner(System.in);
-            final String userAnswer = sc.nextLine();
-            if (!userAnswer.equalsIgnoreCase("yes") && !userAnswer.equalsIgnoreCase("y")) {
-                // User did not answer yes
-                System.out.println("Aborting.");
-                return false;
-            }
+        if (!updateInPlace && Files.exists(datPath)
+                && !Operations.askToProceed("Warning! The destination DAT file already exists.", options)) {
+            return false;
+        }
+        if (!updateInPlace && Files.exists(hd6Path)
+                && !Operations.askToProceed("Warning! The destination HD6 file already exists.", options)) {
+            return false;
         }
 
         // Create parent dirs for DAT/HD6
@@ -70,192 +82,274 @@ class Reconstruction {
 
         // Make a list holding paths to all the files in the source folder.
         System.out.println("Browsing source folder...");
-        List<Path> filePathList = getFilePathList(sourceFolderPath);
-
-        // Process file path list
-        System.out.println("Processing file paths...");
-        List<Integer> indexList = new LinkedList<>();
-        for (Path path : filePathList) {
-            String s_relativeFilePath = sourceFolderPath.relativize(path).toString();
-            getDictionaryIndexes(s_relativeFilePath);
+        metrics.startPhase("Browsing source folder");
+        SourceFileList sourceFiles;
+        try {
+            sourceFiles = SourceFileList.scan(sourceFolderPath, options);
+        } catch (IOException e) {
+            System.err.println("Could not browse source folder! " + e.getLocalizedMessage());
+            return false;
         }
-        //dumb ide forces me to write the below line
-        //noinspection SuspiciousMethodCalls
-        FILENAME_DICTIONARY.sort(Comparator.comparingInt(FILENAME_DICT_COUNTS::get).reversed());
-        for (Path path : filePathList) {
-            String s_relativeFilePath = sourceFolderPath.relativize(path).toString();
-            indexList.addAll(getDictionaryIndexes(s_relativeFilePath));
+        List<Path> filePathList = sourceFiles.getPaths();
+        metrics.addFiles(filePathList.size());
+
+        List<String> relativeFilePathList = new ArrayList<>(filePathList.size());
+        for (Path filePath : filePathList) {
+            relativeFilePathList.add(sourceFolderPath.relativize(filePath).toString()
+                    .replace(System.getProperty("file.separator"), "\\"));
         }
-        ByteBuffer bb_nameChunkData = CS_SHIFT_JIS.encode("\0" + String.join("\0", FILENAME_DICTIONARY) + "\0");
-        int nameChunkDataSize = bb_nameChunkData.limit();
-        int nameChunkDataPadding = (0x4 - (0x34 + nameChunkDataSize) % 0x4) % 0x4;
-        System.out.println("Creating filename table...");
-        ByteBuffer bb_filenameTable = ByteBuffer.allocate(indexList.size() * 2);
-        for (Integer index : indexList) {
-            if (index < 0x80) {
-                bb_filenameTable.put(index.byteValue());
-            } else {
-                bb_filenameTable.put((byte) (0x80 + index % 0x80));
-                bb_filenameTable.put((byte) (index / 0x80));
-            }
+        FilenameTable filenameTable;
+        try {
+            filenameTable = createFilenameTable(relativeFilePathList, options);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
         }
-        int filenameTableSize = bb_filenameTable.position();
-        int filenameTablePadding = (0x8 - filenameTableSize % 0x8) % 0x8;
-        bb_filenameTable.rewind();
 
-        // File entries
-        System.out.println("Creating file entries...");
+        // Point identical files at the same DAT slot
         int fileCount = filePathList.size();
-        ByteBuffer[] bb_fileEntryArr = new ByteBuffer[fileCount + 1]; // +1 for last dummy
-        int startOffset = 0;
-        int[] filenameTableOffsets = getFilenameTableOffsets(bb_filenameTable.array());
-        for (int i = 0; i < fileCount; i++) {
-            Path curFilePath = filePathList.get(i);
-            bb_fileEntryArr[i] = ByteBuffer.allocate(8).order(LITTLE_ENDIAN);
-            int filenameOffset = filenameTableOffsets[i];
-            int curFileSize;
+        int[] firstIndexes = null;
+        if (options.isDeduplicate()) {
+            System.out.println("Finding duplicate files...");
+            metrics.startPhase("Finding duplicate files");
             try {
-                curFileSize = (int) Files.size(curFilePath);
+                firstIndexes = DuplicateFinder.findDuplicates(sourceFiles, options);
             } catch (IOException e) {
                 e.printStackTrace();
                 return false;
             }
-            bb_fileEntryArr[i].putShort((short) filenameOffset);
-            bb_fileEntryArr[i].put(intToUint24((startOffset >> 0x9) | (filenameOffset >> 0x10)));
-            bb_fileEntryArr[i].put(intToUint24(curFileSize >> 0x4));
-            startOffset += curFileSize + (0x800 - curFileSize % 0x800) % 0x800;
         }
-        bb_fileEntryArr[fileCount] = ByteBuffer.allocate(8).order(LITTLE_ENDIAN); // write dummy
-        bb_fileEntryArr[fileCount].putShort((short) filenameTableOffsets[fileCount]);
-        bb_fileEntryArr[fileCount].put(intToUint24(filenameTableOffsets[fileCount] >> 0x10));
-        bb_fileEntryArr[fileCount].put(intToUint24(0));
 
-        try (OutputStream datStream = new BufferedOutputStream(Files.newOutputStream(datPath));
-             OutputStream hd6Stream = new BufferedOutputStream(Files.newOutputStream(hd6Path))) {
-            System.out.println("Writing HD6...");
-            ByteBuffer bb_header = ByteBuffer.allocate(52).order(ByteOrder.LITTLE_ENDIAN);
-            byte[] magic = {0x48, 0x44, 0x36, 0x0}; // HD6\0 in little endian
-            bb_header.put(magic);
-            bb_header.putInt(0x34); // header size
-            bb_header.putInt(nameChunkDataSize + nameChunkDataPadding);
-            bb_header.putInt(FILENAME_DICTIONARY.size() + 2); // name chunk amount (with first and last null bytes)
-            bb_header.putInt(0); // unk
-            bb_header.putInt(0x34 + nameChunkDataSize + nameChunkDataPadding); // p_filenameTable
-            bb_header.putInt(filenameTableSize + filenameTablePadding);
-            bb_header.putInt(0); // unk
-            bb_header.putInt(0x10); // unk
-            bb_header.putInt(bb_fileEntryArr.length); // fileCount
-            bb_header.putInt(0x34 + nameChunkDataSize + nameChunkDataPadding + filenameTableSize + filenameTablePadding); // p_fileEntries
-            bb_header.putInt(0); // unk
-            bb_header.putInt(0x34 + nameChunkDataSize + nameChunkDataPadding + filenameTableSize + filenameTablePadding + (bb_fileEntryArr.length * 0x8)); // fileSize
-            hd6Stream.write(bb_header.array());
-
-            while (bb_nameChunkData.hasRemaining()) {
-                hd6Stream.write(bb_nameChunkData.get());
+        // DAT slots
+        System.out.println("Placing files in the DAT...");
+        metrics.startPhase("Placing files in the DAT", fileCount);
+        long startOffset = 0;
+        long[] startOffsetArr = new long[fileCount];
+        int[] fileSizeArr = new int[fileCount];
+        int duplicateCount = 0;
+        long savedBytes = 0;
+        for (int i = 0; i < fileCount; i++) {
+            long curFileSize = sourceFiles.getSize(i);
+            boolean isDuplicate = firstIndexes != null && firstIndexes[i] != i;
+            // Check the limits of the file entries before writing anything
+            if (curFileSize > FileIndex.MAX_FILE_SIZE) {
+                System.err.println("File " + filePathList.get(i) + " is too large for an HD6 archive! Files must be "
+                        + "smaller than 256 MiB.");
+                return false;
             }
-            hd6Stream.write(new byte[nameChunkDataPadding]);
-
-            while (bb_filenameTable.position() < filenameTableSize) {
-                hd6Stream.write(bb_filenameTable.get());
+            if (!isDuplicate && startOffset > FileIndex.MAX_START_OFFSET) {
+                System.err.println("The source files do not fit in a DAT file! Files must start within its first "
+                        + "8 GiB.");
+                return false;
             }
-            for (int i = 0; i < filenameTablePadding; i++) {
-                hd6Stream.write(0xCD);
+            startOffsetArr[i] = isDuplicate ? startOffsetArr[firstIndexes[i]] : startOffset;
+            fileSizeArr[i] = (int) curFileSize;
+            if (isDuplicate) {
+                duplicateCount++;
+                savedBytes += curFileSize + (0x800 - curFileSize % 0x800) % 0x800;
+            } else {
+                startOffset += curFileSize + (0x800 - curFileSize % 0x800) % 0x800;
             }
+            metrics.addFile(curFileSize);
+        }
+        long datSize = startOffset;
+        if (firstIndexes != null) {
+            System.out.println("Found " + duplicateCount + " duplicate file(s), " + savedBytes
+                    + " bytes saved in the DAT.");
+        }
 
-            for (ByteBuffer bb_fileEntry : bb_fileEntryArr) {
-                hd6Stream.write(bb_fileEntry.array());
-            }
-            // Done writing HD6
+        try {
+            IndexCache.invalidate(hd6Path);
+        } catch (IOException e) {
+            System.err.println("Could not delete the index cache of the HD6 file! " + e.getLocalizedMessage());
+            return false;
+        }
+
+        try (FileChannel datChannel = FileChannel.open(datPath, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            writeHD6(hd6Path, filenameTable, startOffsetArr, fileSizeArr, metrics);
 
             System.out.println("Writing DAT...");
-            for (Path path : filePathList) {
-                int curFileSize = (int) Files.size(path);
-                datStream.write(Files.readAllBytes(path));
-                datStream.write(new byte[(0x800 - curFileSize % 0x800) % 0x800]);
+            metrics.startPhase("Writing DAT", fileCount);
+            DirectDatWriter directWriter = options.isDirectIO() ? openDirectWriter(datPath, datChannel) : null;
+            // Every start offset is known: give the DAT its final size, padding included, and fill it in any order
+            if (datSize > 0 && directWriter == null) {
+                datChannel.write(ByteBuffer.allocate(1), datSize - 1);
+            }
+            if (directWriter != null) {
+                // Direct writes need aligned blocks, which files share: write the DAT from start to end
+                try (directWriter) {
+                    for (int i = 0; i < fileCount; i++) {
+                        if (firstIndexes == null || firstIndexes[i] == i) {
+                            directWriter.append(filePathList.get(i), fileSizeArr[i], startOffsetArr[i], metrics);
+                        }
+                    }
+                    directWriter.finish(datSize);
+                }
+            } else if (options.getThreadCount() == 1) {
+                for (int i = 0; i < fileCount; i++) {
+                    if (firstIndexes != null && firstIndexes[i] != i) {
+                        continue; // already written with the first file holding the same contents
+                    }
+                    transferFile(filePathList.get(i), fileSizeArr[i], datChannel, startOffsetArr[i], metrics);
+                }
+            } else {
+                BoundedTaskRunner runner = new BoundedTaskRunner(options);
+                try {
+                    for (int i = 0; i < fileCount; i++) {
+                        if (firstIndexes != null && firstIndexes[i] != i) {
+                            continue;
+                        }
+                        final int fileIndex = i;
+                        boolean submitted = runner.submit(fileSizeArr[i], () -> transferFile(
+                                filePathList.get(fileIndex), fileSizeArr[fileIndex], datChannel,
+                                startOffsetArr[fileIndex], metrics));
+                        if (!submitted) {
+                            break;
+                        }
+                    }
+                } finally {
+                    runner.finish();
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
         return true;
     }
 
-    private static byte[] intToUint24(int val) {
-        byte[] ba = new byte[3];
-        ba[0] = (byte) (val & 0xFF);
-        ba[1] = (byte) ((val >> 0x8) & 0xFF);
-        ba[2] = (byte) ((val >> 0x10) & 0xFF);
-        return ba;
+    /**
+     * @return null if direct I/O is not available for the DAT file
+     */
+    private static DirectDatWriter openDirectWriter(Path datPath, FileChannel datChannel) {
+        try {
+            return DirectDatWriter.open(datPath, datChannel);
+        } catch (IOException e) {
+            System.out.println("Direct I/O is not available for the DAT file, using buffered I/O instead. "
+                    + e.getLocalizedMessage());
+            return null;
+        }
     }
 
-    private static List<Integer> getDictionaryIndexes(String str) {
-        List<Integer> intList = new LinkedList<>();
-        List<String> split = new ArrayList<>();
-        StringBuilder s = new StringBuilder();
-        str = str.replace(System.getProperty("file.separator"), "\\");
-        for (char c : str.toCharArray()) {
-            if (c == '.' || c == '_' || c == '\\' || c == '-') {
-                boolean shifted = false;
-                int count = 0;
-                for (char c1 : s.toString().toCharArray()) {
-                    if ((c1 != '.' && c1 != '_' && c1 != '\\' && c1 != '-') || count == 2) {
-                        split.add(s.toString());
-                        s = new StringBuilder("" + c);
-                        shifted = true;
-                        break;
-                    }
-                    count++;
-                }
-                if (!shifted) {
-                    s.append(c);
-                }
+    /**
+     * Name chunk data and filename table of an HD6 file, with the offset of each filename in the table.
+     */
+    record FilenameTable(byte[] nameChunkData, int nameChunkCount, byte[] filenameTable, int[] filenameTableOffsets) {
+    }
+
+    /**
+     * Splits every path into name chunks once, then sorts the dictionary and encodes the filename table.
+     *
+     * @param relativeFilePathList paths in archive order, with {@code \\} separators
+     */
+    static FilenameTable createFilenameTable(List<String> relativeFilePathList, OperationOptions options)
+            throws IOException {
+        OperationMetrics metrics = options.getMetrics();
+        System.out.println("Processing file paths...");
+        metrics.startPhase("Processing file paths", relativeFilePathList.size());
+        int fileCount = relativeFilePathList.size();
+        int[][] filenameTokenIdArr = new int[fileCount][];
+        FilenameDictionary dictionary = FilenameDictionary.build(relativeFilePathList, filenameTokenIdArr, options);
+        if (options.isCompactFilenames()) {
+            int[][] mergedTokenIdArr = new int[fileCount][];
+            FilenameDictionary mergedDictionary = dictionary.mergeChunks(filenameTokenIdArr, mergedTokenIdArr,
+                    options);
+            long fileEntriesSize = (fileCount + 1) * 0x8L;
+            long defaultHD6Size = 0x34 + dictionary.getIndexSize() + fileEntriesSize;
+            long compactHD6Size = 0x34 + mergedDictionary.getIndexSize() + fileEntriesSize;
+            if (compactHD6Size < defaultHD6Size) {
+                System.out.printf("Compact filename dictionary: %d name chunks instead of %d, HD6 file of %d "
+                                + "bytes instead of %d.%n", mergedDictionary.size(), dictionary.size(),
+                        compactHD6Size, defaultHD6Size);
+                dictionary = mergedDictionary;
+                filenameTokenIdArr = mergedTokenIdArr;
             } else {
-                s.append(c);
+                System.out.println("Compact filename dictionary is not smaller, keeping the default one.");
             }
         }
-        split.add(s.toString());
-        for (String part : split) {
-            OptionalInt dictIndex = IntStream.range(0, FILENAME_DICTIONARY.size())
-                    .filter(i -> FILENAME_DICTIONARY.get(i).equals(part))
-                    .findFirst();
-            dictIndex.ifPresentOrElse(i -> {
-                intList.add(i + 1);
-                FILENAME_DICT_COUNTS.put(part, FILENAME_DICT_COUNTS.get(part) + 1);
-            }, () -> {
-                intList.add(FILENAME_DICTIONARY.size() + 1);
-                FILENAME_DICTIONARY.add(part);
-                FILENAME_DICT_COUNTS.put(part, 1);
-            });
+        if (dictionary.size() > MAX_NAME_CHUNK_INDEX) {
+            throw new IOException("There are " + dictionary.size() + " different name chunks, the HD6 format can only "
+                    + "index " + MAX_NAME_CHUNK_INDEX + "!");
+        }
+        int tokenCount = 0;
+        for (int[] tokenIds : filenameTokenIdArr) {
+            tokenCount += tokenIds.length + 1; // +1 for the terminating 0 index
+        }
+        metrics.addFiles(filenameTokenIdArr.length);
+        int[] dictionaryIndexes = dictionary.sortByFrequency();
+        byte[] nameChunkData = ("\0" + String.join("\0", dictionary.getChunks()) + "\0").getBytes(CS_SHIFT_JIS);
+        System.out.println("Creating filename table...");
+        metrics.startPhase("Creating filename table", fileCount);
+        ByteBuffer bb_filenameTable = ByteBuffer.allocate(tokenCount * 2);
+        for (int[] tokenIds : filenameTokenIdArr) {
+            for (int tokenId : tokenIds) {
+                int index = dictionaryIndexes[tokenId];
+                if (index < 0x80) {
+                    bb_filenameTable.put((byte) index);
+                } else {
+                    bb_filenameTable.put((byte) (0x80 + index % 0x80));
+                    bb_filenameTable.put((byte) (index / 0x80));
+                }
+            }
+            bb_filenameTable.put((byte) 0);
         }
-        intList.add(0);
-        return intList;
+        metrics.addFiles(filenameTokenIdArr.length);
+        metrics.addBytes(bb_filenameTable.position());
+        byte[] filenameTable = Arrays.copyOf(bb_filenameTable.array(), bb_filenameTable.position());
+        int[] filenameTableOffsets = getFilenameTableOffsets(filenameTable, filenameTable.length, fileCount);
+        return new FilenameTable(nameChunkData, dictionary.size() + 2, filenameTable, filenameTableOffsets);
     }
 
-    private static int[] getFilenameTableOffsets(byte[] filenameTableArr) {
-        List<Integer> filenameOffsetList = new LinkedList<>();
-        filenameOffsetList.add(0x00); // first filename is at offset 0x00
-        for (int i = 0; i < filenameTableArr.length; i++) {
-            if (filenameTableArr[i] == 0x00) {
-                filenameOffsetList.add(i + 1); // +1 because next filename table entry starts after the 0x00
+    /**
+     * Writes an HD6 file listing files whose DAT slots are known, followed by the last dummy entry.
+     *
+     * @throws IOException if a slot cannot be stored in a file entry, before anything is written
+     */
+    static void writeHD6(Path hd6Path, FilenameTable filenameTable, long[] startOffsetArr, int[] fileSizeArr,
+                         OperationMetrics metrics) throws IOException {
+        System.out.println("Writing HD6...");
+        metrics.startPhase("Writing HD6");
+        new FileIndex(filenameTable.nameChunkData(), filenameTable.nameChunkCount(), filenameTable.filenameTable(),
+                filenameTable.filenameTableOffsets(), startOffsetArr, fileSizeArr).write(hd6Path);
+        metrics.addFile(Files.size(hd6Path));
+    }
+
+    /**
+     * Copies a source file to its place in the DAT without going through a heap buffer. Positional writes leave the
+     * channel position alone, so several files may be copied into the same DAT channel at once.
+     */
+    private static void transferFile(Path sourceFilePath, long fileSize, FileChannel datChannel, long startOffset,
+                                     OperationMetrics metrics) throws IOException {
+        try (FileChannel sourceChannel = FileChannel.open(sourceFilePath, READ)) {
+            long transferred = 0;
+            while (transferred < fileSize) {
+                long count = datChannel.transferFrom(sourceChannel, startOffset + transferred, fileSize - transferred);
+                if (count <= 0) {
+                    throw new IOException("File " + sourceFilePath + " is shorter than expected!");
+                }
+                transferred += count;
             }
         }
-        return filenameOffsetList.stream().mapToInt(Integer::intValue).toArray();
+        metrics.addFile(fileSize);
     }
 
-    private static List<Path> getFilePathList(Path sourceFolderPath) {
-        List<Path> filePathList = new ArrayList<>(4300);
-        Stack<File> stack = new Stack<>();
-        stack.add(sourceFolderPath.toFile());
-
-        while (!stack.empty()) {
-            File current = stack.pop();
-            File[] fileDirList = current.listFiles();
+    static byte[] intToUint24(int val) {
+        byte[] ba = new byte[3];
+        ba[0] = (byte) (val & 0xFF);
+        ba[1] = (byte) ((val >> 0x8) & 0xFF);
+        ba[2] = (byte) ((val >> 0x10) & 0xFF);
+        return ba;
+    }
 
-            if (fileDirList != null) {
-                Arrays.stream(fileDirList).filter(File::isFile).sorted().forEachOrdered(f -> filePathList.add(f.toPath()));
-                Arrays.stream(fileDirList).filter(File::isDirectory).sorted(Comparator.reverseOrder()).forEachOrdered(stack::push);
+    static int[] getFilenameTableOffsets(byte[] filenameTableArr, int filenameTableSize, int fileCount) {
+        int[] filenameOffsets = new int[fileCount + 1];
+        int filenameIndex = 0;
+        filenameOffsets[filenameIndex++] = 0x00; // first filename is at offset 0x00
+        for (int i = 0; i < filenameTableSize && filenameIndex <= fileCount; i++) {
+            if (filenameTableArr[i] == 0x00) {
+                filenameOffsets[filenameIndex++] = i + 1; // +1 because next filename table entry starts after the 0x00
             }
         }
-        filePathList.add(filePathList.get(filePathList.size() - 1));
-        return filePathList;
+        return filenameOffsets;
     }
 }
@@ -0,0 +1,166 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Files of a source folder in the order a rebuild stores them, with their size and last modified time, read once
+ * while scanning.
+ * <p>
+ * The order is that of a depth-first walk: the files of a folder sorted by name, then the files of each of its
+ * subfolders, in name order. Names are compared like {@link java.io.File#compareTo(java.io.File)} does, and symbolic
+ * links are followed. As in the game files, the last file is listed twice.
+ * <p>
+ * Folders are listed one level of the tree at a time, the folders of a level in parallel on the threads of a
+ * {@link BoundedTaskRunner}. Listing a folder reads the attributes of each of its entries once, which tells files
+ * from folders and gives their size and time.
+ */
+class SourceFileList {
+    private static final Comparator<Path> NAME_ORDER = Comparator.comparing(Path::toFile);
+
+    private final List<Path> paths;
+    private final long[] sizes;
+    private final long[] modifiedTimes;
+
+    private SourceFileList(List<Path> paths, long[] sizes, long[] modifiedTimes) {
+        this.paths = paths;
+        this.sizes = sizes;
+        this.modifiedTimes = modifiedTimes;
+    }
+
+    private static class Folder {
+        final Path path;
+        final List<Path> filePaths = new ArrayList<>();
+        final List<BasicFileAttributes> fileAttributes = new ArrayList<>();
+        final List<Folder> subfolders = new ArrayList<>();
+
+        Folder(Path path) {
+            this.path = path;
+        }
+
+        void list() throws IOException {
+            List<Path> entryPaths = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                entries.forEach(entryPaths::add);
+            }
+            entryPaths.sort(NAME_ORDER);
+            for (Path entryPath : entryPaths) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entryPath, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue; // deleted meanwhile, or broken symbolic link
+                }
+                if (attributes.isRegularFile()) {
+                    filePaths.add(entryPath);
+                    fileAttributes.add(attributes);
+                } else if (attributes.isDirectory()) {
+                    subfolders.add(new Folder(entryPath));
+                }
+            }
+        }
+    }
+
+    static SourceFileList scan(Path sourceFolderPath, OperationOptions options) throws IOException {
+        return scan(sourceFolderPath, options, false);
+    }
+
+    /**
+     * @param allowEmpty whether an empty folder gives an empty list, rather than failing as a rebuild needs a file
+     */
+    static SourceFileList scan(Path sourceFolderPath, OperationOptions options, boolean allowEmpty)
+            throws IOException {
+        Folder root = new Folder(sourceFolderPath);
+        List<Folder> level = List.of(root);
+        while (!level.isEmpty()) {
+            listFolders(level, options);
+            List<Folder> nextLevel = new ArrayList<>();
+            for (Folder folder : level) {
+                nextLevel.addAll(folder.subfolders);
+            }
+            level = nextLevel;
+        }
+
+        List<Path> paths = new ArrayList<>(4300);
+        List<BasicFileAttributes> attributes = new ArrayList<>(4300);
+        Deque<Folder> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Folder folder = stack.pop();
+            paths.addAll(folder.filePaths);
+            attributes.addAll(folder.fileAttributes);
+            for (int i = folder.subfolders.size() - 1; i >= 0; i--) {
+                stack.push(folder.subfolders.get(i));
+            }
+        }
+        if (paths.isEmpty() && !allowEmpty) {
+            throw new IOException("There are no files in " + sourceFolderPath + "!");
+        }
+        if (!paths.isEmpty()) {
+            paths.add(paths.get(paths.size() - 1));
+            attributes.add(attributes.get(attributes.size() - 1));
+        }
+
+        long[] sizes = new long[paths.size()];
+        long[] modifiedTimes = new long[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+            sizes[i] = attributes.get(i).size();
+            modifiedTimes[i] = attributes.get(i).lastModifiedTime().toMillis();
+        }
+        return new SourceFileList(paths, sizes, modifiedTimes);
+    }
+
+    private static void listFolders(List<Folder> folders, OperationOptions options) throws IOException {
+        if (options.getThreadCount() == 1 || folders.size() == 1) {
+            for (Folder folder : folders) {
+                folder.list();
+            }
+            return;
+        }
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            for (Folder folder : folders) {
+                if (!runner.submit(0, folder::list)) {
+                    break;
+                }
+            }
+        } finally {
+            runner.finish();
+        }
+    }
+
+    int size() {
+        return paths.size();
+    }
+
+    /**
+     * @return the paths of the files, the last one being repeated
+     */
+    List<Path> getPaths() {
+        return paths;
+    }
+
+    Path getPath(int index) {
+        return paths.get(index);
+    }
+
+    long getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @return the last modified time of the file in milliseconds since the epoch
+     */
+    long getModifiedTime(int index) {
+        return modifiedTimes[index];
+    }
+}
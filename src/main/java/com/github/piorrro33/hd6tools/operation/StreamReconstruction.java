@@ -0,0 +1,252 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.FileIndex;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import com.github.piorrro33.hd6tools.archive.IndexCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Rebuilds an HD6/DAT pair in a single pass over a {@link RebuildSource}, without a source folder: each file is
+ * copied to the end of the DAT as it is read and its name kept for the filename dictionary, and the HD6 file is
+ * written once the last file is in.
+ * <p>
+ * Files come in source order. When a name comes again, the last file with that name is kept, in the place of the
+ * first one, and the DAT slot of the previous one is left unused. As in every rebuild, the last file is listed twice.
+ * With {@link OperationOptions#isDeduplicate()}, each file is hashed right after being written, while still in the
+ * page cache, and a file whose contents are already in the DAT is taken back out of it.
+ */
+public class StreamReconstruction {
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * Rebuilds an archive from a tar stream, e.g. standard input. The stream is read up to the end of the tar archive
+     * and left open.
+     */
+    public static boolean performFromTar(InputStream tarStream, Path datPath, Path hd6Path, OperationOptions options) {
+        TarRebuildSource source = new TarRebuildSource(tarStream);
+        boolean isSuccessful = perform(source, datPath, hd6Path, options);
+        if (source.getSkippedEntryCount() > 0) {
+            System.out.println("Skipped " + source.getSkippedEntryCount() + " tar entries that are not files, or whose "
+                    + "path is invalid.");
+        }
+        return isSuccessful;
+    }
+
+    /**
+     * Rebuilds an archive from the files of another one, e.g. to apply {@link OperationOptions#isCompactFilenames()}
+     * or {@link OperationOptions#isDeduplicate()} to it.
+     */
+    public static boolean performFromArchive(Path sourceHD6Path, Path sourceDatPath, Path datPath, Path hd6Path,
+                                             OperationOptions options) {
+        if (sourceHD6Path.toAbsolutePath().normalize().equals(hd6Path.toAbsolutePath().normalize())
+                || sourceDatPath.toAbsolutePath().normalize().equals(datPath.toAbsolutePath().normalize())) {
+            System.err.println("An archive cannot be repacked onto itself!");
+            return false;
+        }
+        try (HD6Archive archive = HD6Archive.open(sourceHD6Path, sourceDatPath, options.isUseIndexCache())) {
+            return perform(new ArchiveRebuildSource(archive), datPath, hd6Path, options);
+        } catch (IOException e) {
+            System.err.println("Could not open source HD6/DAT files! " + e.getLocalizedMessage());
+            options.getMetrics().finish();
+            return false;
+        }
+    }
+
+    static boolean perform(RebuildSource source, Path datPath, Path hd6Path, OperationOptions options) {
+        try {
+            return rebuild(source, datPath, hd6Path, options);
+        } finally {
+            options.getMetrics().finish();
+        }
+    }
+
+    private static boolean rebuild(RebuildSource source, Path datPath, Path hd6Path, OperationOptions options) {
+        OperationMetrics metrics = options.getMetrics();
+        metrics.startOperation("rebuild");
+        if (Files.exists(datPath)
+                && !Operations.askToProceed("Warning! The destination DAT file already exists.", options)) {
+            return false;
+        }
+        if (Files.exists(hd6Path)
+                && !Operations.askToProceed("Warning! The destination HD6 file already exists.", options)) {
+            return false;
+        }
+        try {
+            for (Path parentPath : new Path[]{datPath.toAbsolutePath().getParent(),
+                    hd6Path.toAbsolutePath().getParent()}) {
+                Files.createDirectories(parentPath);
+            }
+            IndexCache.invalidate(hd6Path);
+        } catch (IOException e) {
+            System.err.println("Could not prepare the destination files! " + e.getLocalizedMessage());
+            return false;
+        }
+
+        try (FileChannel datChannel = FileChannel.open(datPath, READ, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            System.out.println("Writing DAT...");
+            metrics.startPhase("Writing DAT");
+            DatAppender appender = new DatAppender(datChannel, options);
+            source.forEachFile(appender::append);
+            if (appender.names.isEmpty()) {
+                System.err.println("There are no files in the source!");
+                return false;
+            }
+            appender.appendLastFileAgain();
+            appender.finish();
+            if (appender.replacedFileCount > 0) {
+                System.out.println(appender.replacedFileCount + " file(s) came several times, the last copy of each "
+                        + "was kept.");
+            }
+            if (options.isDeduplicate()) {
+                System.out.println("Found " + appender.duplicateCount + " duplicate file(s), " + appender.savedBytes
+                        + " bytes saved in the DAT.");
+            }
+
+            Reconstruction.FilenameTable filenameTable = Reconstruction.createFilenameTable(appender.names, options);
+            int fileCount = appender.names.size();
+            Reconstruction.writeHD6(hd6Path, filenameTable, Arrays.copyOf(appender.startOffsets, fileCount),
+                    Arrays.copyOf(appender.fileSizes, fileCount), metrics);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends files to the DAT one after the other, on 0x800 bytes boundaries, and keeps their names and slots.
+     */
+    private static class DatAppender {
+        final List<String> names = new ArrayList<>(4300);
+        long[] startOffsets = new long[4300];
+        int[] fileSizes = new int[4300];
+        int replacedFileCount = 0;
+        int duplicateCount = 0;
+        long savedBytes = 0;
+
+        private final FileChannel datChannel;
+        private final OperationMetrics metrics;
+        private final Map<String, Integer> indexByName = new HashMap<>();
+        private final Map<String, Long> startOffsetByContents;
+        private final MessageDigest digest;
+        private long endOffset = 0;
+
+        DatAppender(FileChannel datChannel, OperationOptions options) throws IOException {
+            this.datChannel = datChannel;
+            metrics = options.getMetrics();
+            if (options.isDeduplicate()) {
+                startOffsetByContents = new HashMap<>();
+                try {
+                    digest = MessageDigest.getInstance(HASH_ALGORITHM);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IOException(HASH_ALGORITHM + " is not available!", e);
+                }
+            } else {
+                startOffsetByContents = null;
+                digest = null;
+            }
+        }
+
+        void append(String name, long fileSize, RebuildSource.Payload payload) throws IOException {
+            long startOffset = write(name, fileSize, payload);
+            String hd6Name = name.replace("/", "\\");
+            Integer index = indexByName.putIfAbsent(hd6Name, names.size());
+            if (index != null) {
+                replacedFileCount++;
+                startOffsets[index] = startOffset;
+                fileSizes[index] = (int) fileSize;
+            } else {
+                add(hd6Name, startOffset, fileSize);
+            }
+        }
+
+        /**
+         * Repeats the last file, as folder rebuilds do.
+         */
+        void appendLastFileAgain() throws IOException {
+            int lastIndex = names.size() - 1;
+            String name = names.get(lastIndex);
+            int fileSize = fileSizes[lastIndex];
+            ByteBuffer contents = datChannel.map(FileChannel.MapMode.READ_ONLY, startOffsets[lastIndex], fileSize);
+            add(name, write(name, fileSize, datChannel -> {
+                while (contents.hasRemaining()) {
+                    datChannel.write(contents);
+                }
+            }), fileSize);
+        }
+
+        /**
+         * @return the start offset of the file, which is that of the first file with the same contents when
+         * deduplicating
+         */
+        private long write(String name, long fileSize, RebuildSource.Payload payload) throws IOException {
+            if (fileSize > FileIndex.MAX_FILE_SIZE) {
+                throw new IOException("File " + name + " is too large for an HD6 archive! Files must be smaller "
+                        + "than 256 MiB.");
+            }
+            if (endOffset > FileIndex.MAX_START_OFFSET) {
+                throw new IOException("File " + name + " does not fit in the DAT file! Files must start within its "
+                        + "first 8 GiB.");
+            }
+            long startOffset = endOffset;
+            datChannel.position(startOffset);
+            payload.writeTo(datChannel);
+            if (datChannel.position() != startOffset + fileSize) {
+                throw new IOException("File " + name + " does not have the expected size!");
+            }
+            metrics.addFile(fileSize);
+
+            if (startOffsetByContents != null && fileSize > 0) {
+                digest.update(datChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, fileSize));
+                String contentsKey = fileSize + ":" + HexFormat.of().formatHex(digest.digest());
+                Long firstStartOffset = startOffsetByContents.putIfAbsent(contentsKey, startOffset);
+                if (firstStartOffset != null) {
+                    // Take the copy back out, so that the padding of the next file is made of zeroes again
+                    datChannel.truncate(startOffset);
+                    duplicateCount++;
+                    savedBytes += fileSize + (0x800 - fileSize % 0x800) % 0x800;
+                    return firstStartOffset;
+                }
+            }
+            endOffset = startOffset + fileSize + (0x800 - fileSize % 0x800) % 0x800;
+            return startOffset;
+        }
+
+        private void add(String hd6Name, long startOffset, long fileSize) {
+            int index = names.size();
+            names.add(hd6Name);
+            if (index == startOffsets.length) {
+                startOffsets = Arrays.copyOf(startOffsets, index * 2);
+                fileSizes = Arrays.copyOf(fileSizes, index * 2);
+            }
+            startOffsets[index] = startOffset;
+            fileSizes[index] = (int) fileSize;
+        }
+
+        /**
+         * Cuts the DAT after the padding of the last slot, which is not written.
+         */
+        void finish() throws IOException {
+            datChannel.truncate(endOffset);
+            if (datChannel.size() < endOffset) {
+                datChannel.write(ByteBuffer.allocate(1), endOffset - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Regular files of a tar stream, in stream order, e.g. from standard output of another tool. Reads ustar and GNU
+ * headers, PAX extended headers ({@code path} and {@code size}) and GNU long names. Folders are implied by the paths
+ * of their files and skipped, like links and special files.
+ */
+class TarRebuildSource implements RebuildSource {
+    private static final int BLOCK_SIZE = 512;
+    /**
+     * Bound of the numbers read from headers, far beyond any real entry, so that adding padding never overflows
+     */
+    private static final long MAX_NUMBER = 1L << 56;
+
+    private final DataInputStream tarStream;
+    private final ReadableByteChannel tarChannel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private int skippedEntryCount = 0;
+
+    TarRebuildSource(InputStream tarStream) {
+        this.tarStream = new DataInputStream(tarStream);
+        tarChannel = Channels.newChannel(this.tarStream);
+    }
+
+    @Override
+    public void forEachFile(FileConsumer consumer) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        String longName = null;
+        long paxSize = -1;
+        while (true) {
+            try {
+                tarStream.readFully(header);
+            } catch (EOFException e) {
+                throw new IOException("Unexpected end of tar stream!", e);
+            }
+            if (isZeroBlock(header)) {
+                return; // end of archive, the second zero block and the record padding are left unread
+            }
+            if (!isChecksumValid(header)) {
+                throw new IOException("Invalid tar header checksum!");
+            }
+            long size = paxSize >= 0 ? paxSize : parseNumber(header, 124, 12);
+            byte typeFlag = header[156];
+            switch (typeFlag) {
+                case 'x' -> {
+                    String records = new String(readData(size), StandardCharsets.UTF_8);
+                    longName = getPaxRecord(records, "path", longName);
+                    String sizeRecord = getPaxRecord(records, "size", null);
+                    paxSize = sizeRecord != null ? parsePaxSize(sizeRecord) : -1;
+                    continue;
+                }
+                case 'L' -> {
+                    longName = new String(readData(size), StandardCharsets.UTF_8).replace("\0", "");
+                    continue;
+                }
+                case '0', '\0', '7' -> {
+                    String name = normalizeName(longName != null ? longName : getHeaderName(header));
+                    if (!isSafeName(name)) {
+                        // Would be extracted outside of the destination folder, or next to another file
+                        System.out.println("Skipping tar entry with an invalid path: " + name);
+                        skippedEntryCount++;
+                        skip(size + padding(size));
+                        break;
+                    }
+                    long fileSize = size;
+                    consumer.accept(name, fileSize, datChannel -> {
+                        // Not FileChannel.transferFrom, which writes nothing past the end of the DAT
+                        long copied = 0;
+                        while (copied < fileSize) {
+                            buffer.clear().limit((int) Math.min(buffer.capacity(), fileSize - copied));
+                            while (buffer.hasRemaining()) {
+                                if (tarChannel.read(buffer) < 0) {
+                                    throw new IOException("Unexpected end of tar stream in " + name + "!");
+                                }
+                            }
+                            buffer.flip();
+                            while (buffer.hasRemaining()) {
+                                datChannel.write(buffer);
+                            }
+                            copied += buffer.limit();
+                        }
+                    });
+                    skipPadding(size);
+                }
+                default -> {
+                    // Folders, links, global PAX headers and special files
+                    if (typeFlag != '5' && typeFlag != 'g') {
+                        skippedEntryCount++;
+                    }
+                    skip(size + padding(size));
+                }
+            }
+            longName = null;
+            paxSize = -1;
+        }
+    }
+
+    /**
+     * @return how many links, special files, unknown entries and files with invalid paths were skipped, folders
+     * excepted
+     */
+    int getSkippedEntryCount() {
+        return skippedEntryCount;
+    }
+
+    private byte[] readData(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Tar extended header is too large!");
+        }
+        byte[] data = new byte[(int) size];
+        tarStream.readFully(data);
+        skipPadding(size);
+        return data;
+    }
+
+    private void skipPadding(long size) throws IOException {
+        skip(padding(size));
+    }
+
+    /**
+     * Reads and drops bytes, as skipping fails on pipes such as standard input.
+     */
+    private void skip(long count) throws IOException {
+        byte[] skipped = new byte[(int) Math.min(count, 8192)];
+        for (long remaining = count; remaining > 0; remaining -= skipped.length) {
+            tarStream.readFully(skipped, 0, (int) Math.min(remaining, skipped.length));
+        }
+    }
+
+    private static long padding(long size) {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    private static boolean isZeroBlock(byte[] header) {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isChecksumValid(byte[] header) throws IOException {
+        long checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+        }
+        return checksum == parseNumber(header, 148, 8);
+    }
+
+    private static long parsePaxSize(String sizeRecord) throws IOException {
+        long size;
+        try {
+            size = Long.parseLong(sizeRecord);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid PAX size record!", e);
+        }
+        if (size < 0 || size > MAX_NUMBER) {
+            throw new IOException("Invalid PAX size record!");
+        }
+        return size;
+    }
+
+    /**
+     * Parses an octal field, or a base-256 field if its first bit is set, as GNU tar writes for large values.
+     *
+     * @throws IOException if a base-256 field is negative or larger than {@link #MAX_NUMBER}
+     */
+    private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+        long value = 0;
+        if ((header[offset] & 0x80) != 0) {
+            if ((header[offset] & 0x40) != 0) {
+                throw new IOException("Invalid negative number in tar header!");
+            }
+            for (int i = offset + 1; i < offset + length; i++) {
+                if (value > MAX_NUMBER >> 8) {
+                    throw new IOException("Number in tar header is too large!");
+                }
+                value = value << 8 | header[i] & 0xFF;
+            }
+            return value;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                value = value << 3 | b - '0';
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return the name of a ustar header, prefixed with its prefix field when there is one
+     */
+    private static String getHeaderName(byte[] header) {
+        String name = getString(header, 0, 100);
+        boolean isUstar = new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar");
+        String prefix = isUstar ? getString(header, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String getString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the value of the last record with the given key, or the default value if there is none
+     */
+    private static String getPaxRecord(String records, String key, String defaultValue) {
+        String value = defaultValue;
+        int start = 0;
+        while (start < records.length()) {
+            int space = records.indexOf(' ', start);
+            int end = records.indexOf('\n', space);
+            if (space < 0 || end < 0) {
+                break;
+            }
+            String record = records.substring(space + 1, end);
+            if (record.startsWith(key + "=")) {
+                value = record.substring(key.length() + 1);
+            }
+            start = end + 1;
+        }
+        return value;
+    }
+
+    /**
+     * @return whether a path has no empty, {@code .} or {@code ..} component, {@code \} being a separator in archives
+     */
+    private static boolean isSafeName(String name) {
+        for (String component : name.split("[/\\\\]", -1)) {
+            if (component.isEmpty() || component.equals(".") || component.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes leading {@code ./} and {@code /} from a path, as archive names are relative.
+     */
+    private static String normalizeName(String name) {
+        while (name.startsWith("./") || name.startsWith("/")) {
+            name = name.substring(name.startsWith("/") ? 1 : 2);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams files into a POSIX tar (ustar with PAX extended headers). Names longer than the 100 bytes of a ustar header
+ * or which are not ASCII, and sizes beyond the 8 GiB of its octal field, get an extended header first.
+ */
+class TarSink implements ExtractionSink {
+    private static final int BLOCK_SIZE = 512;
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+    private static final String PAX_HEADER_NAME = "././@PaxHeader";
+
+    private final WritableByteChannel outChannel;
+    private final long modifiedTime;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+
+    /**
+     * @param modifiedTime in milliseconds since the epoch
+     */
+    TarSink(WritableByteChannel outChannel, long modifiedTime) {
+        this.outChannel = outChannel;
+        this.modifiedTime = modifiedTime / 1000;
+    }
+
+    @Override
+    public void addEntry(String name, FileChannel datChannel, long startOffset, long fileSize) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean isUstarName = nameBytes.length <= 100 && nameBytes.length == name.length();
+        if (!isUstarName || fileSize > MAX_USTAR_SIZE) {
+            StringBuilder records = new StringBuilder();
+            if (!isUstarName) {
+                records.append(paxRecord("path", name));
+            }
+            if (fileSize > MAX_USTAR_SIZE) {
+                records.append(paxRecord("size", Long.toString(fileSize)));
+            }
+            byte[] recordBytes = records.toString().getBytes(StandardCharsets.UTF_8);
+            writeHeader(PAX_HEADER_NAME, recordBytes.length, (byte) 'x');
+            ExtractionSink.write(ByteBuffer.wrap(recordBytes), outChannel);
+            writePadding(recordBytes.length);
+        }
+        writeHeader(isUstarName ? name : asciiName(name), Math.min(fileSize, MAX_USTAR_SIZE), (byte) '0');
+        ExtractionSink.transfer(datChannel, startOffset, fileSize, outChannel);
+        writePadding(fileSize);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        ExtractionSink.write(ByteBuffer.allocate(BLOCK_SIZE * 2), outChannel);
+    }
+
+    private void writeHeader(String name, long size, byte typeFlag) throws IOException {
+        header.clear().put(new byte[BLOCK_SIZE]).clear();
+        header.put(name.getBytes(StandardCharsets.US_ASCII));
+        putOctal(100, 8, 0644);
+        putOctal(108, 8, 0); // uid
+        putOctal(116, 8, 0); // gid
+        putOctal(124, 12, size);
+        putOctal(136, 12, modifiedTime);
+        header.put(148, "        ".getBytes(StandardCharsets.US_ASCII)); // checksum, counted as blanks
+        header.put(156, typeFlag);
+        header.put(257, "ustar\00000".getBytes(StandardCharsets.US_ASCII));
+        int checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            checksum += header.get(i) & 0xFF;
+        }
+        putOctal(148, 7, checksum);
+        ExtractionSink.write(header.clear(), outChannel);
+    }
+
+    /**
+     * Writes a value as zero-padded octal digits, followed by a null byte, in a field of the given length.
+     */
+    private void putOctal(int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        String field = "0".repeat(length - 1 - digits.length()) + digits;
+        header.put(offset, field.getBytes(StandardCharsets.US_ASCII));
+        header.put(offset + length - 1, (byte) 0);
+    }
+
+    private void writePadding(long size) throws IOException {
+        int padding = (int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+        if (padding > 0) {
+            ExtractionSink.write(ByteBuffer.allocate(padding), outChannel);
+        }
+    }
+
+    /**
+     * @return a record {@code "<length> <key>=<value>\n"}, its length counting itself
+     */
+    private static String paxRecord(String key, String value) {
+        int length = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int totalLength = length + Integer.toString(length).length();
+        if (Integer.toString(totalLength).length() > Integer.toString(length).length()) {
+            totalLength++;
+        }
+        return totalLength + " " + key + "=" + value + "\n";
+    }
+
+    /**
+     * @return the end of the name, with non-ASCII characters replaced, for the ustar field that readers without PAX
+     * support use
+     */
+    private static String asciiName(String name) {
+        String asciiName = name.replaceAll("[^\\x20-\\x7E]", "_");
+        return asciiName.length() <= 100 ? asciiName : asciiName.substring(asciiName.length() - 100);
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.piorrro33.hd6tools.operation;
+
+/**
+ * How an extraction over an existing folder tells that a destination file already holds an archive entry, in which
+ * case the file is left untouched, keeping its last modified time.
+ */
+public enum UnchangedCheck {
+    /**
+     * The file has the size of the entry. Nothing is read, but a change keeping the size is missed.
+     */
+    SIZE,
+    /**
+     * The file has the size and the bytes of the entry. Both the file and the entry are read.
+     */
+    CONTENTS,
+    /**
+     * The file has the size and last modified time recorded in the folder manifest by the previous extraction, and
+     * the entry has the recorded SHA-256 hash. Only the entry is read. Files missing from the manifest are written.
+     */
+    MANIFEST
+}
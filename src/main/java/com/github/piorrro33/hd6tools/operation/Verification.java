@@ -0,0 +1,143 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that a folder holds the files of an HD6/DAT pair, as an extraction would write them, without writing
+ * anything.
+ * <p>
+ * A file matches when its size is that of the entry (which the HD6 stores rounded down to 0x10 bytes) and its bytes
+ * are those of the DAT. Contents are compared directly rather than through hashes: both sides are read once either
+ * way, and a direct comparison stops at the first difference. Files are compared in DAT order, several at a time on
+ * the worker threads, so that the DAT is read sequentially.
+ */
+public class Verification {
+    /**
+     * @param differingFiles names of the files whose size or contents differ
+     * @param missingFiles   names of the archive files missing from the folder
+     * @param extraFiles     names of the folder files missing from the archive
+     */
+    public record Result(int matchingFileCount, List<String> differingFiles, List<String> missingFiles,
+                         List<String> extraFiles) {
+        public boolean isMatching() {
+            return differingFiles.isEmpty() && missingFiles.isEmpty() && extraFiles.isEmpty();
+        }
+    }
+
+    public static Result perform(Path datPath, Path hd6Path, Path folderPath, OperationOptions options)
+            throws IOException {
+        try {
+            return verify(datPath, hd6Path, folderPath, options);
+        } finally {
+            options.getMetrics().finish();
+        }
+    }
+
+    private static Result verify(Path datPath, Path hd6Path, Path folderPath, OperationOptions options)
+            throws IOException {
+        OperationMetrics metrics = options.getMetrics();
+        metrics.startOperation("verify");
+        System.out.println("Reading HD6...");
+        metrics.startPhase("Reading HD6");
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, options.isUseIndexCache())) {
+            metrics.addFile(Files.size(hd6Path));
+            // When several entries have the same name, an extraction leaves the last one
+            Map<String, Integer> archiveIndexes = new LinkedHashMap<>(archive.size() * 2);
+            for (int i = 0; i < archive.size(); i++) {
+                archiveIndexes.put(archive.getName(i), i);
+            }
+
+            System.out.println("Browsing folder...");
+            metrics.startPhase("Browsing folder");
+            SourceFileList folderFiles = SourceFileList.scan(folderPath, options, true);
+            Map<String, Integer> folderIndexes = new HashMap<>(folderFiles.size() * 2);
+            String separator = folderPath.getFileSystem().getSeparator();
+            for (int i = 0; i < folderFiles.size(); i++) {
+                folderIndexes.put(folderPath.relativize(folderFiles.getPath(i)).toString().replace(separator, "/"), i);
+            }
+            metrics.addFiles(folderIndexes.size());
+
+            System.out.println("Comparing files...");
+            metrics.startPhase("Comparing files", archiveIndexes.size());
+            List<String> missingFiles = new ArrayList<>();
+            List<Integer> comparedIndexes = new ArrayList<>(archiveIndexes.size());
+            int[] folderIndexArr = new int[archive.size()];
+            boolean[] differs = new boolean[archive.size()];
+            for (Map.Entry<String, Integer> archiveIndex : archiveIndexes.entrySet()) {
+                Integer folderIndex = folderIndexes.get(archiveIndex.getKey());
+                if (folderIndex == null) {
+                    missingFiles.add(archiveIndex.getKey());
+                } else if (!isSameSize(archive.getFileSize(archiveIndex.getValue()),
+                        folderFiles.getSize(folderIndex))) {
+                    differs[archiveIndex.getValue()] = true;
+                } else {
+                    comparedIndexes.add(archiveIndex.getValue());
+                    folderIndexArr[archiveIndex.getValue()] = folderIndex;
+                }
+            }
+            comparedIndexes.sort(Comparator.comparingLong(archive::getStartOffset));
+            compareContents(archive, comparedIndexes, folderFiles, folderIndexArr, differs, options);
+
+            List<String> differingFiles = new ArrayList<>();
+            for (int index : archiveIndexes.values()) {
+                if (differs[index]) {
+                    differingFiles.add(archive.getName(index));
+                }
+            }
+            List<String> extraFiles = new ArrayList<>();
+            for (String name : folderIndexes.keySet()) {
+                if (!archiveIndexes.containsKey(name)) {
+                    extraFiles.add(name);
+                }
+            }
+            extraFiles.sort(null);
+            int matchingFileCount = archiveIndexes.size() - missingFiles.size() - differingFiles.size();
+            return new Result(matchingFileCount, differingFiles, missingFiles, extraFiles);
+        }
+    }
+
+    /**
+     * A rebuild stores the size rounded down to 0x10 bytes, but copies the whole file to the DAT.
+     */
+    private static boolean isSameSize(long archiveFileSize, long folderFileSize) {
+        long slotSize = archiveFileSize + (0x800 - archiveFileSize % 0x800) % 0x800;
+        return (folderFileSize >> 0x4) << 0x4 == archiveFileSize && folderFileSize <= slotSize;
+    }
+
+    private static void compareContents(HD6Archive archive, List<Integer> archiveIndexes, SourceFileList folderFiles,
+                                        int[] folderIndexArr, boolean[] differs,
+                                        OperationOptions options) throws IOException {
+        OperationMetrics metrics = options.getMetrics();
+        FileChannel datChannel = archive.getDatChannel();
+        BoundedTaskRunner runner = new BoundedTaskRunner(options);
+        try {
+            for (int index : archiveIndexes) {
+                int folderIndex = folderIndexArr[index];
+                Path filePath = folderFiles.getPath(folderIndex);
+                long fileSize = folderFiles.getSize(folderIndex);
+                long startOffset = archive.getStartOffset(index);
+                boolean submitted = runner.submit(fileSize, () -> {
+                    differs[index] = fileSize > 0
+                            && !IncrementalReconstruction.sameContents(datChannel, startOffset, filePath, fileSize);
+                    metrics.addFile(fileSize);
+                });
+                if (!submitted) {
+                    break;
+                }
+            }
+        } finally {
+            runner.finish();
+        }
+    }
+}
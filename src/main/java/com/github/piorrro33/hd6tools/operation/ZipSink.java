@@ -0,0 +1,172 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.zip.CRC32;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * Streams files into a zip without compression. Nothing is written back, so the output may be a pipe: the CRC-32 of
+ * each file is computed before its local header is written, from a buffer that also feeds the output for files of at
+ * most {@link #BUFFER_SIZE} bytes, and by reading larger files from the DAT twice.
+ * <p>
+ * ZIP64 extra fields are added to the entries whose size or offset does not fit in 32 bits, and ZIP64 end records when
+ * the central directory or the entry count do not fit in the regular one.
+ */
+class ZipSink implements ExtractionSink {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long ZIP64_THRESHOLD = 0xFFFFFFFFL;
+    private static final int VERSION_NEEDED = 10;
+    private static final int VERSION_NEEDED_ZIP64 = 45;
+    private static final int VERSION_MADE_BY = (3 << 8) | VERSION_NEEDED_ZIP64; // Unix, so that file modes are kept
+    private static final int FLAG_UTF8_NAMES = 0x0800;
+
+    private final WritableByteChannel outChannel;
+    private final int dosTime;
+    private final int dosDate;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private long entryCount = 0;
+    private long offset = 0;
+
+    /**
+     * @param modifiedTime in milliseconds since the epoch
+     */
+    ZipSink(WritableByteChannel outChannel, long modifiedTime) {
+        this.outChannel = outChannel;
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(modifiedTime), ZoneId.systemDefault());
+        if (dateTime.getYear() < 1980) {
+            dateTime = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        dosTime = dateTime.getHour() << 11 | dateTime.getMinute() << 5 | dateTime.getSecond() / 2;
+        dosDate = (dateTime.getYear() - 1980) << 9 | dateTime.getMonthValue() << 5 | dateTime.getDayOfMonth();
+    }
+
+    @Override
+    public void addEntry(String name, FileChannel datChannel, long startOffset, long fileSize) throws IOException {
+        boolean isBuffered = fileSize <= BUFFER_SIZE;
+        crc.reset();
+        buffer.clear().limit(0);
+        for (long read = 0; read < fileSize; ) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, fileSize - read));
+            while (buffer.hasRemaining()) {
+                if (datChannel.read(buffer, startOffset + read + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of DAT file at offset "
+                            + (startOffset + read + buffer.position()));
+                }
+            }
+            crc.update(buffer.flip());
+            read += buffer.limit();
+        }
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean isZip64 = fileSize >= ZIP64_THRESHOLD;
+        ByteBuffer localHeader = ByteBuffer.allocate(30 + nameBytes.length + (isZip64 ? 20 : 0)).order(LITTLE_ENDIAN);
+        localHeader.putInt(0x04034B50);
+        localHeader.putShort((short) (isZip64 ? VERSION_NEEDED_ZIP64 : VERSION_NEEDED));
+        putCommonFields(localHeader, fileSize);
+        localHeader.putShort((short) nameBytes.length);
+        localHeader.putShort((short) (isZip64 ? 20 : 0)); // extra field length
+        localHeader.put(nameBytes);
+        if (isZip64) {
+            localHeader.putShort((short) 0x0001).putShort((short) 16).putLong(fileSize).putLong(fileSize);
+        }
+        ExtractionSink.write(localHeader.flip(), outChannel);
+        if (isBuffered) {
+            ExtractionSink.write(buffer.rewind(), outChannel);
+        } else {
+            ExtractionSink.transfer(datChannel, startOffset, fileSize, outChannel);
+        }
+        addCentralRecord(nameBytes, fileSize, offset);
+        offset += localHeader.limit() + fileSize;
+        entryCount++;
+    }
+
+    /**
+     * Puts the fields from the flags to the uncompressed size, which local headers and central records share.
+     */
+    private void putCommonFields(ByteBuffer record, long fileSize) {
+        record.putShort((short) FLAG_UTF8_NAMES);
+        record.putShort((short) 0); // stored
+        record.putShort((short) dosTime);
+        record.putShort((short) dosDate);
+        record.putInt((int) crc.getValue());
+        record.putInt((int) Math.min(fileSize, ZIP64_THRESHOLD)); // compressed size
+        record.putInt((int) Math.min(fileSize, ZIP64_THRESHOLD));
+    }
+
+    private void addCentralRecord(byte[] nameBytes, long fileSize, long localHeaderOffset) {
+        boolean isSizeZip64 = fileSize >= ZIP64_THRESHOLD;
+        boolean isOffsetZip64 = localHeaderOffset >= ZIP64_THRESHOLD;
+        int extraSize = isSizeZip64 || isOffsetZip64 ? 4 + (isSizeZip64 ? 16 : 0) + (isOffsetZip64 ? 8 : 0) : 0;
+        ByteBuffer record = ByteBuffer.allocate(46 + nameBytes.length + extraSize).order(LITTLE_ENDIAN);
+        record.putInt(0x02014B50);
+        record.putShort((short) VERSION_MADE_BY);
+        record.putShort((short) (extraSize > 0 ? VERSION_NEEDED_ZIP64 : VERSION_NEEDED));
+        putCommonFields(record, fileSize);
+        record.putShort((short) nameBytes.length);
+        record.putShort((short) extraSize);
+        record.putShort((short) 0); // comment length
+        record.putShort((short) 0); // disk number
+        record.putShort((short) 0); // internal attributes
+        record.putInt(0100644 << 16); // external attributes: regular file, rw-r--r--
+        record.putInt((int) Math.min(localHeaderOffset, ZIP64_THRESHOLD));
+        record.put(nameBytes);
+        if (extraSize > 0) {
+            record.putShort((short) 0x0001).putShort((short) (extraSize - 4));
+            if (isSizeZip64) {
+                record.putLong(fileSize).putLong(fileSize);
+            }
+            if (isOffsetZip64) {
+                record.putLong(localHeaderOffset);
+            }
+        }
+        centralDirectory.write(record.array(), 0, record.capacity());
+    }
+
+    @Override
+    public void finish() throws IOException {
+        long centralDirectoryOffset = offset;
+        long centralDirectorySize = centralDirectory.size();
+        ExtractionSink.write(ByteBuffer.wrap(centralDirectory.toByteArray()), outChannel);
+        offset += centralDirectorySize;
+
+        ByteBuffer endRecords = ByteBuffer.allocate(56 + 20 + 22).order(LITTLE_ENDIAN);
+        if (entryCount >= 0xFFFF || centralDirectoryOffset >= ZIP64_THRESHOLD
+                || centralDirectorySize >= ZIP64_THRESHOLD) {
+            endRecords.putInt(0x06064B50);
+            endRecords.putLong(44); // size of the rest of the record
+            endRecords.putShort((short) VERSION_MADE_BY);
+            endRecords.putShort((short) VERSION_NEEDED_ZIP64);
+            endRecords.putInt(0); // disk number
+            endRecords.putInt(0); // disk of the central directory
+            endRecords.putLong(entryCount); // on this disk
+            endRecords.putLong(entryCount);
+            endRecords.putLong(centralDirectorySize);
+            endRecords.putLong(centralDirectoryOffset);
+
+            endRecords.putInt(0x07064B50);
+            endRecords.putInt(0); // disk of the ZIP64 end record
+            endRecords.putLong(offset);
+            endRecords.putInt(1); // disk count
+        }
+        endRecords.putInt(0x06054B50);
+        endRecords.putShort((short) 0); // disk number
+        endRecords.putShort((short) 0); // disk of the central directory
+        endRecords.putShort((short) Math.min(entryCount, 0xFFFF)); // on this disk
+        endRecords.putShort((short) Math.min(entryCount, 0xFFFF));
+        endRecords.putInt((int) Math.min(centralDirectorySize, ZIP64_THRESHOLD));
+        endRecords.putInt((int) Math.min(centralDirectoryOffset, ZIP64_THRESHOLD));
+        endRecords.putShort((short) 0); // comment length
+        ExtractionSink.write(endRecords.flip(), outChannel);
+    }
+}
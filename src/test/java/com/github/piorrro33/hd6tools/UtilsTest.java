@@ -33,4 +33,24 @@ class UtilsTest {
         Path dotHd6InFolderName = Path.of("test/doNotDelete.hd6");
         assertFalse(Utils.isPathToHD6(dotHd6InFolderName), dotHd6InFolderName + " is not a path to a HD6 file");
     }
-}
\ No newline at end of file
+
+    @Test
+    void globToRegex() {
+        assertTrue("chr/face_01.g1t".matches(Utils.globToRegex("chr/*.g1t")));
+        assertFalse("chr/a/face_01.g1t".matches(Utils.globToRegex("chr/*.g1t")));
+        assertTrue("chr/a/face_01.g1t".matches(Utils.globToRegex("chr/**.g1t")));
+        assertTrue("ui/win.xml".matches(Utils.globToRegex("{ui,menu}/win.{xml,bin}")));
+        assertTrue("face_1.g1t".matches(Utils.globToRegex("face_[0-9].g1t")));
+        assertFalse("face_a.g1t".matches(Utils.globToRegex("face_[!a-z].g1t")));
+        // Sets never match the separator, and their characters are taken literally
+        assertFalse("a/b".matches(Utils.globToRegex("a[!x]b")));
+        assertTrue("a-b".matches(Utils.globToRegex("a[!x]b")));
+        assertFalse("a/b".matches(Utils.globToRegex("a[!a-z]b")));
+        assertTrue("a&b".matches(Utils.globToRegex("a[&x]b")));
+        assertFalse("a/b".matches(Utils.globToRegex("a[&&[/]]b")));
+        assertTrue("a^b".matches(Utils.globToRegex("a[^x]b")));
+        assertFalse("ayb".matches(Utils.globToRegex("a[^x]b")));
+        assertTrue("a+b(1).bin".matches(Utils.globToRegex("a+b(?).bin")));
+        assertTrue("star*.bin".matches(Utils.globToRegex("star\\*.bin")));
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import com.github.piorrro33.hd6tools.operation.OperationMode;
+import com.github.piorrro33.hd6tools.operation.Operations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveCacheTest {
+    @TempDir
+    Path tempDir;
+
+    private Path rebuild(String name) throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve(name));
+        Files.write(sourceFolderPath.resolve("file.bin"), new byte[0x20]);
+        Path hd6Path = tempDir.resolve(name + ".hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, tempDir.resolve(name + ".dat"), hd6Path,
+                sourceFolderPath));
+        return hd6Path;
+    }
+
+    @Test
+    void leastRecentlyUsedArchiveIsClosedOnceReleased() throws IOException {
+        Path firstPath = rebuild("first");
+        Path secondPath = rebuild("second");
+        try (ArchiveCache cache = new ArchiveCache(1, false)) {
+            ArchiveCache.Lease firstLease = cache.acquire(firstPath);
+            HD6Archive first = firstLease.archive();
+            try (ArchiveCache.Lease again = cache.acquire(firstPath)) {
+                assertSame(first, again.archive());
+            }
+
+            try (ArchiveCache.Lease secondLease = cache.acquire(secondPath)) {
+                assertEquals(1, cache.size());
+                // Evicted but still leased: still usable
+                assertTrue(first.getDatChannel().isOpen());
+                assertEquals(0x20, first.open("file.bin").remaining());
+                firstLease.close();
+                assertFalse(first.getDatChannel().isOpen());
+                assertTrue(secondLease.archive().getDatChannel().isOpen());
+            }
+
+            try (ArchiveCache.Lease reopened = cache.acquire(firstPath)) {
+                assertNotSame(first, reopened.archive());
+            }
+        }
+    }
+}
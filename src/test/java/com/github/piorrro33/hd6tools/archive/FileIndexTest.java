@@ -0,0 +1,107 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import com.github.piorrro33.hd6tools.operation.OperationMode;
+import com.github.piorrro33.hd6tools.operation.OperationOptions;
+import com.github.piorrro33.hd6tools.operation.Operations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileIndexTest {
+    private static final String[] FILENAMES = {"a/face_01.g1t", "a/face_02.g1t", "b/テスト.bin", "c/d/chara.bin"};
+
+    @TempDir
+    Path tempDir;
+
+    private Path rebuild(boolean compactFilenames) throws IOException {
+        Path sourceFolderPath = tempDir.resolve("source");
+        for (int i = 0; i < FILENAMES.length; i++) {
+            Path filePath = sourceFolderPath.resolve(FILENAMES[i]);
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, new byte[0x10 * i + 0x810]);
+        }
+        Path hd6Path = tempDir.resolve("source.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, tempDir.resolve("source.dat"), hd6Path,
+                sourceFolderPath, new OperationOptions().setCompactFilenames(compactFilenames).setAssumeYes(true)));
+        return hd6Path;
+    }
+
+    @Test
+    void readAndWriteBack() throws IOException {
+        for (boolean compactFilenames : new boolean[]{false, true}) {
+            byte[] hd6 = Files.readAllBytes(rebuild(compactFilenames));
+            FileIndex index = FileIndex.read(ByteBuffer.wrap(hd6));
+            assertEquals(FILENAMES.length + 1, index.size()); // the last file is repeated
+            for (int i = 0; i < index.size(); i++) {
+                String filename = FILENAMES[Math.min(i, FILENAMES.length - 1)];
+                assertEquals(filename, index.getName(i));
+                assertArrayEquals(filename.replace('/', '\\').getBytes(Charset.forName("Shift_JIS")),
+                        index.getRawName(i));
+                assertEquals(0x10 * Math.min(i, FILENAMES.length - 1) + 0x810, index.getFileSize(i));
+            }
+            assertEquals(index.getStartOffset(FILENAMES.length - 1) + 0x1000, index.getStartOffset(FILENAMES.length));
+
+            Path copyPath = tempDir.resolve("copy.hd6");
+            index.write(copyPath);
+            assertArrayEquals(hd6, Files.readAllBytes(copyPath));
+        }
+    }
+
+    @Test
+    void readTwoByteChunkIndexes() throws IOException {
+        Path sourceFolderPath = tempDir.resolve("many");
+        String[] filenames = new String[200];
+        for (int i = 0; i < filenames.length; i++) {
+            filenames[i] = String.format("dir%03d/file%03d.bin", i, i);
+            Path filePath = sourceFolderPath.resolve(filenames[i]);
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, new byte[0x10]);
+        }
+        Path hd6Path = tempDir.resolve("many.hd6");
+        Path datPath = tempDir.resolve("many.dat");
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath));
+        byte[] hd6 = Files.readAllBytes(hd6Path);
+        assertTrue(ByteBuffer.wrap(hd6).order(ByteOrder.LITTLE_ENDIAN).getInt(0xC) > 0x80); // name chunk count
+
+        FileIndex index = FileIndex.read(ByteBuffer.wrap(hd6));
+        for (int i = 0; i < filenames.length; i++) {
+            assertEquals(filenames[i], index.getName(i));
+        }
+        for (boolean useIndexCache : new boolean[]{false, true, true}) {
+            try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, useIndexCache)) {
+                for (int i = 0; i < filenames.length; i++) {
+                    assertEquals(filenames[i], archive.getName(i));
+                    assertEquals(i, archive.find(filenames[i]));
+                }
+            }
+        }
+
+        Path copyPath = tempDir.resolve("copy.hd6");
+        index.write(copyPath);
+        assertArrayEquals(hd6, Files.readAllBytes(copyPath));
+    }
+
+    @Test
+    void rejectUnencodableEntries() {
+        byte[] nameChunkData = {0, 'a', 0};
+        byte[] filenameTable = {1, 0};
+        assertThrows(IOException.class, () -> new FileIndex(nameChunkData, 2, filenameTable, new int[]{0, 0},
+                new long[]{FileIndex.MAX_START_OFFSET + 0x800}, new int[]{0x10}).write(tempDir.resolve("far.hd6")));
+        assertThrows(IOException.class, () -> new FileIndex(nameChunkData, 2, filenameTable, new int[]{0, 0},
+                new long[]{0x801}, new int[]{0x10}).write(tempDir.resolve("unaligned.hd6")));
+        assertThrows(IOException.class, () -> new FileIndex(nameChunkData, 2, filenameTable,
+                new int[]{0, FileIndex.MAX_FILENAME_OFFSET + 1}, new long[]{0x1000}, new int[]{0x10})
+                .write(tempDir.resolve("longtable.hd6")));
+        assertFalse(Files.exists(tempDir.resolve("far.hd6")));
+        assertFalse(Files.exists(tempDir.resolve("longtable.hd6")));
+        assertFalse(Files.exists(tempDir.resolve("unaligned.hd6")));
+    }
+}
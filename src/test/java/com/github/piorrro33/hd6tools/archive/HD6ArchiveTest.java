@@ -0,0 +1,137 @@
+package com.github.piorrro33.hd6tools.archive;
+
+import com.github.piorrro33.hd6tools.operation.OperationMode;
+import com.github.piorrro33.hd6tools.operation.Operations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HD6ArchiveTest {
+    @TempDir
+    Path tempDir;
+
+    private Path rebuild(String... filenames) throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve("source"));
+        for (int i = 0; i < filenames.length; i++) {
+            Path filePath = sourceFolderPath.resolve(filenames[i]);
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, fileData(i));
+        }
+        Path hd6Path = tempDir.resolve("source.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, tempDir.resolve("source.dat"), hd6Path,
+                sourceFolderPath));
+        return hd6Path;
+    }
+
+    private static byte[] fileData(int i) {
+        byte[] fileData = new byte[0x10 * (i + 1)]; // sizes are stored divided by 0x10
+        for (int j = 0; j < fileData.length; j++) {
+            fileData[j] = (byte) (i + j);
+        }
+        return fileData;
+    }
+
+    private static byte[] toArray(ByteBuffer bb) {
+        byte[] ba = new byte[bb.remaining()];
+        bb.get(ba);
+        return ba;
+    }
+
+    @Test
+    void listFindAndOpen() throws IOException {
+        Path hd6Path = rebuild("a/face_01.g1t", "a/face_02.g1t", "b/chara.bin");
+        try (HD6Archive archive = HD6Archive.open(hd6Path)) {
+            // The last file is repeated by the rebuild
+            assertEquals(List.of("a/face_01.g1t", "a/face_02.g1t", "b/chara.bin", "b/chara.bin"), archive.list());
+
+            assertEquals(1, archive.find("a/face_02.g1t"));
+            assertEquals(1, archive.find("a\\face_02.g1t"));
+            assertEquals(-1, archive.find("a/face_03.g1t"));
+
+            assertArrayEquals(fileData(0), toArray(archive.open("a/face_01.g1t")));
+            assertArrayEquals(fileData(2), toArray(archive.open("b/chara.bin")));
+            assertEquals(0x800, archive.getStartOffset(1));
+            assertThrows(NoSuchFileException.class, () -> archive.open("missing"));
+        }
+    }
+
+    @Test
+    void indexCache() throws IOException {
+        Path hd6Path = rebuild("a/face_01.g1t", "a/face_02.g1t", "b/chara.bin");
+        Path datPath = tempDir.resolve("source.dat");
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, true)) {
+            assertEquals(1, archive.find("a/face_02.g1t"));
+        }
+        assertTrue(Files.isRegularFile(IndexCache.getIndexCachePath(hd6Path)));
+
+        // Opened from the cache this time
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, true)) {
+            assertEquals(List.of("a/face_01.g1t", "a/face_02.g1t", "b/chara.bin", "b/chara.bin"), archive.list());
+            assertEquals(1, archive.find("a/face_02.g1t"));
+            assertArrayEquals(fileData(1), toArray(archive.open("a/face_02.g1t")));
+        }
+
+        // A different HD6 of the same size must not be served from the stale cache
+        byte[] hd6 = Files.readAllBytes(hd6Path);
+        hd6[hd6.length - 8 - 3] ^= 0x01; // size field of the last real file
+        Files.write(hd6Path, hd6);
+        Files.setLastModifiedTime(hd6Path, FileTime.fromMillis(0));
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, true)) {
+            assertEquals(0x30 ^ 0x10, archive.getFileSize(3));
+        }
+    }
+
+    @Test
+    void inconsistentIndexCache() throws IOException {
+        Path hd6Path = rebuild("a/face_01.g1t", "a/face_02.g1t", "b/chara.bin");
+        Path datPath = tempDir.resolve("source.dat");
+        Path indexCachePath = IndexCache.getIndexCachePath(hd6Path);
+        int fileCount = 4;
+        int fileSizesOffset = 0x28 + fileCount * 16;
+        int nameBlobOffsetsOffset = fileSizesOffset + fileCount * 4;
+        // A name ending past the next one, then a negative size: the HD6 is read again, and the cache rewritten
+        for (int corruptedOffset : new int[]{nameBlobOffsetsOffset + 4, fileSizesOffset + 8}) {
+            try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, true)) {
+                assertEquals(4, archive.size());
+            }
+            byte[] indexCache = Files.readAllBytes(indexCachePath);
+            ByteBuffer.wrap(indexCache).order(ByteOrder.LITTLE_ENDIAN).putInt(corruptedOffset, 0x80000000);
+            Files.write(indexCachePath, indexCache);
+            try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, true)) {
+                assertEquals(List.of("a/face_01.g1t", "a/face_02.g1t", "b/chara.bin", "b/chara.bin"), archive.list());
+                assertEquals(0x30, archive.getFileSize(2));
+            }
+            assertNotNull(IndexCache.load(hd6Path));
+        }
+    }
+
+    @Test
+    void overwrittenFiles() throws IOException {
+        Path hd6Path = rebuild("a/face_01.g1t", "a/face_02.g1t", "b/chara.bin");
+        Path datPath = tempDir.resolve("source.dat");
+        for (boolean useIndexCache : new boolean[]{false, true, true}) {
+            try (HD6Archive archive = HD6Archive.open(hd6Path, datPath, useIndexCache)) {
+                // Only the repeated last file is followed by a file with the same name
+                assertEquals(BitSet.valueOf(new long[]{0b100}), archive.getOverwrittenFiles());
+            }
+        }
+    }
+
+    @Test
+    void notAnHD6File() throws IOException {
+        Path hd6Path = Files.write(tempDir.resolve("bogus.hd6"), new byte[0x40]);
+        Files.write(tempDir.resolve("bogus.dat"), new byte[0]);
+        assertThrows(IOException.class, () -> HD6Archive.open(hd6Path));
+    }
+}
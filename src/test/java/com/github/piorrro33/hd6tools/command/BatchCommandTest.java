@@ -0,0 +1,20 @@
+package com.github.piorrro33.hd6tools.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchCommandTest {
+
+    @Test
+    void splitManifestLine() {
+        assertEquals(List.of("extract", "a.hd6", "out"), BatchCommand.splitManifestLine("  extract\ta.hd6   out "));
+        assertEquals(List.of("rebuild", "my folder", "b.hd6"),
+                BatchCommand.splitManifestLine("rebuild \"my folder\" b.hd6 # comment"));
+        assertEquals(List.of("extract", "#1.hd6"), BatchCommand.splitManifestLine("extract \"#1.hd6\""));
+        assertEquals(List.of(), BatchCommand.splitManifestLine("# only a comment"));
+        assertEquals(List.of(""), BatchCommand.splitManifestLine("\"\""));
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.piorrro33.hd6tools.filesystem;
+
+import com.github.piorrro33.hd6tools.operation.OperationMode;
+import com.github.piorrro33.hd6tools.operation.Operations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HD6FileSystemTest {
+    @TempDir
+    Path tempDir;
+
+    private Path rebuild(String... filenames) throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve("source"));
+        for (int i = 0; i < filenames.length; i++) {
+            Path filePath = sourceFolderPath.resolve(filenames[i]);
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, fileData(i));
+        }
+        Path hd6Path = tempDir.resolve("source.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, tempDir.resolve("source.dat"), hd6Path,
+                sourceFolderPath));
+        return hd6Path;
+    }
+
+    private static byte[] fileData(int i) {
+        byte[] fileData = new byte[0x10 * (i + 1)];
+        for (int j = 0; j < fileData.length; j++) {
+            fileData[j] = (byte) (i + j);
+        }
+        return fileData;
+    }
+
+    @Test
+    void browseAndRead() throws IOException {
+        Path hd6Path = rebuild("a/face_01.g1t", "a/b/face_02.g1t", "chara.bin");
+        try (FileSystem fs = FileSystems.newFileSystem(hd6Path)) {
+            assertTrue(fs.isReadOnly());
+            try (Stream<Path> paths = Files.walk(fs.getPath("/"))) {
+                assertEquals(List.of("/", "/a", "/a/b", "/a/b/face_02.g1t", "/a/face_01.g1t", "/chara.bin"),
+                        paths.map(Path::toString).sorted().collect(Collectors.toList()));
+            }
+            assertTrue(Files.isDirectory(fs.getPath("/a/b")));
+            assertTrue(Files.isRegularFile(fs.getPath("a", "face_01.g1t")));
+            assertFalse(Files.exists(fs.getPath("/a/missing")));
+            assertEquals(0x20, Files.size(fs.getPath("/a/b/face_02.g1t")));
+
+            assertArrayEquals(fileData(1), Files.readAllBytes(fs.getPath("/a/./b/../b/face_02.g1t")));
+            try (SeekableByteChannel channel = Files.newByteChannel(fs.getPath("/chara.bin"))) {
+                ByteBuffer bb = ByteBuffer.allocate(4);
+                channel.position(0x10);
+                assertEquals(4, channel.read(bb));
+                assertEquals(fileData(2)[0x10], bb.get(0));
+                channel.position(channel.size());
+                assertEquals(-1, channel.read(bb.clear()));
+                channel.position(channel.size() + 10);
+                assertEquals(channel.size() + 10, channel.position());
+                assertEquals(-1, channel.read(bb.clear()));
+                channel.position(0x4);
+                assertEquals(4, channel.read(bb.clear()));
+                assertEquals(fileData(2)[0x4], bb.get(0));
+                assertEquals(0x8, channel.position());
+            }
+
+            Path copyPath = tempDir.resolve("copy.g1t");
+            Files.copy(fs.getPath("/a/face_01.g1t"), copyPath);
+            assertArrayEquals(fileData(0), Files.readAllBytes(copyPath));
+
+            assertThrows(NoSuchFileException.class, () -> Files.readAllBytes(fs.getPath("/a/missing")));
+            assertThrows(NotDirectoryException.class, () -> Files.list(fs.getPath("/chara.bin")));
+            assertThrows(ReadOnlyFileSystemException.class, () -> Files.write(fs.getPath("/new"), new byte[1]));
+            assertThrows(ReadOnlyFileSystemException.class, () -> Files.delete(fs.getPath("/chara.bin")));
+        }
+    }
+
+    @Test
+    void pathOperations() throws IOException {
+        Path hd6Path = rebuild("a/face_01.g1t");
+        try (FileSystem fs = FileSystems.newFileSystem(hd6Path)) {
+            Path path = fs.getPath("/a/b/c.bin");
+            assertEquals("c.bin", path.getFileName().toString());
+            assertEquals("/a/b", path.getParent().toString());
+            assertEquals(3, path.getNameCount());
+            assertEquals("b/c.bin", path.subpath(1, 3).toString());
+            assertTrue(path.startsWith(fs.getPath("/a")));
+            assertTrue(path.endsWith(fs.getPath("b/c.bin")));
+            assertEquals("../d", fs.getPath("/a/b").relativize(fs.getPath("/a/d")).toString());
+            assertEquals(path, fs.getPath("/a").resolve("b/c.bin"));
+            assertTrue(fs.getPathMatcher("glob:/a/**.bin").matches(path));
+            assertFalse(fs.getPathMatcher("glob:/a/*.bin").matches(path));
+        }
+    }
+
+    @Test
+    void openFromUri() throws IOException {
+        Path hd6Path = rebuild("a/face_01.g1t");
+        URI uri = URI.create(HD6FileSystemProvider.SCHEME + ":" + hd6Path.toUri());
+        try (FileSystem fs = FileSystems.newFileSystem(uri, Map.of())) {
+            Path path = Path.of(URI.create(uri + "!/a/face_01.g1t"));
+            assertSame(fs, path.getFileSystem());
+            assertArrayEquals(fileData(0), Files.readAllBytes(path));
+            assertEquals(path, Path.of(path.toUri()));
+        }
+    }
+}
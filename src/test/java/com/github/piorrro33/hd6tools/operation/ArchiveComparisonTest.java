@@ -0,0 +1,96 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.FileIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveComparisonTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Writes an archive whose entries all have the same single-chunk name, one 0x800 bytes slot each, which no rebuild
+     * can produce.
+     */
+    private Path writeArchiveWithDuplicates(String name, String prefix, byte[]... contents) throws IOException {
+        Path datPath = tempDir.resolve(prefix + ".dat");
+        byte[] datData = new byte[contents.length * 0x800];
+        long[] startOffsets = new long[contents.length];
+        int[] fileSizes = new int[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            System.arraycopy(contents[i], 0, datData, i * 0x800, contents[i].length);
+            startOffsets[i] = i * 0x800L;
+            fileSizes[i] = contents[i].length;
+        }
+        Files.write(datPath, datData);
+        Path hd6Path = tempDir.resolve(prefix + ".hd6");
+        byte[] nameChunkData = ("\0" + name + "\0").getBytes(StandardCharsets.US_ASCII);
+        new FileIndex(nameChunkData, 3, new byte[]{1, 0}, new int[contents.length + 1], startOffsets, fileSizes)
+                .write(hd6Path);
+        return hd6Path;
+    }
+
+    private static byte[] fileData(int size, int seed) {
+        byte[] fileData = new byte[size];
+        Arrays.fill(fileData, (byte) seed);
+        return fileData;
+    }
+
+    @Test
+    void lastEntryWinsForDuplicateNames() throws IOException {
+        Path oldHD6Path = writeArchiveWithDuplicates("x.bin", "old", fileData(0x20, 1), fileData(0x20, 2));
+        Path newHD6Path = writeArchiveWithDuplicates("x.bin", "new", fileData(0x20, 2));
+        ArchiveComparison.Result result = ArchiveComparison.perform(oldHD6Path, tempDir.resolve("old.dat"),
+                newHD6Path, tempDir.resolve("new.dat"), null, new OperationOptions());
+        assertTrue(result.isIdentical());
+        assertEquals(1, result.unchangedFileCount());
+
+        // Only the first, overwritten entry of the new archive holds the contents of the old archive
+        newHD6Path = writeArchiveWithDuplicates("x.bin", "new", fileData(0x20, 2), fileData(0x20, 3));
+        Path exportFolderPath = tempDir.resolve("export");
+        result = ArchiveComparison.perform(oldHD6Path, tempDir.resolve("old.dat"), newHD6Path,
+                tempDir.resolve("new.dat"), exportFolderPath, new OperationOptions());
+        assertEquals(List.of("x.bin"), result.modifiedFiles());
+        assertArrayEquals(fileData(0x20, 3), Files.readAllBytes(exportFolderPath.resolve("x.bin")));
+    }
+
+    @Test
+    void exportEntriesAsExtracted() throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve("source/a"));
+        Files.write(sourceFolderPath.resolve("odd.bin"), fileData(0x25, 1));
+        Files.write(sourceFolderPath.resolve("tail.bin"), fileData(0x25, 1));
+        Path oldDatPath = tempDir.resolve("old.dat");
+        Path oldHD6Path = tempDir.resolve("old.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, oldDatPath, oldHD6Path, sourceFolderPath.getParent()));
+
+        byte[] changedData = fileData(0x25, 2);
+        Files.write(sourceFolderPath.resolve("odd.bin"), changedData);
+        // The HD6 stores sizes rounded down to 0x10 bytes: bytes past them are not part of the entry
+        byte[] tailData = fileData(0x25, 1);
+        tailData[0x24] = 3;
+        Files.write(sourceFolderPath.resolve("tail.bin"), tailData);
+        Path newDatPath = tempDir.resolve("new.dat");
+        Path newHD6Path = tempDir.resolve("new.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, newDatPath, newHD6Path, sourceFolderPath.getParent()));
+
+        Path exportFolderPath = tempDir.resolve("export");
+        ArchiveComparison.Result result = ArchiveComparison.perform(oldHD6Path, oldDatPath, newHD6Path, newDatPath,
+                exportFolderPath, new OperationOptions().setThreadCount(2));
+        assertEquals(List.of("a/odd.bin"), result.modifiedFiles());
+        assertEquals(1, result.unchangedFileCount());
+        assertArrayEquals(Arrays.copyOf(changedData, 0x20), Files.readAllBytes(exportFolderPath.resolve("a/odd.bin")));
+        assertFalse(Files.exists(exportFolderPath.resolve("a/tail.bin")));
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedTaskRunnerTest {
+    @Test
+    void runEveryTask() throws IOException {
+        AtomicInteger runCount = new AtomicInteger();
+        BoundedTaskRunner runner = new BoundedTaskRunner(new OperationOptions().setThreadCount(4));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(runner.submit(0x10, runCount::incrementAndGet));
+        }
+        runner.finish();
+        assertEquals(100, runCount.get());
+    }
+
+    @Test
+    void rethrowUncheckedFailure() {
+        BoundedTaskRunner runner = new BoundedTaskRunner(new OperationOptions().setThreadCount(2));
+        runner.submit(0x10, () -> {
+            throw new InvalidPathException("a\0b", "Nul character not allowed");
+        });
+        IOException e = assertThrows(IOException.class, runner::finish);
+        assertTrue(e.getCause() instanceof InvalidPathException);
+        assertFalse(runner.submit(0x10, () -> {
+        })); // no task runs after a failure
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectIOTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Direct I/O falls back to buffered I/O where unsupported, so the outputs must be the same either way.
+     */
+    @Test
+    void directRebuildAndExtraction() throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve("source/sub"));
+        // Odd slot count, so that the DAT does not end on a 4 KiB block, and a file spanning several buffers
+        for (int i = 0; i < 5; i++) {
+            byte[] data = new byte[i == 2 ? DirectDatReader.CHUNK_SIZE * 2 + 0x30 : 0x10 * (i + 1)];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte) (j * 31 + i);
+            }
+            Files.write(sourceFolderPath.resolve("file" + i + ".bin"), data);
+        }
+        Path datPath = tempDir.resolve("buffered.dat");
+        Path hd6Path = tempDir.resolve("buffered.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath.getParent()));
+        Path directDatPath = tempDir.resolve("direct.dat");
+        Path directHD6Path = tempDir.resolve("direct.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, directDatPath, directHD6Path, sourceFolderPath.getParent(),
+                new OperationOptions().setDirectIO(true)));
+        assertArrayEquals(Files.readAllBytes(datPath), Files.readAllBytes(directDatPath));
+        assertArrayEquals(Files.readAllBytes(hd6Path), Files.readAllBytes(directHD6Path));
+
+        OperationOptions[] extractionOptions = {new OperationOptions().setDirectIO(true).setThreadCount(2),
+                new OperationOptions().setDirectIO(true).setEntryFilter(new EntryFilter().include("**"))};
+        for (int i = 0; i < extractionOptions.length; i++) {
+            Path destFolderPath = tempDir.resolve("dest" + i);
+            assertTrue(Operations.perform(OperationMode.EXTRACT, directDatPath, directHD6Path, destFolderPath,
+                    extractionOptions[i]));
+            for (int j = 0; j < 5; j++) {
+                Path relativePath = Path.of("sub", "file" + j + ".bin");
+                assertArrayEquals(Files.readAllBytes(sourceFolderPath.getParent().resolve(relativePath)),
+                        Files.readAllBytes(destFolderPath.resolve(relativePath)));
+            }
+        }
+    }
+}
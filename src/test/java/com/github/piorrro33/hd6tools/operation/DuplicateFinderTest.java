@@ -0,0 +1,30 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class DuplicateFinderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findDuplicates() throws IOException {
+        Files.write(tempDir.resolve("a.bin"), new byte[]{1, 2, 3, 4});
+        Files.write(tempDir.resolve("b.bin"), new byte[]{1, 2, 3, 5}); // same size, other contents
+        Files.write(tempDir.resolve("c.bin"), new byte[]{1, 2, 3, 4});
+        Files.write(tempDir.resolve("empty1.bin"), new byte[0]);
+        Files.write(tempDir.resolve("empty2.bin"), new byte[0]);
+        Files.write(tempDir.resolve("unique.bin"), new byte[]{1});
+
+        OperationOptions options = new OperationOptions().setThreadCount(2);
+        int[] firstIndexes = DuplicateFinder.findDuplicates(SourceFileList.scan(tempDir, options), options);
+        // The last file is listed twice
+        assertArrayEquals(new int[]{0, 1, 0, 3, 4, 5, 5}, firstIndexes);
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntryFilterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void matches() throws IOException {
+        assertTrue(new EntryFilter().matches("a/b.bin"));
+
+        EntryFilter entryFilter = new EntryFilter().include("data/**.bin").exclude("data/skip/*");
+        assertTrue(entryFilter.matches("data/x/y.bin"));
+        assertFalse(entryFilter.matches("data/skip/y.bin"));
+        assertFalse(entryFilter.matches("data/x/y.txt"));
+
+        Path listPath = Files.writeString(tempDir.resolve("list.txt"), "# Wanted files\n\nsound\\a.ogg\n");
+        entryFilter = new EntryFilter().includeNames(listPath).includeRegex("img/[0-9]+\\.png");
+        assertTrue(entryFilter.matches("sound/a.ogg"));
+        assertTrue(entryFilter.matches("img/12.png"));
+        assertFalse(entryFilter.matches("sound/b.ogg"));
+        assertFalse(entryFilter.matches("img/a.png"));
+    }
+
+    @Test
+    void extractSelectedFiles() throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve("source"));
+        for (int i = 0; i < 8; i++) {
+            byte[] data = new byte[0x10 * (i + 1)];
+            data[0] = (byte) i;
+            Files.write(sourceFolderPath.resolve("file" + i + (i % 2 == 0 ? ".bin" : ".txt")), data);
+        }
+        Path datPath = tempDir.resolve("source.dat");
+        Path hd6Path = tempDir.resolve("source.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath));
+
+        Path destFolderPath = tempDir.resolve("dest");
+        OperationOptions options = new OperationOptions()
+                .setThreadCount(2)
+                .setEntryFilter(new EntryFilter().include("*.bin").exclude("file4.bin"));
+        assertTrue(Operations.perform(OperationMode.EXTRACT, datPath, hd6Path, destFolderPath, options));
+        List<String> extractedNames;
+        try (var files = Files.list(destFolderPath)) {
+            extractedNames = files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+        assertArrayEquals(new Object[]{"file0.bin", "file2.bin", "file6.bin"}, extractedNames.toArray());
+        for (String name : extractedNames) {
+            assertArrayEquals(Files.readAllBytes(sourceFolderPath.resolve(name)),
+                    Files.readAllBytes(destFolderPath.resolve(name)));
+        }
+    }
+}
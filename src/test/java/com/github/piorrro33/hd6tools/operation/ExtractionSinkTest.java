@@ -0,0 +1,138 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtractionSinkTest {
+    private static final String LONG_NAME = "a/" + "long_folder_name/".repeat(6) + "file.bin";
+    private static final String SHIFT_JIS_NAME = "b/テスト.bin";
+
+    @TempDir
+    Path tempDir;
+
+    private Map<String, byte[]> rebuildSource() throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        files.put("b/short.bin", new byte[0x20]);
+        files.put(LONG_NAME, new byte[0x230]);
+        files.put(SHIFT_JIS_NAME, new byte[0x10]);
+        files.put("c/empty.bin", new byte[0]);
+        int i = 1;
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            if (file.getValue().length > 0) {
+                file.getValue()[file.getValue().length / 2] = (byte) i++;
+            }
+            Path filePath = tempDir.resolve("source").resolve(file.getKey());
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, file.getValue());
+        }
+        assertTrue(Operations.perform(OperationMode.REBUILD, tempDir.resolve("source.dat"),
+                tempDir.resolve("source.hd6"), tempDir.resolve("source")));
+        return files;
+    }
+
+    @Test
+    void extractToTar() throws IOException {
+        Map<String, byte[]> files = rebuildSource();
+        Path tarPath = tempDir.resolve("out/source.tar");
+        assertTrue(Operations.perform(OperationMode.EXTRACT, tempDir.resolve("source.dat"),
+                tempDir.resolve("source.hd6"), tarPath, new OperationOptions().setContainerFormat(ContainerFormat.TAR)));
+
+        // Minimal reader: ustar headers, with the path of PAX extended headers
+        ByteBuffer tar = ByteBuffer.wrap(Files.readAllBytes(tarPath));
+        Map<String, byte[]> entries = new HashMap<>();
+        String paxPath = null;
+        while (tar.get(tar.position()) != 0) {
+            byte[] header = new byte[512];
+            tar.get(header);
+            String name = new String(header, 0, 100, StandardCharsets.US_ASCII).replace("\0", "");
+            int size = Integer.parseInt(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+            byte[] data = new byte[size];
+            tar.get(data);
+            tar.position(tar.position() + (512 - size % 512) % 512);
+            if (header[156] == 'x') {
+                String record = new String(data, StandardCharsets.UTF_8);
+                paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+            } else {
+                entries.put(paxPath != null ? paxPath : name, data);
+                paxPath = null;
+            }
+        }
+        assertEquals(files.keySet(), entries.keySet());
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertArrayEquals(file.getValue(), entries.get(file.getKey()));
+        }
+    }
+
+    @Test
+    void extractToZip() throws IOException {
+        Map<String, byte[]> files = rebuildSource();
+        Path zipPath = tempDir.resolve("source.zip");
+        assertTrue(Operations.perform(OperationMode.EXTRACT, tempDir.resolve("source.dat"),
+                tempDir.resolve("source.hd6"), zipPath, new OperationOptions().setContainerFormat(ContainerFormat.ZIP)));
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(files.size(), zipFile.size());
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                ZipEntry entry = zipFile.getEntry(file.getKey());
+                assertArrayEquals(file.getValue(), zipFile.getInputStream(entry).readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void extractToFileStream() throws IOException {
+        Map<String, byte[]> files = rebuildSource();
+        Path zipPath = tempDir.resolve("stream.zip");
+        try (FileOutputStream zipStream = new FileOutputStream(zipPath.toFile())) {
+            assertTrue(Operations.perform(OperationMode.EXTRACT, tempDir.resolve("source.dat"),
+                    tempDir.resolve("source.hd6"), tempDir.resolve("ignored.zip"),
+                    new OperationOptions().setContainerFormat(ContainerFormat.ZIP).setContainerStream(zipStream)));
+            assertTrue(zipStream.getChannel().isOpen()); // written through its channel, but left open
+        }
+        assertFalse(Files.exists(tempDir.resolve("ignored.zip")));
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(files.size(), zipFile.size());
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                ZipEntry entry = zipFile.getEntry(file.getKey());
+                assertArrayEquals(file.getValue(), zipFile.getInputStream(entry).readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void zip64EntryCount() throws IOException {
+        Path datPath = Files.write(tempDir.resolve("data.dat"), new byte[]{1, 2, 3, 4});
+        Path zipPath = tempDir.resolve("many.zip");
+        int entryCount = 0x10000 + 10;
+        try (FileChannel datChannel = FileChannel.open(datPath, READ);
+             FileChannel zipChannel = FileChannel.open(zipPath, WRITE, CREATE_NEW)) {
+            ExtractionSink sink = ContainerFormat.ZIP.createSink(zipChannel, 0);
+            for (int i = 0; i < entryCount; i++) {
+                sink.addEntry("f" + i, datChannel, i % 2, 2);
+            }
+            sink.finish();
+        }
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            assertEquals(entryCount, zipFile.size());
+            ZipEntry entry = zipFile.getEntry("f" + (entryCount - 1));
+            assertArrayEquals(new byte[]{2, 3}, zipFile.getInputStream(entry).readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.FileIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractionTest {
+    private static final String[] NAMES = {"a\\0.bin", "a\\shared.bin", "b\\1.bin", "b\\2.bin", "c\\3.bin", "c\\4.bin"};
+    // Entry i is named NAMES[NAME_INDEXES[i]]: a/shared.bin is written by entries 1, 4 and 7
+    private static final int[] NAME_INDEXES = {0, 1, 2, 3, 1, 4, 5, 1};
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Writes an archive whose entries each take one 0x800 bytes slot, and whose names are single chunks.
+     */
+    private void writeArchive(Path hd6Path, Path datPath) throws IOException {
+        byte[] nameChunkData = ("\0" + String.join("\0", NAMES) + "\0").getBytes(StandardCharsets.US_ASCII);
+        byte[] filenameTable = new byte[NAMES.length * 2];
+        for (int i = 0; i < NAMES.length; i++) {
+            filenameTable[i * 2] = (byte) (i + 1);
+        }
+        int[] filenameOffsets = new int[NAME_INDEXES.length + 1];
+        long[] startOffsets = new long[NAME_INDEXES.length];
+        int[] fileSizes = new int[NAME_INDEXES.length];
+        byte[] datData = new byte[NAME_INDEXES.length * 0x800];
+        for (int i = 0; i < NAME_INDEXES.length; i++) {
+            filenameOffsets[i] = NAME_INDEXES[i] * 2;
+            startOffsets[i] = i * 0x800L;
+            fileSizes[i] = 0x20 * (i + 1);
+            Arrays.fill(datData, i * 0x800, i * 0x800 + fileSizes[i], (byte) (i + 1));
+        }
+        Files.write(datPath, datData);
+        new FileIndex(nameChunkData, NAMES.length + 2, filenameTable, filenameOffsets, startOffsets, fileSizes)
+                .write(hd6Path);
+    }
+
+    private static List<Path> listFiles(Path folderPath) throws IOException {
+        try (Stream<Path> paths = Files.walk(folderPath)) {
+            return paths.filter(Files::isRegularFile).map(folderPath::relativize).sorted().toList();
+        }
+    }
+
+    @Test
+    void sameFilesWhateverTheThreadCount() throws IOException {
+        Path hd6Path = tempDir.resolve("source.hd6");
+        Path datPath = tempDir.resolve("source.dat");
+        writeArchive(hd6Path, datPath);
+        Path singleFolderPath = tempDir.resolve("single");
+        Path multiFolderPath = tempDir.resolve("multi");
+        assertTrue(Extraction.perform(datPath, hd6Path, singleFolderPath, new OperationOptions().setThreadCount(1)));
+        assertTrue(Extraction.perform(datPath, hd6Path, multiFolderPath, new OperationOptions().setThreadCount(4)));
+
+        List<Path> files = listFiles(singleFolderPath);
+        assertEquals(NAMES.length, files.size());
+        assertEquals(files, listFiles(multiFolderPath));
+        for (Path file : files) {
+            assertArrayEquals(Files.readAllBytes(singleFolderPath.resolve(file)),
+                    Files.readAllBytes(multiFolderPath.resolve(file)), file.toString());
+        }
+
+        // The last entry with a path wins
+        byte[] lastData = new byte[0x20 * 8];
+        Arrays.fill(lastData, (byte) 8);
+        assertArrayEquals(lastData, Files.readAllBytes(multiFolderPath.resolve("a/shared.bin")));
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilenameDictionaryTest {
+
+    @Test
+    void splitFilename() {
+        assertEquals(List.of("chr", "\\face", "_01", ".g1t"), FilenameDictionary.splitFilename("chr\\face_01.g1t"));
+        // Up to three separators in a row stay in the same chunk
+        assertEquals(List.of("a", "._b"), FilenameDictionary.splitFilename("a._b"));
+        assertEquals(List.of("a", "...", ".b"), FilenameDictionary.splitFilename("a....b"));
+        assertEquals(List.of("noSeparator"), FilenameDictionary.splitFilename("noSeparator"));
+    }
+
+    @Test
+    void sortByFrequency() {
+        FilenameDictionary dictionary = new FilenameDictionary(4);
+        int[] first = dictionary.addFilename("a\\x.bin");
+        int[] second = dictionary.addFilename("b\\x.bin");
+        assertArrayEquals(new int[]{0, 1, 2}, first);
+        assertArrayEquals(new int[]{3, 1, 2}, second);
+
+        int[] dictionaryIndexes = dictionary.sortByFrequency();
+        // "\x" and ".bin" are used twice, then "a" and "b" keep their order of first appearance
+        assertArrayEquals(new int[]{3, 1, 2, 4}, dictionaryIndexes);
+        assertEquals(List.of("\\x", ".bin", "a", "b"), dictionary.getChunks());
+    }
+
+    @Test
+    void buildOnSeveralThreads() throws IOException {
+        List<String> filenames = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            filenames.add("chr" + i % 7 + "\\face_" + i % 300 + (i % 3 == 0 ? ".g1t" : ".bin"));
+        }
+        FilenameDictionary serialDictionary = new FilenameDictionary(16);
+        int[][] serialTokenIds = new int[filenames.size()][];
+        for (int i = 0; i < filenames.size(); i++) {
+            serialTokenIds[i] = serialDictionary.addFilename(filenames.get(i));
+        }
+
+        int[][] tokenIds = new int[filenames.size()][];
+        FilenameDictionary dictionary = FilenameDictionary.build(filenames, tokenIds,
+                new OperationOptions().setThreadCount(4));
+        assertEquals(serialDictionary.getChunks(), dictionary.getChunks());
+        assertArrayEquals(serialTokenIds, tokenIds);
+        assertArrayEquals(serialDictionary.sortByFrequency(), dictionary.sortByFrequency());
+    }
+
+    @Test
+    void mergeChunks() throws IOException {
+        List<String> filenames = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            filenames.add("ui\\win-frame_" + i + ".png");
+        }
+        filenames.add("snd\\unique_voice.ogg");
+        int[][] tokenIds = new int[filenames.size()][];
+        FilenameDictionary dictionary = FilenameDictionary.build(filenames, tokenIds, new OperationOptions());
+        int[][] mergedTokenIds = new int[filenames.size()][];
+        FilenameDictionary merged = dictionary.mergeChunks(tokenIds, mergedTokenIds, new OperationOptions());
+
+        assertTrue(merged.getIndexSize() < dictionary.getIndexSize());
+        // Filenames are still made of the same characters
+        for (int i = 0; i < filenames.size(); i++) {
+            StringBuilder filename = new StringBuilder();
+            for (int id : mergedTokenIds[i]) {
+                filename.append(merged.getChunks().get(id));
+            }
+            assertEquals(filenames.get(i), filename.toString());
+        }
+        // Chunks always used together become one, as do chunks used once
+        assertTrue(merged.getChunks().contains("ui\\win-frame"));
+        assertEquals(1, mergedTokenIds[200].length);
+    }
+
+    @Test
+    void rejectTooManyNameChunks() throws IOException {
+        List<String> filenames = new ArrayList<>();
+        for (int i = 0; i < 0x7FFF; i++) {
+            filenames.add("f" + i);
+        }
+        OperationOptions options = new OperationOptions().setThreadCount(1);
+        Reconstruction.FilenameTable filenameTable = Reconstruction.createFilenameTable(filenames, options);
+        assertEquals(0x7FFF + 2, filenameTable.nameChunkCount());
+
+        filenames.add("f" + 0x7FFF);
+        assertThrows(IOException.class, () -> Reconstruction.createFilenameTable(filenames, options));
+    }
+}
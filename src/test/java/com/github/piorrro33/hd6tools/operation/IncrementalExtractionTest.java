@@ -0,0 +1,108 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalExtractionTest {
+    private static final FileTime OLD_TIME = FileTime.fromMillis(1_000_000_000_000L);
+
+    @TempDir
+    Path tempDir;
+
+    private Path sourceFolderPath;
+    private Path hd6Path;
+    private Path datPath;
+    private Path destFolderPath;
+
+    private void rebuild(String... filenamesAndContents) throws IOException {
+        sourceFolderPath = tempDir.resolve("source");
+        for (int i = 0; i < filenamesAndContents.length; i += 2) {
+            Path filePath = sourceFolderPath.resolve(filenamesAndContents[i]);
+            Files.createDirectories(filePath.getParent());
+            Files.writeString(filePath, filenamesAndContents[i + 1]);
+        }
+        hd6Path = tempDir.resolve("source.hd6");
+        datPath = tempDir.resolve("source.dat");
+        destFolderPath = tempDir.resolve("dest");
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath,
+                new OperationOptions().setAssumeYes(true)));
+    }
+
+    private void extract(UnchangedCheck unchangedCheck, boolean prune) {
+        assertTrue(Operations.perform(OperationMode.EXTRACT, datPath, hd6Path, destFolderPath,
+                new OperationOptions().setUnchangedCheck(unchangedCheck).setPrune(prune).setThreadCount(2)));
+    }
+
+    private void setOldTime(String... filenames) throws IOException {
+        for (String filename : filenames) {
+            Files.setLastModifiedTime(destFolderPath.resolve(filename), OLD_TIME);
+        }
+    }
+
+    private void deleteSource() throws IOException {
+        for (String filename : new String[]{"a/same.txt", "a/changed.txt", "a/resized.txt", "b/removed.txt"}) {
+            Files.deleteIfExists(sourceFolderPath.resolve(filename));
+        }
+    }
+
+    @Test
+    void skipUnchangedFilesAndPrune() throws IOException {
+        rebuild("a/same.txt", "0123456789abcdef", "a/changed.txt", "0123456789abcdef",
+                "a/resized.txt", "0123456789abcdef", "b/removed.txt", "0123456789abcdef");
+        extract(null, false);
+        setOldTime("a/same.txt", "a/changed.txt", "a/resized.txt");
+        Files.writeString(destFolderPath.resolve("a/extra.txt"), "not in the archive");
+
+        deleteSource();
+        rebuild("a/same.txt", "0123456789abcdef", "a/changed.txt", "fedcba9876543210",
+                "a/resized.txt", "0123456789abcdef0123456789abcdef");
+        extract(UnchangedCheck.SIZE, false);
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(destFolderPath.resolve("a/same.txt")));
+        assertEquals("0123456789abcdef", Files.readString(destFolderPath.resolve("a/changed.txt")));
+        assertEquals("0123456789abcdef0123456789abcdef", Files.readString(destFolderPath.resolve("a/resized.txt")));
+        assertTrue(Files.exists(destFolderPath.resolve("b/removed.txt")));
+
+        extract(UnchangedCheck.CONTENTS, true);
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(destFolderPath.resolve("a/same.txt")));
+        assertEquals("fedcba9876543210", Files.readString(destFolderPath.resolve("a/changed.txt")));
+        assertFalse(Files.exists(destFolderPath.resolve("a/extra.txt")));
+        assertFalse(Files.exists(destFolderPath.resolve("b")));
+        assertTrue(Verification.perform(datPath, hd6Path, destFolderPath, new OperationOptions()).isMatching());
+    }
+
+    @Test
+    void skipFilesRecordedInManifest() throws IOException {
+        rebuild("a/same.txt", "0123456789abcdef", "a/changed.txt", "0123456789abcdef",
+                "a/edited.txt", "0123456789abcdef");
+        extract(UnchangedCheck.MANIFEST, false);
+        Path manifestPath = tempDir.resolve("dest.manifest");
+        assertTrue(Files.exists(manifestPath));
+
+        // A change keeping the size and last modified time goes unnoticed, as only the DAT is read
+        FileTime sameTime = Files.getLastModifiedTime(destFolderPath.resolve("a/same.txt"));
+        Files.writeString(destFolderPath.resolve("a/same.txt"), "modified in dest");
+        Files.setLastModifiedTime(destFolderPath.resolve("a/same.txt"), sameTime);
+        Files.writeString(destFolderPath.resolve("a/edited.txt"), "modified in dest");
+        Files.setLastModifiedTime(destFolderPath.resolve("a/edited.txt"), OLD_TIME);
+
+        deleteSource();
+        rebuild("a/same.txt", "0123456789abcdef", "a/changed.txt", "fedcba9876543210",
+                "a/edited.txt", "0123456789abcdef");
+        extract(UnchangedCheck.MANIFEST, false);
+        assertEquals("modified in dest", Files.readString(destFolderPath.resolve("a/same.txt")));
+        assertEquals("fedcba9876543210", Files.readString(destFolderPath.resolve("a/changed.txt")));
+        assertEquals("0123456789abcdef", Files.readString(destFolderPath.resolve("a/edited.txt")));
+
+        ExtractionManifest manifest = ExtractionManifest.read(manifestPath);
+        assertEquals(Files.getLastModifiedTime(destFolderPath.resolve("a/changed.txt")).toMillis(),
+                manifest.get("a/changed.txt").modifiedTime());
+        assertEquals(0x10, manifest.get("a/edited.txt").size());
+    }
+}
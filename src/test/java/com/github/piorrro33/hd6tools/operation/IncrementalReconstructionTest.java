@@ -0,0 +1,165 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalReconstructionTest {
+    @TempDir
+    Path tempDir;
+
+    private Path sourceFolderPath;
+    private Path datPath;
+    private Path hd6Path;
+
+    private void rebuild(boolean deduplicate, String... filenames) throws IOException {
+        sourceFolderPath = tempDir.resolve("source");
+        for (String filename : filenames) {
+            write(filename, fileData(0x20, 0));
+        }
+        datPath = tempDir.resolve("source.dat");
+        hd6Path = tempDir.resolve("source.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath,
+                new OperationOptions().setDeduplicate(deduplicate)));
+    }
+
+    private static byte[] fileData(int size, int seed) {
+        byte[] fileData = new byte[size]; // sizes are stored rounded down to 0x10
+        for (int i = 0; i < fileData.length; i++) {
+            fileData[i] = (byte) (seed + i);
+        }
+        return fileData;
+    }
+
+    /**
+     * Writes a source file dated after the archive, so that the update cannot take it for unchanged.
+     */
+    private void write(String filename, byte[] fileData) throws IOException {
+        Path filePath = sourceFolderPath.resolve(filename);
+        Files.createDirectories(filePath.getParent());
+        Files.write(filePath, fileData);
+        Files.setLastModifiedTime(filePath, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+    }
+
+    private IncrementalReconstruction.Outcome update() {
+        return IncrementalReconstruction.perform(datPath, hd6Path, sourceFolderPath, new OperationOptions());
+    }
+
+    private long getStartOffset(String name) throws IOException {
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            return archive.getStartOffset(archive.find(name));
+        }
+    }
+
+    private void assertMatchesSource() throws IOException {
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            for (int i = 0; i < archive.size(); i++) {
+                byte[] sourceData = Files.readAllBytes(sourceFolderPath.resolve(archive.getName(i)));
+                assertEquals(ByteBuffer.wrap(sourceData), archive.open(i), archive.getName(i));
+            }
+        }
+    }
+
+    @Test
+    void patchFileFittingItsSlot() throws IOException {
+        rebuild(false, "a/first.bin", "a/second.bin", "b/third.bin");
+        long startOffset = getStartOffset("a/second.bin");
+        long datSize = Files.size(datPath);
+
+        write("a/second.bin", fileData(0x7F0, 1));
+        assertEquals(IncrementalReconstruction.Outcome.UPDATED, update());
+        assertEquals(startOffset, getStartOffset("a/second.bin"));
+        assertEquals(datSize, Files.size(datPath));
+        assertMatchesSource();
+    }
+
+    @Test
+    void appendFileOutgrowingItsSlot() throws IOException {
+        rebuild(false, "a/first.bin", "a/second.bin", "b/third.bin");
+        long datSize = Files.size(datPath);
+
+        write("a/first.bin", fileData(0x1010, 2));
+        assertEquals(IncrementalReconstruction.Outcome.UPDATED, update());
+        assertTrue(getStartOffset("a/first.bin") >= datSize);
+        assertEquals(0, getStartOffset("a/first.bin") % 0x800);
+        assertMatchesSource();
+    }
+
+    @Test
+    void appendAfterUnalignedDatEnd() throws IOException {
+        rebuild(false, "a/first.bin", "a/second.bin", "b/third.bin");
+        // The last slot is mostly padding, which other tools may not write
+        try (FileChannel datChannel = FileChannel.open(datPath, StandardOpenOption.WRITE)) {
+            datChannel.truncate(datChannel.size() - 0x100);
+        }
+        long datSize = Files.size(datPath);
+
+        write("a/first.bin", fileData(0x1000, 5));
+        assertEquals(IncrementalReconstruction.Outcome.UPDATED, update());
+        assertTrue(getStartOffset("a/first.bin") >= datSize);
+        assertEquals(0, getStartOffset("a/first.bin") % 0x800);
+        assertMatchesSource();
+    }
+
+    @Test
+    void compareFilesCopiedWithTheirTime() throws IOException {
+        rebuild(false, "a/first.bin", "a/second.bin", "b/third.bin");
+        Path filePath = sourceFolderPath.resolve("a/second.bin");
+        Files.write(filePath, fileData(0x20, 6));
+        FileTime oldTime = FileTime.fromMillis(Files.getLastModifiedTime(hd6Path).toMillis() - 60_000);
+        Files.setLastModifiedTime(filePath, oldTime);
+
+        assertEquals(IncrementalReconstruction.Outcome.UPDATED, IncrementalReconstruction.perform(datPath, hd6Path,
+                sourceFolderPath, new OperationOptions().setTrustModifiedTimes(true)));
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            assertEquals(ByteBuffer.wrap(fileData(0x20, 0)), archive.open(archive.find("a/second.bin")));
+        }
+        assertEquals(IncrementalReconstruction.Outcome.UPDATED, update());
+        assertMatchesSource();
+    }
+
+    @Test
+    void neverOverwriteSharedSlot() throws IOException {
+        rebuild(true, "a/first.bin", "a/second.bin", "b/third.bin");
+        long sharedStartOffset = getStartOffset("a/first.bin");
+        assertEquals(sharedStartOffset, getStartOffset("a/second.bin"));
+        long datSize = Files.size(datPath);
+
+        write("a/first.bin", fileData(0x20, 3));
+        assertEquals(IncrementalReconstruction.Outcome.UPDATED, update());
+        assertTrue(getStartOffset("a/first.bin") >= datSize);
+        assertEquals(sharedStartOffset, getStartOffset("a/second.bin"));
+        assertMatchesSource();
+    }
+
+    @Test
+    void fallBackToFullRebuildWhenFilesChange() throws IOException {
+        rebuild(false, "a/first.bin", "a/second.bin", "b/third.bin");
+        write("a/added.bin", fileData(0x30, 4));
+        assertEquals(IncrementalReconstruction.Outcome.FULL_REBUILD_NEEDED, update());
+        OperationOptions options = new OperationOptions().setIncremental(true).setAssumeYes(true);
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath, options));
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            assertTrue(archive.find("a/added.bin") >= 0);
+        }
+        assertMatchesSource();
+
+        Files.delete(sourceFolderPath.resolve("a/second.bin"));
+        assertEquals(IncrementalReconstruction.Outcome.FULL_REBUILD_NEEDED, update());
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath, options));
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            assertEquals(-1, archive.find("a/second.bin"));
+        }
+        assertMatchesSource();
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.FileIndex;
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.SPARSE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LargeArchiveTest {
+    private static final List<String> NAMES = List.of("a\\low.bin", "b\\boundary.bin", "c\\high.bin", "c\\high.bin");
+    // Across the start of the second DAT segment, then past 2 GiB in the last segment
+    private static final long[] START_OFFSETS = {0, 0x2FFFF800L, 0xBFFFF800L, 0xBFFFF800L};
+    private static final int[] FILE_SIZES = {0x20, 0x1000, 0x1010, 0x1010};
+
+    @TempDir
+    Path tempDir;
+
+    private byte[] contents(int index) {
+        byte[] contents = new byte[FILE_SIZES[index]];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) (i * 7 + index);
+        }
+        return contents;
+    }
+
+    /**
+     * Writes an archive whose DAT is sparse, so that it is larger than 2 GiB without taking up as much disk space.
+     */
+    private void writeLargeArchive(Path datPath, Path hd6Path) throws IOException {
+        OperationOptions options = new OperationOptions();
+        Reconstruction.writeHD6(hd6Path, Reconstruction.createFilenameTable(NAMES, options), START_OFFSETS,
+                FILE_SIZES, options.getMetrics());
+        try (FileChannel datChannel = FileChannel.open(datPath, WRITE, CREATE_NEW, SPARSE)) {
+            for (int i = 0; i < NAMES.size() - 1; i++) {
+                datChannel.write(ByteBuffer.wrap(contents(i)), START_OFFSETS[i]);
+            }
+            datChannel.write(ByteBuffer.allocate(1), START_OFFSETS[2] + 0x17FF); // padding of the last slot
+        }
+    }
+
+    @Test
+    void openFilesPast2GiB() throws IOException {
+        Path datPath = tempDir.resolve("large.dat");
+        Path hd6Path = tempDir.resolve("large.hd6");
+        writeLargeArchive(datPath, hd6Path);
+
+        try (HD6Archive archive = HD6Archive.open(hd6Path, datPath)) {
+            assertEquals(NAMES.size(), archive.size());
+            for (int i = 0; i < archive.size(); i++) {
+                assertEquals(START_OFFSETS[i], archive.getStartOffset(i));
+                ByteBuffer fileData = archive.open(i);
+                byte[] actual = new byte[fileData.remaining()];
+                fileData.get(actual);
+                assertArrayEquals(contents(Math.min(i, 2)), actual, "contents of " + NAMES.get(i) + " differ");
+            }
+        }
+    }
+
+    @Test
+    void extractFilesPast2GiB() throws IOException {
+        Path datPath = tempDir.resolve("large.dat");
+        Path hd6Path = tempDir.resolve("large.hd6");
+        writeLargeArchive(datPath, hd6Path);
+
+        Path destPath = tempDir.resolve("out");
+        assertTrue(Operations.perform(OperationMode.EXTRACT, datPath, hd6Path, destPath));
+        for (int i = 0; i < NAMES.size() - 1; i++) {
+            assertArrayEquals(contents(i), Files.readAllBytes(destPath.resolve(NAMES.get(i).replace('\\', '/'))),
+                    "contents of " + NAMES.get(i) + " differ");
+        }
+    }
+
+    @Test
+    void rejectUnencodableEntries() throws IOException {
+        OperationOptions options = new OperationOptions();
+        Reconstruction.FilenameTable filenameTable = Reconstruction.createFilenameTable(NAMES, options);
+        long[] tooFarOffsets = START_OFFSETS.clone();
+        tooFarOffsets[2] = tooFarOffsets[3] = FileIndex.MAX_START_OFFSET + 0x800;
+        assertThrows(IOException.class, () -> Reconstruction.writeHD6(tempDir.resolve("far.hd6"), filenameTable,
+                tooFarOffsets, FILE_SIZES, options.getMetrics()));
+        int[] tooLargeSizes = FILE_SIZES.clone();
+        tooLargeSizes[1] = (int) FileIndex.MAX_FILE_SIZE + 1;
+        assertThrows(IOException.class, () -> Reconstruction.writeHD6(tempDir.resolve("large.hd6"), filenameTable,
+                START_OFFSETS, tooLargeSizes, options.getMetrics()));
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationMetricsTest {
+
+    @Test
+    void toJson() {
+        OperationMetrics metrics = new OperationMetrics();
+        metrics.startOperation("extract");
+        metrics.startPhase("Decoding \"filenames\"");
+        metrics.addFiles(3);
+        metrics.startPhase("Writing files", 2);
+        metrics.addFile(0x800);
+        metrics.addFile(0x10);
+        metrics.addFiles(1); // a phase may count files that have no bytes
+        metrics.finish();
+
+        String json = metrics.toJson(true);
+        assertTrue(json.contains("\"successful\": true"), json);
+        assertTrue(json.contains("{\"operation\": \"extract\", \"name\": \"Decoding \\\"filenames\\\"\""), json);
+        assertTrue(json.contains("\"name\": \"Writing files\""), json);
+        assertTrue(json.contains("\"files\": 3, \"bytes\": 0,"), json);
+        assertTrue(json.contains("\"files\": 3, \"bytes\": 2064,"), json);
+    }
+}
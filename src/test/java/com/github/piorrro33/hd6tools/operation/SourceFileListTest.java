@@ -0,0 +1,39 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SourceFileListTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void depthFirstOrder() throws IOException {
+        List<String> filenames = List.of("z.bin", "b/y.bin", "b/a/x.bin", "a/w.bin", "a/c/v.bin", "a/b/u.bin");
+        for (int i = 0; i < filenames.size(); i++) {
+            Path filePath = tempDir.resolve(filenames.get(i));
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, new byte[i]);
+        }
+
+        SourceFileList sourceFiles = SourceFileList.scan(tempDir, new OperationOptions().setThreadCount(4));
+        List<String> relativePaths = new ArrayList<>();
+        for (Path filePath : sourceFiles.getPaths()) {
+            relativePaths.add(tempDir.relativize(filePath).toString().replace(tempDir.getFileSystem().getSeparator(),
+                    "/"));
+        }
+        // Files of a folder come before its subfolders, and the last file is listed twice
+        assertEquals(List.of("z.bin", "a/w.bin", "a/b/u.bin", "a/c/v.bin", "b/y.bin", "b/a/x.bin", "b/a/x.bin"),
+                relativePaths);
+        assertEquals(5, sourceFiles.getSize(2));
+        assertEquals(2, sourceFiles.getSize(6));
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import com.github.piorrro33.hd6tools.archive.HD6Archive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamReconstructionTest {
+    @TempDir
+    Path tempDir;
+
+    private void rebuildSource() throws IOException {
+        String[] names = {"a/first.bin", "a/b/second.bin", "a/b/third.bin", "c/empty.bin", "d/last.bin"};
+        for (int i = 0; i < names.length; i++) {
+            byte[] contents = new byte[i == 3 ? 0 : 0x100 * i + 0x810];
+            if (contents.length > 0) {
+                contents[contents.length / 2] = (byte) (i + 1);
+            }
+            Path filePath = tempDir.resolve("source").resolve(names[i]);
+            Files.createDirectories(filePath.getParent());
+            Files.write(filePath, contents);
+        }
+        assertTrue(Operations.perform(OperationMode.REBUILD, tempDir.resolve("source.dat"),
+                tempDir.resolve("source.hd6"), tempDir.resolve("source")));
+    }
+
+    private void assertSameArchive(String expectedName, String actualName) throws IOException {
+        assertArrayEquals(Files.readAllBytes(tempDir.resolve(expectedName + ".hd6")),
+                Files.readAllBytes(tempDir.resolve(actualName + ".hd6")), "HD6 files differ");
+        assertArrayEquals(Files.readAllBytes(tempDir.resolve(expectedName + ".dat")),
+                Files.readAllBytes(tempDir.resolve(actualName + ".dat")), "DAT files differ");
+    }
+
+    @Test
+    void repackArchive() throws IOException {
+        rebuildSource();
+        assertTrue(StreamReconstruction.performFromArchive(tempDir.resolve("source.hd6"),
+                tempDir.resolve("source.dat"), tempDir.resolve("repack.dat"), tempDir.resolve("repack.hd6"),
+                new OperationOptions()));
+        assertSameArchive("source", "repack");
+    }
+
+    @Test
+    void repackArchiveOntoItself() throws IOException {
+        rebuildSource();
+        assertFalse(StreamReconstruction.performFromArchive(tempDir.resolve("source.hd6"),
+                tempDir.resolve("source.dat"), tempDir.resolve("source.dat"), tempDir.resolve("source.hd6"),
+                new OperationOptions().setAssumeYes(true)));
+    }
+
+    @Test
+    void rebuildFromTar() throws IOException {
+        rebuildSource();
+        Path tarPath = tempDir.resolve("source.tar");
+        assertTrue(Operations.perform(OperationMode.EXTRACT, tempDir.resolve("source.dat"),
+                tempDir.resolve("source.hd6"), tarPath, new OperationOptions().setContainerFormat(ContainerFormat.TAR)));
+        try (InputStream tarStream = new BufferedInputStream(Files.newInputStream(tarPath))) {
+            assertTrue(StreamReconstruction.performFromTar(tarStream, tempDir.resolve("tar.dat"),
+                    tempDir.resolve("tar.hd6"), new OperationOptions()));
+        }
+        assertSameArchive("source", "tar");
+    }
+
+    /**
+     * @return a ustar header block, with a valid checksum
+     */
+    private static byte[] tarHeader(String name, byte typeFlag, long size) {
+        byte[] header = new byte[512];
+        System.arraycopy(name.getBytes(StandardCharsets.US_ASCII), 0, header, 0, name.length());
+        byte[] sizeField = String.format("%011o", size).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(sizeField, 0, header, 124, sizeField.length);
+        header[156] = typeFlag;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        return setChecksum(header);
+    }
+
+    private static byte[] setChecksum(byte[] header) {
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        byte[] checksumField = String.format("%06o\0", checksum).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(checksumField, 0, header, 148, checksumField.length);
+        return header;
+    }
+
+    private boolean rebuildFromTar(byte[]... blocks) throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        for (byte[] block : blocks) {
+            tar.write(block);
+            tar.write(new byte[(512 - block.length % 512) % 512]);
+        }
+        tar.write(new byte[1024]);
+        return StreamReconstruction.performFromTar(new ByteArrayInputStream(tar.toByteArray()),
+                tempDir.resolve("tar.dat"), tempDir.resolve("tar.hd6"), new OperationOptions().setAssumeYes(true));
+    }
+
+    @Test
+    void rejectInvalidTarSizes() throws IOException {
+        assertTrue(rebuildFromTar(tarHeader("a/file.bin", (byte) '0', 0x20), new byte[0x20]));
+        for (String sizeRecord : new String[]{"12 size=ab\n", "12 size=-5\n", "30 size=99999999999999999999\n"}) {
+            byte[] records = sizeRecord.getBytes(StandardCharsets.US_ASCII);
+            assertFalse(rebuildFromTar(tarHeader("PaxHeader", (byte) 'x', records.length), records,
+                    tarHeader("a/file.bin", (byte) '0', 0x20), new byte[0x20]), sizeRecord);
+        }
+
+        byte[] negativeSizeHeader = tarHeader("a/file.bin", (byte) '0', 0);
+        Arrays.fill(negativeSizeHeader, 124, 136, (byte) 0xFF); // base-256 -1
+        assertFalse(rebuildFromTar(setChecksum(negativeSizeHeader)));
+    }
+
+    @Test
+    void skipTarEntriesWithInvalidPaths() throws IOException {
+        byte[] contents = new byte[0x20];
+        assertTrue(rebuildFromTar(tarHeader("a/../../x.bin", (byte) '0', 0x20), contents,
+                tarHeader("./a/good.bin", (byte) '0', 0x20), contents,
+                tarHeader("a//b.bin", (byte) '0', 0x20), contents,
+                tarHeader("a/./c.bin", (byte) '0', 0x20), contents,
+                tarHeader("a\\..\\d.bin", (byte) '0', 0x20), contents));
+        try (HD6Archive archive = HD6Archive.open(tempDir.resolve("tar.hd6"), tempDir.resolve("tar.dat"))) {
+            assertEquals(List.of("a/good.bin", "a/good.bin"), archive.list()); // the last file is repeated
+        }
+    }
+}
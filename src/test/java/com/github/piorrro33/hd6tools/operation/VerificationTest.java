@@ -0,0 +1,64 @@
+package com.github.piorrro33.hd6tools.operation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerificationTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void compareFolderWithArchive() throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve("source/a"));
+        Files.write(sourceFolderPath.resolve("same.bin"), new byte[0x20]);
+        Files.write(sourceFolderPath.resolve("changed.bin"), new byte[0x20]);
+        Files.write(sourceFolderPath.resolve("resized.bin"), new byte[0x20]);
+        Files.write(sourceFolderPath.resolve("removed.bin"), new byte[0x20]);
+        Path datPath = tempDir.resolve("source.dat");
+        Path hd6Path = tempDir.resolve("source.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath.getParent()));
+
+        Verification.Result result = Verification.perform(datPath, hd6Path, sourceFolderPath.getParent(),
+                new OperationOptions());
+        assertTrue(result.isMatching());
+        assertEquals(4, result.matchingFileCount());
+
+        byte[] changedData = new byte[0x20];
+        changedData[0x3] = 1;
+        Files.write(sourceFolderPath.resolve("changed.bin"), changedData);
+        Files.write(sourceFolderPath.resolve("resized.bin"), new byte[0x30]);
+        Files.delete(sourceFolderPath.resolve("removed.bin"));
+        Files.write(sourceFolderPath.resolve("added.bin"), new byte[0x10]);
+        result = Verification.perform(datPath, hd6Path, sourceFolderPath.getParent(), new OperationOptions());
+        assertFalse(result.isMatching());
+        assertEquals(1, result.matchingFileCount());
+        assertEquals(List.of("a/changed.bin", "a/resized.bin"), result.differingFiles());
+        assertEquals(List.of("a/removed.bin"), result.missingFiles());
+        assertEquals(List.of("a/added.bin"), result.extraFiles());
+    }
+
+    @Test
+    void compareEmptyFolderWithArchive() throws IOException {
+        Path sourceFolderPath = Files.createDirectories(tempDir.resolve("source/a"));
+        Files.write(sourceFolderPath.resolve("first.bin"), new byte[0x20]);
+        Files.write(sourceFolderPath.resolve("second.bin"), new byte[0x20]);
+        Path datPath = tempDir.resolve("source.dat");
+        Path hd6Path = tempDir.resolve("source.hd6");
+        assertTrue(Operations.perform(OperationMode.REBUILD, datPath, hd6Path, sourceFolderPath.getParent()));
+
+        Verification.Result result = Verification.perform(datPath, hd6Path,
+                Files.createDirectories(tempDir.resolve("empty")), new OperationOptions());
+        assertEquals(0, result.matchingFileCount());
+        assertEquals(List.of("a/first.bin", "a/second.bin"), result.missingFiles());
+        assertEquals(List.of(), result.extraFiles());
+    }
+}